@@ -13,6 +13,14 @@ repositories {
 dependencies {
     implementation("com.google.code.gson:gson:2.12.1")
     implementation("org.nd4j:nd4j-native-platform:1.0.0-M2.1")
+
+    testImplementation(platform("org.junit:junit-bom:5.10.0"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 tasks.jar {
@@ -0,0 +1,47 @@
+package de.c4vxl.core.nn;
+
+import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.operation.CheckpointOperation;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A Module that wraps another module and trades compute for memory (activation checkpointing).
+ * Only the input of the wrapped module is kept during the forward pass. Its intermediate results are recomputed during the backward pass.
+ * @see de.c4vxl.core.tensor.operation.CheckpointOperation
+ */
+public class Checkpoint extends Module implements TensorModule {
+    public Module module;
+
+    public Checkpoint(Module module) { this.module = module; }
+
+    /**
+     * Forward an input through the wrapped module without keeping its intermediate results
+     * @param input The input
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Tensor<T> forward(Tensor<T> input) {
+        return Checkpoint.apply(x -> (Tensor<T>) this.module._forward(x), input);
+    }
+
+    /**
+     * Apply a function on an input without keeping its intermediate results
+     * @param function The function to checkpoint
+     * @param input The input to the function
+     */
+    public static <T> Tensor<T> apply(Function<Tensor<T>, Tensor<T>> function, Tensor<T> input) {
+        return new CheckpointOperation<>(function, input).forward();
+    }
+
+    /**
+     * Apply a function on multiple inputs without keeping its intermediate results
+     * @param function The function to checkpoint. It receives the inputs in the given order
+     * @param inputs The inputs to the function
+     */
+    public static <T> Tensor<T> apply(Function<List<Tensor<T>>, Tensor<T>> function, List<Tensor<T>> inputs) {
+        return new CheckpointOperation<>(function, inputs).forward();
+    }
+}
@@ -1,7 +1,10 @@
 package de.c4vxl.core.nn;
 
+import de.c4vxl.core.nn.module.InitContext;
 import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
 import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
 import de.c4vxl.core.type.DType;
 import de.c4vxl.core.utils.TensorUtils;
 
@@ -11,25 +14,29 @@ import java.util.Arrays;
  * Acts as a lookup table for converting tokens into a fixed embedding-vector.
  * The vectors will be added to the last dimension (-1). Therefor the new shape of an input tensor: [1, 3] will become [1, 3, embedding_dim]
  */
-public class Embedding extends Module {
+public class Embedding extends Module implements TensorModule {
     public Tensor<?> weight;
 
+    protected Embedding() { }
+
     public Embedding(int num_embeddings, int embedding_dim) { this(num_embeddings, embedding_dim, DType.DEFAULT); }
     public Embedding(int num_embeddings, int embedding_dim, DType<?> dtype) {
-        this.weight = Tensor.ones(num_embeddings, embedding_dim).asDType(dtype);
+        this.weight = InitContext.parameter(dtype, () -> Tensor.ones(num_embeddings, embedding_dim).asDType(dtype), num_embeddings, embedding_dim);
     }
 
     public <T> Tensor<T> forward(Tensor<T> x) {
-        Integer[] indices = x.asInt().data;
+        return Tracer.record("Embedding", () -> {
+            Integer[] indices = x.asInt().data;
 
-        Integer[] newShape = Arrays.copyOf(x.shape.dimensions.clone(), x.shape.rank() + 1);
-        newShape[newShape.length - 1] = this.weight.size(1);
-        Tensor<T> result = Tensor.ones(TensorUtils.padShapeLeft(3, true, newShape)).asDType(x.dtype);
+            Integer[] newShape = Arrays.copyOf(x.shape.dimensions.clone(), x.shape.rank() + 1);
+            newShape[newShape.length - 1] = this.weight.size(1);
+            Tensor<T> result = Tensor.ones(TensorUtils.padShapeLeft(3, true, newShape)).asDType(x.dtype);
 
-        for (int i = 0; i < indices.length; i++) {
-            result = result.set(weight.get(indices[i]).asDType(result.dtype), 0, i, null);
-        }
+            for (int i = 0; i < indices.length; i++) {
+                result = result.set(weight.get(indices[i]).asDType(result.dtype), 0, i, null);
+            }
 
-        return result;
+            return result;
+        }, x, this.weight);
     }
 }
\ No newline at end of file
@@ -1,41 +1,65 @@
 package de.c4vxl.core.nn;
 
+import de.c4vxl.core.nn.module.InitContext;
 import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
 import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.lazy.Expression;
+import de.c4vxl.core.type.DType;
 
 /**
  * Applies Layer Normalization over a mini-batch of inputs.
  * <a href="https://pytorch.org/docs/stable/generated/torch.nn.LayerNorm.html">Read more</a>
  */
-public class LayerNorm extends Module {
-    public Tensor<Double> weight, bias;
+public class LayerNorm extends Module implements TensorModule {
+    public Tensor<?> weight, bias;
     public double epsilon;
 
     public LayerNorm(Integer... normalizedShape) { this(true, normalizedShape); }
     public LayerNorm(boolean bias, Integer... normalizedShape) { this(1e-05, bias, normalizedShape); }
-    public LayerNorm(double eps, boolean bias, Integer... normalizedShape) {
-        this.weight = Tensor.ones(normalizedShape).asDouble();
-        this.bias = bias ? Tensor.zeros(normalizedShape).asDouble() : null;
+    public LayerNorm(double eps, boolean bias, Integer... normalizedShape) { this(eps, bias, DType.DEFAULT, normalizedShape); }
+    public LayerNorm(double eps, boolean bias, DType<?> dtype, Integer... normalizedShape) {
+        this.weight = InitContext.parameter(dtype, () -> Tensor.ones(normalizedShape).asDType(dtype), normalizedShape);
+        this.bias = bias ? InitContext.parameter(dtype, () -> Tensor.zeros(normalizedShape).asDType(dtype), normalizedShape) : null;
         this.epsilon = eps;
     }
 
     public <T> Tensor<T> forward(Tensor<T> input) {
-        Tensor<Double> x = input.asDouble();
+        // floating point inputs are normalized in their own precision, everything else in double precision
+        if (input.dtype.isFloatingPoint())
+            return this.normalize(input);
+
+        return this.normalize(input.asDouble()).asDType(input.dtype);
+    }
+
+    private <T> Tensor<T> normalize(Tensor<T> x) {
+        Tensor<T> weight = this.weight.to(x.dtype);
+        Tensor<T> bias = this.bias == null ? null : this.bias.to(x.dtype);
 
         // compute mean and variance
-        Tensor<Double> mean = x.mean(-1, true);
-        Tensor<Double> variance = x.variance(-1, true);
+        Tensor<T> mean = x.mean(-1, true);
+        Tensor<T> variance = x.variance(-1, true);
+
+        // without a gradient the element wise part is computed in a single pass
+        if (!x.requires_grad && !weight.requires_grad && (bias == null || !bias.requires_grad)) {
+            Expression output = x.lazy().sub(mean.lazy()).div(variance.lazy().add(epsilon).sqrt()).mul(weight.lazy());
+
+            if (bias != null)
+                output = output.add(bias.lazy());
+
+            return output.evaluate(x.dtype);
+        }
 
         // normalize input
-        Tensor<Double> xNormalized = x.sub(mean).div(variance.add(epsilon).sqrt());
+        Tensor<T> xNormalized = x.sub(mean).div(variance.add(x.dtype.parse(epsilon)).sqrt());
 
         // apply scaling
-        Tensor<Double> output = xNormalized.mul(weight);
+        Tensor<T> output = xNormalized.mul(weight);
 
         // apply bias
         if (bias != null)
             output = output.add(bias);
 
-        return output.asDType(input.dtype);
+        return output;
     }
-}
\ No newline at end of file
+}
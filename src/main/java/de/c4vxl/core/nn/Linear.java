@@ -1,22 +1,26 @@
 package de.c4vxl.core.nn;
 
+import de.c4vxl.core.nn.module.InitContext;
 import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
 import de.c4vxl.core.tensor.Tensor;
 import de.c4vxl.core.type.DType;
 
 /**
  * A Linear-Layer-Module used for performing linear transformation by multiplying the input with learnable weights and adding an optional bias
  */
-public class Linear extends Module {
+public class Linear extends Module implements TensorModule {
     public Tensor<?> weight;
     public Tensor<?> bias;
 
+    protected Linear() { }
+
     public Linear(int in_features, int out_features) { this(in_features, out_features, true); }
     public Linear(int in_features, int out_features, boolean bias) { this(in_features, out_features, bias, DType.DEFAULT); }
     public Linear(int in_features, int out_features, boolean bias, DType<?> dtype) {
         double bound = 1. / Math.sqrt(in_features);
-        this.weight = Tensor.random(dtype, -bound, bound, in_features, out_features).asDType(dtype);
-        this.bias = bias ? Tensor.random(dtype, -bound, bound, out_features).asDType(dtype) : null;
+        this.weight = InitContext.parameter(dtype, () -> Tensor.random(dtype, -bound, bound, in_features, out_features), in_features, out_features);
+        this.bias = bias ? InitContext.parameter(dtype, () -> Tensor.random(dtype, -bound, bound, out_features), out_features) : null;
     }
 
     public <T> Tensor<T> forward(Tensor<T> input) {
@@ -26,10 +30,11 @@ public class Linear extends Module {
             input = input.unsqueeze(0);
         }
 
-        Tensor<T> result = input.matmul(this.weight.asDType(input.dtype));
+        // parameters of another dtype are cast on the fly and receive their gradient in their own dtype
+        Tensor<T> result = input.matmul(this.weight.to(input.dtype));
 
         if (this.bias != null)
-            result = result.add(this.bias.asDType(input.dtype));
+            result = result.add(this.bias.to(input.dtype));
 
         if (wasUnsqueezed)
             return result.squeeze(0);
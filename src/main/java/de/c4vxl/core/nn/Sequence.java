@@ -11,7 +11,7 @@ import java.util.Arrays;
 public class Sequence extends Module {
     public ArrayList<Module> modules = new ArrayList<>();
 
-    public Sequence(Module... modules) { this.append(modules); }
+    public Sequence(Module... modules) { this.modules.addAll(Arrays.asList(modules)); }
 
     /**
      * Append one or multiple modules at the end of the sequence
@@ -19,6 +19,7 @@ public class Sequence extends Module {
      */
     public Sequence append(Module... modules) {
         this.modules.addAll(Arrays.stream(modules).toList());
+        this.invalidate_registry();
         return this;
     }
 
@@ -29,6 +30,7 @@ public class Sequence extends Module {
      */
     public Sequence append(Module module, int idx) {
         this.modules.add(idx, module);
+        this.invalidate_registry();
         return this;
     }
 
@@ -38,6 +40,7 @@ public class Sequence extends Module {
      */
     public Sequence remove(int idx) {
         this.modules.remove(idx);
+        this.invalidate_registry();
         return this;
     }
 
@@ -47,6 +50,7 @@ public class Sequence extends Module {
      */
     public Sequence remove(Module module) {
         this.modules.remove(module);
+        this.invalidate_registry();
         return this;
     }
 
@@ -2,9 +2,10 @@ package de.c4vxl.core.nn.activation.type;
 
 import de.c4vxl.core.nn.activation.*;
 import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
 import de.c4vxl.core.tensor.Tensor;
 
-public abstract class Activation extends Module {
+public abstract class Activation extends Module implements TensorModule {
     public abstract <T> Tensor<T> forward(Tensor<T> input);
 
     public static Activation ReLU() { return new ReLU(); }
@@ -0,0 +1,61 @@
+package de.c4vxl.core.nn.module;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+
+import java.util.function.Supplier;
+
+/**
+ * Controls how modules initialize their parameters.
+ * While deferred initialization is enabled, parameters are created as deferred tensors that only know their dtype and shape.
+ * They are initialized the first time they are needed, unless {@link Module#load_state} replaces them first.
+ */
+public class InitContext {
+    private static final ThreadLocal<Boolean> deferred = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Checks if deferred initialization is enabled in the current thread
+     */
+    public static boolean isDeferred() { return deferred.get(); }
+
+    /**
+     * Set the deferred initialization context
+     * @param value Whether parameters should be initialized lazily
+     */
+    public static void setDeferred(boolean value) {
+        deferred.set(value);
+    }
+
+    /**
+     * Construct a module without initializing its parameters.
+     * Example: {@code InitContext.deferred(() -> new DecoderTransformer(...)).load(path)}
+     * @param constructor The constructor of the module
+     */
+    public static <M> M deferred(Supplier<M> constructor) {
+        boolean prev = isDeferred();
+        setDeferred(true);
+
+        try {
+            return constructor.get();
+        } finally {
+            setDeferred(prev);
+        }
+    }
+
+    /**
+     * Create a parameter. The initializer runs immediately, or the first time the parameter is needed if initialization is deferred
+     * @param dtype The dtype of the parameter
+     * @param initializer Creates the initial value of the parameter
+     * @param shape The shape of the parameter
+     */
+    public static Tensor<?> parameter(DType<?> dtype, Supplier<Tensor<?>> initializer, Integer... shape) {
+        if (!isDeferred())
+            return initializer.get();
+
+        return deferredParameter(dtype, initializer, shape);
+    }
+
+    private static <T> Tensor<T> deferredParameter(DType<T> dtype, Supplier<Tensor<?>> initializer, Integer... shape) {
+        return Tensor.deferred(dtype, () -> initializer.get().asDType(dtype).data, shape);
+    }
+}
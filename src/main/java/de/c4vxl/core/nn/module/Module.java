@@ -1,16 +1,17 @@
 package de.c4vxl.core.nn.module;
 
+import de.c4vxl.core.nn.quantized.QuantizedModule;
 import de.c4vxl.core.tensor.Tensor;
 import de.c4vxl.core.tensor.grad.GradContext;
 import de.c4vxl.core.utils.SerializationUtils;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * This class serves as a base for every "component".
@@ -19,6 +20,21 @@ import java.util.Map;
 public class Module {
     private boolean isTrainMode = true;
 
+    // the registry: a slot reading the current value of every state entry, all parameters and all submodules
+    private Map<String, Supplier<Object>> registry;
+    private Map<String, Tensor<?>> registryParameters;
+    private List<Tensor<?>> registryParameterList;
+    private Map<String, Module> registryModules;
+
+    // the modules whose registry was built with this module in it (including this module)
+    private final Set<Module> containers = Collections.newSetFromMap(new WeakHashMap<>());
+
+    // the forward functions of every module class by the classes of their arguments
+    private static final ClassValue<Map<List<Class<?>>, MethodHandle>> forwardHandles = new ClassValue<>() {
+        @Override
+        protected Map<List<Class<?>>, MethodHandle> computeValue(Class<?> type) { return new ConcurrentHashMap<>(); }
+    };
+
     /**
      * Returns {@code true} when the module is currently in train mode
      */
@@ -58,12 +74,38 @@ public class Module {
         return (T) this;
     }
 
+    /**
+     * Initialize all parameters whose initialization was deferred
+     * @see InitContext#deferred(java.util.function.Supplier)
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Module> T initialize() {
+        this.parameters().forEach(Tensor::materialize);
+        return (T) this;
+    }
+
     /**
      * Returns a list of all parameters of the model
      */
     public List<Tensor<?>> parameters() {
-        Tensor<?>[] params = this.state().values().stream().filter(x -> x instanceof Tensor<?>).toArray(Tensor<?>[]::new);
-        return List.of(params);
+        this.registry();
+        return this.registryParameterList;
+    }
+
+    /**
+     * Returns all parameters of the model by their path in the state
+     */
+    public Map<String, Tensor<?>> named_parameters() {
+        this.registry();
+        return this.registryParameters;
+    }
+
+    /**
+     * Returns this module and all of its submodules by their path. This module has the path ""
+     */
+    public Map<String, Module> named_modules() {
+        this.registry();
+        return Collections.unmodifiableMap(this.registryModules);
     }
 
     /**
@@ -71,10 +113,50 @@ public class Module {
      */
     public Map<String, Object> state() {
         Map<String, Object> state = new LinkedHashMap<>();
-        SerializationUtils.generateStateRecursively(this, state, "");
+        this.registry().forEach((name, slot) -> state.put(name, slot.get()));
         return state;
     }
 
+    /**
+     * Returns the registry of this module. It is built on first use and rebuilt after the structure of this module or one of its submodules changed.
+     * Every slot reads the current value of its entry, but the parameters are collected once per build
+     */
+    private Map<String, Supplier<Object>> registry() {
+        if (this.registry == null) {
+            Map<String, Supplier<Object>> slots = new LinkedHashMap<>();
+            Map<String, Module> modules = new LinkedHashMap<>();
+            SerializationUtils.generateRegistryRecursively(this, () -> this, slots, modules, "");
+
+            Map<String, Tensor<?>> parameters = new LinkedHashMap<>();
+            slots.forEach((name, slot) -> {
+                if (slot.get() instanceof Tensor<?> tensor)
+                    parameters.put(name, tensor);
+            });
+
+            this.registry = slots;
+            this.registryModules = modules;
+            this.registryParameters = Collections.unmodifiableMap(parameters);
+            this.registryParameterList = List.copyOf(parameters.values());
+
+            // submodules notify this module when their structure changes
+            modules.values().forEach(module -> module.containers.add(this));
+        }
+
+        return this.registry;
+    }
+
+    /**
+     * Invalidate the registry of this module and of every module containing it.
+     * Has to be called after submodules, parameter containers (lists, maps, arrays) or parameters of this module were added, removed or replaced outside of jNN
+     */
+    public void invalidate_registry() {
+        this.registry = null;
+
+        for (Module container : this.containers)
+            container.registry = null;
+        this.containers.clear();
+    }
+
     /**
      * Load the modules parameters from a state
      * @param state The state to load from
@@ -98,59 +180,111 @@ public class Module {
     /**
      * Export this module as json with pretty = false
      */
-    public String asJSON() { return SerializationUtils.stateToJSON(this.state(), false); }
+    public String asJSON() { return SerializationUtils.stateToJSON(this.exportable_state(), false); }
 
     /**
      * Export this module as json
      * @param pretty Enable pretty print
      */
     public String asJSON(boolean pretty) {
-        return SerializationUtils.stateToJSON(this.state(), pretty);
+        return SerializationUtils.stateToJSON(this.exportable_state(), pretty);
     }
 
     /**
-     * Export this module into a file
+     * Export this module into a file.
+     * Files ending with {@link de.c4vxl.core.utils.BinarySerializationUtils#EXTENSION} are stored in the binary format, all others as json
      * @param path The path to the file
      */
     public Module export(String path) {
-        SerializationUtils.export(this.state(), path);
+        SerializationUtils.export(this.exportable_state(), path);
         return this;
     }
 
     /**
-     * Load this module from a file
+     * Returns the state of this module for exporting it
+     * @throws UnsupportedOperationException If this module contains a {@link QuantizedModule}, whose weights aren't part of the state
+     */
+    private Map<String, Object> exportable_state() {
+        this.named_modules().forEach((name, module) -> {
+            if (module instanceof QuantizedModule)
+                throw new UnsupportedOperationException("Can't export the quantized module " + module.getClass().getSimpleName() + (name.isEmpty() ? "" : " at " + name)
+                        + ". Export the model before quantizing it.");
+        });
+
+        return this.state();
+    }
+
+    /**
+     * Load this module from a file.
+     * Files ending with {@link de.c4vxl.core.utils.BinarySerializationUtils#EXTENSION} are read in the binary format, all others as json
      * @param path The path to the file
      */
-    @SuppressWarnings("unchecked")
-    public <T extends Module> T load(String path) {
-        File file = new File(path);
+    public <T extends Module> T load(String path) { return this.load(path, false); }
 
-        if (!file.exists()) {
-            System.err.println("Trying to load module from non-existing file. Skipping...");
-            return null;
-        }
+    /**
+     * Load this module from a file.
+     * Files ending with {@link de.c4vxl.core.utils.BinarySerializationUtils#EXTENSION} are read in the binary format, all others as json
+     * @param path The path to the file
+     * @param lazy If enabled, the parameters of binary files are read the first time they are needed
+     */
+    public <T extends Module> T load(String path, boolean lazy) {
+        Map<String, Object> state = SerializationUtils.load(path, lazy);
+        return state == null ? null : this.load_state(state);
+    }
+
+    /**
+     * Find and invoke a forward function.
+     * A {@link TensorModule} called with a single tensor is called directly. Otherwise, the matching forward function is looked up once per class and argument classes
+     * @param args The arguments to pass to the forward function
+     */
+    public Object _forward(Object... args) {
+        if (args.length == 1 && args[0] instanceof Tensor<?> input && this instanceof TensorModule module)
+            return module.forward(input);
+
+        List<Class<?>> types = Arrays.stream(args).<Class<?>>map(arg -> arg == null ? null : arg.getClass()).toList();
+        MethodHandle forward = forwardHandles.get(this.getClass()).computeIfAbsent(types, key -> findForward(this.getClass(), key));
 
-        // load from file
         try {
-            return (T) this.fromJSON(Files.readString(file.toPath()));
-        } catch (IOException e) {
+            return forward.invokeExact((Object) this, args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Try to find and invoke a forward function
-     * @param args The arguments to pass to the forward function
+     * Find the forward function of a class accepting arguments of specific classes
+     * @return A handle of type (Object, Object[])Object
      */
-    public Object _forward(Object... args) {
+    private static MethodHandle findForward(Class<?> type, List<Class<?>> args) {
+        Method forward = Arrays.stream(type.getMethods())
+                .filter(m -> m.getName().equals("forward") && m.getParameterCount() == args.size() && !m.isBridge())
+                .filter(m -> {
+                    Class<?>[] params = m.getParameterTypes();
+                    for (int i = 0; i < params.length; i++)
+                        if (args.get(i) == null ? params[i].isPrimitive() : !MethodType.methodType(params[i]).wrap().returnType().isAssignableFrom(args.get(i)))
+                            return false;
+                    return true;
+                })
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No method for forwarding found! (Module: " + type.getName() + ", arguments: " + args + ")"));
+
+        MethodHandle handle;
         try {
-            return this.getClass()
-                    .getMethod("forward", Arrays.stream(args).map(Object::getClass).toArray(Class[]::new))
-                    .invoke(this, args);
-        } catch (Exception e) {
-            System.err.println("No method for forwarding found! (Module: " + this.getClass().getName() + ")");
-            return null;
+            handle = MethodHandles.publicLookup().unreflect(forward);
+        } catch (IllegalAccessException ignored) {
+            // public methods of classes that aren't public
+            try {
+                forward.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(forward);
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new RuntimeException("Can't access " + forward + "!", e);
+            }
         }
+
+        return handle.asSpreader(Object[].class, args.size())
+                .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
     }
 
     @Override
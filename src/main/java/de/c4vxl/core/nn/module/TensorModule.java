@@ -0,0 +1,15 @@
+package de.c4vxl.core.nn.module;
+
+import de.c4vxl.core.tensor.Tensor;
+
+/**
+ * A module that maps a single tensor onto a single tensor.
+ * {@link Module#_forward} and {@link de.c4vxl.core.nn.Sequence} call these modules directly instead of looking up their forward function.
+ */
+public interface TensorModule {
+    /**
+     * Forward an input through this module
+     * @param input The input
+     */
+    <T> Tensor<T> forward(Tensor<T> input);
+}
@@ -7,6 +7,7 @@
  *     <li>{@link de.c4vxl.core.nn.activation} - Activation functions like ReLU, Sigmoid, etc.</li>
  *     <li>{@link de.c4vxl.core.nn.loss} - Loss functions for training (e.g. CrossEntropyLoss or MSELoss).</li>
  *     <li>{@link de.c4vxl.core.nn.module} - Base class for neural network modules.</li>
+ *     <li>{@link de.c4vxl.core.nn.quantized} - Quantized layers for memory efficient inference.</li>
  * </ul>
  */
 package de.c4vxl.core.nn;
\ No newline at end of file
@@ -0,0 +1,70 @@
+package de.c4vxl.core.nn.quantized;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
+import de.c4vxl.core.type.DType;
+
+import java.lang.reflect.Array;
+import java.util.stream.IntStream;
+
+/**
+ * A Linear-Layer-Module that stores its weight as int8 with a scale per output channel and quantizes its input per row at runtime (dynamic quantization).
+ * The matrix multiplication is computed in int8 with int32 accumulation. This module is meant for inference and doesn't track gradients.
+ * @see de.c4vxl.core.utils.QuantizationUtils#quantizeDynamic(de.c4vxl.core.nn.module.Module)
+ */
+public class DynamicQuantizedLinear extends QuantizedLinear {
+    /**
+     * Quantize the weight of a linear layer
+     * @param linear The layer
+     */
+    public DynamicQuantizedLinear(Linear linear) {
+        super(linear);
+    }
+
+    @Override
+    public <T> Tensor<T> forward(Tensor<T> input) {
+        if (input.size(-1) != this.in_features)
+            throw new IllegalArgumentException("Expected last dimension of input to be " + this.in_features + " but got " + input.size(-1) + "!");
+
+        return Tracer.record("DynamicQuantizedLinear", () -> {
+            int rows = input.size() / this.in_features;
+
+            double[] x = new double[input.size()];
+            for (int i = 0; i < x.length; i++)
+                x[i] = DType.DOUBLE.parse(input.data[i]);
+
+            // quantize the activations
+            byte[] qx = new byte[x.length];
+            float[] xScales = new float[rows];
+            Int8Kernels.quantizeRows(x, rows, this.in_features, qx, xScales);
+
+            double[] b = new double[this.out_features];
+            if (this.bias != null)
+                for (int o = 0; o < b.length; o++)
+                    b[o] = DType.DOUBLE.parse(this.bias.data[o]);
+
+            @SuppressWarnings("unchecked")
+            T[] data = (T[]) Array.newInstance(input.dtype.clazz, rows * this.out_features);
+
+            IntStream channels = IntStream.range(0, this.out_features);
+            if ((long) rows * this.qweight.length > 1 << 16)
+                channels = channels.parallel();
+
+            channels.forEach(o -> {
+                int offset = o * this.in_features;
+                for (int r = 0; r < rows; r++) {
+                    int acc = Int8Kernels.dot(qx, r * this.in_features, this.qweight, offset, this.in_features);
+                    data[r * this.out_features + o] = input.dtype.parse((double) acc * xScales[r] * this.scales[o] + b[o]);
+                }
+            });
+
+            Integer[] shape = input.shape.dimensions.clone();
+            shape[shape.length - 1] = this.out_features;
+
+            Tensor<T> result = new Tensor<>(data, shape);
+            result.requires_grad = false;
+            return result;
+        }, input);
+    }
+}
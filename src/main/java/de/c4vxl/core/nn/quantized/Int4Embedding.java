@@ -0,0 +1,60 @@
+package de.c4vxl.core.nn.quantized;
+
+import de.c4vxl.core.nn.Embedding;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.utils.TensorUtils;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * An Embedding whose table is stored as 4-bit values, grouped along the embedding dimension with a half precision scale and zero-point per group.
+ * Only the looked up rows are dequantized. This module is meant for inference and doesn't track gradients.
+ * @see de.c4vxl.core.utils.QuantizationUtils#quantizeInt4(de.c4vxl.core.nn.module.Module, int)
+ */
+public class Int4Embedding extends Embedding implements QuantizedModule {
+    protected Int4Matrix qweight; // num_embeddings x embedding_dim
+
+    /**
+     * Quantize the table of an embedding
+     * @param embedding The embedding
+     * @param group_size The amount of values sharing a scale and zero-point (for example 32 or 64)
+     */
+    public Int4Embedding(Embedding embedding, int group_size) {
+        Tensor<?> weight = embedding.weight.materialize();
+        int embedding_dim = weight.size(1);
+
+        this.qweight = new Int4Matrix(weight.size(0), embedding_dim, group_size,
+                (r, c) -> DType.DOUBLE.parse(weight.data[r * embedding_dim + c]));
+        this.weight = null;
+    }
+
+    @Override
+    public <T> Tensor<T> forward(Tensor<T> x) {
+        return Tracer.record("Int4Embedding", () -> {
+            Integer[] indices = x.asInt().data;
+            int embedding_dim = this.qweight.cols;
+
+            Integer[] newShape = Arrays.copyOf(x.shape.dimensions.clone(), x.shape.rank() + 1);
+            newShape[newShape.length - 1] = embedding_dim;
+
+            // gather and dequantize the rows of the indices
+            double[] row = new double[embedding_dim];
+
+            @SuppressWarnings("unchecked")
+            T[] data = (T[]) Array.newInstance(x.dtype.clazz, indices.length * embedding_dim);
+            for (int i = 0; i < indices.length; i++) {
+                this.qweight.row(indices[i], row, 0);
+
+                for (int j = 0; j < embedding_dim; j++)
+                    data[i * embedding_dim + j] = x.dtype.parse(row[j]);
+            }
+
+            Tensor<T> result = new Tensor<>(data, TensorUtils.padShapeLeft(3, true, newShape));
+            result.requires_grad = false;
+            return result;
+        }, x);
+    }
+}
@@ -0,0 +1,74 @@
+package de.c4vxl.core.nn.quantized;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
+import de.c4vxl.core.type.DType;
+
+import java.lang.reflect.Array;
+import java.util.stream.IntStream;
+
+/**
+ * A Linear-Layer-Module whose weight is stored as 4-bit values, grouped along the input features with a half precision scale and zero-point per group.
+ * The matrix-vector products run directly on the packed weight. This module is meant for inference and doesn't track gradients.
+ * @see de.c4vxl.core.utils.QuantizationUtils#quantizeInt4(de.c4vxl.core.nn.module.Module, int)
+ */
+public class Int4Linear extends Linear implements QuantizedModule {
+    protected Int4Matrix qweight; // out_features x in_features
+
+    /**
+     * Quantize the weight of a linear layer
+     * @param linear The layer
+     * @param group_size The amount of input features sharing a scale and zero-point (for example 32 or 64)
+     */
+    public Int4Linear(Linear linear, int group_size) {
+        Tensor<?> weight = linear.weight.materialize();
+        int out_features = weight.size(1);
+
+        this.qweight = new Int4Matrix(out_features, weight.size(0), group_size,
+                (o, k) -> DType.DOUBLE.parse(weight.data[k * out_features + o]));
+        this.bias = linear.bias == null ? null : linear.bias.detach();
+        this.weight = null;
+    }
+
+    @Override
+    public <T> Tensor<T> forward(Tensor<T> input) {
+        int in_features = this.qweight.cols, out_features = this.qweight.rows;
+
+        if (input.size(-1) != in_features)
+            throw new IllegalArgumentException("Expected last dimension of input to be " + in_features + " but got " + input.size(-1) + "!");
+
+        return Tracer.record("Int4Linear", () -> {
+            int rows = input.size() / in_features;
+
+            double[] x = new double[input.size()];
+            for (int i = 0; i < x.length; i++)
+                x[i] = DType.DOUBLE.parse(input.data[i]);
+
+            double[][] sums = new double[rows][];
+            for (int r = 0; r < rows; r++)
+                sums[r] = this.qweight.groupSums(x, r * in_features);
+
+            @SuppressWarnings("unchecked")
+            T[] data = (T[]) Array.newInstance(input.dtype.clazz, rows * out_features);
+
+            IntStream channels = IntStream.range(0, out_features);
+            if ((long) rows * in_features * out_features > 1 << 16)
+                channels = channels.parallel();
+
+            channels.forEach(o -> {
+                double b = this.bias == null ? 0 : DType.DOUBLE.parse(this.bias.data[o]);
+
+                for (int r = 0; r < rows; r++)
+                    data[r * out_features + o] = input.dtype.parse(this.qweight.dot(o, x, r * in_features, sums[r]) + b);
+            });
+
+            Integer[] shape = input.shape.dimensions.clone();
+            shape[shape.length - 1] = out_features;
+
+            Tensor<T> result = new Tensor<>(data, shape);
+            result.requires_grad = false;
+            return result;
+        }, input);
+    }
+}
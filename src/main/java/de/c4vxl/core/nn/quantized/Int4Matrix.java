@@ -0,0 +1,118 @@
+package de.c4vxl.core.nn.quantized;
+
+/**
+ * A matrix of 4-bit values packed two per byte.
+ * Every row is split into groups of {@code group_size} columns which share a half precision scale and zero-point: {@code value = q * scale + zero}.
+ */
+final class Int4Matrix {
+    @FunctionalInterface
+    interface Values { double get(int row, int col); }
+
+    final int rows, cols, group_size, groups;
+    final byte[] packed;
+    final short[] scales, zeros;
+
+    /**
+     * Quantize a matrix
+     * @param rows The amount of rows
+     * @param cols The amount of columns
+     * @param group_size The amount of columns sharing a scale and zero-point
+     * @param values The values of the matrix
+     */
+    Int4Matrix(int rows, int cols, int group_size, Values values) {
+        if (group_size <= 0)
+            throw new IllegalArgumentException("Group size must be positive!");
+
+        this.rows = rows;
+        this.cols = cols;
+        this.group_size = group_size;
+        this.groups = (cols + group_size - 1) / group_size;
+        this.packed = new byte[(rows * cols + 1) / 2];
+        this.scales = new short[rows * this.groups];
+        this.zeros = new short[rows * this.groups];
+
+        for (int r = 0; r < rows; r++) {
+            for (int g = 0; g < this.groups; g++) {
+                int start = g * group_size, end = Math.min(cols, start + group_size);
+
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                for (int c = start; c < end; c++) {
+                    double value = values.get(r, c);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+
+                // scales and zero-points are rounded to half precision before quantizing against them
+                this.scales[r * this.groups + g] = Float.floatToFloat16((float) (max == min ? 1 : (max - min) / 15));
+                this.zeros[r * this.groups + g] = Float.floatToFloat16((float) min);
+                float scale = this.scale(r * this.groups + g), zero = this.zero(r * this.groups + g);
+
+                for (int c = start; c < end; c++) {
+                    long q = Math.max(0, Math.min(15, Math.round((values.get(r, c) - zero) / scale)));
+                    int n = r * cols + c;
+                    this.packed[n >> 1] |= (byte) (q << ((n & 1) << 2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the quantized value at a flat index
+     */
+    int q(int n) { return (this.packed[n >> 1] >> ((n & 1) << 2)) & 0xF; }
+
+    float scale(int group) { return Float.float16ToFloat(this.scales[group]); }
+    float zero(int group) { return Float.float16ToFloat(this.zeros[group]); }
+
+    /**
+     * Dequantize a row
+     * @param row The row
+     * @param out The array to write the row into
+     * @param offset The offset into {@code out}
+     */
+    void row(int row, double[] out, int offset) {
+        for (int g = 0; g < this.groups; g++) {
+            float scale = this.scale(row * this.groups + g), zero = this.zero(row * this.groups + g);
+
+            for (int c = g * this.group_size; c < Math.min(this.cols, (g + 1) * this.group_size); c++)
+                out[offset + c] = this.q(row * this.cols + c) * scale + zero;
+        }
+    }
+
+    /**
+     * Sum up a vector within every group of columns. Required by {@link Int4Matrix#dot}
+     * @param x The vector
+     * @param offset The offset of the vector
+     */
+    double[] groupSums(double[] x, int offset) {
+        double[] sums = new double[this.groups];
+        for (int c = 0; c < this.cols; c++)
+            sums[c / this.group_size] += x[offset + c];
+        return sums;
+    }
+
+    /**
+     * Compute the dot product of a row with a vector without dequantizing the row
+     * @param row The row
+     * @param x The vector
+     * @param offset The offset of the vector
+     * @param sums The group sums of the vector
+     */
+    double dot(int row, double[] x, int offset, double[] sums) {
+        double result = 0;
+        int base = row * this.cols;
+
+        for (int g = 0; g < this.groups; g++) {
+            int start = g * this.group_size, end = Math.min(this.cols, start + this.group_size);
+
+            // sum((q * scale + zero) * x) = scale * sum(q * x) + zero * sum(x)
+            double acc = 0;
+            for (int c = start; c < end; c++)
+                acc += this.q(base + c) * x[offset + c];
+
+            result += acc * this.scale(row * this.groups + g) + this.zero(row * this.groups + g) * sums[g];
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package de.c4vxl.core.nn.quantized;
+
+/**
+ * int8 kernels used by the dynamically quantized layers.
+ * The dot products accumulate in int32.
+ */
+final class Int8Kernels {
+    private Int8Kernels() { }
+
+    /**
+     * Symmetrically quantize every row of a matrix to int8
+     * @param x The matrix (rows x cols)
+     * @param q The quantized matrix
+     * @param scales The scale of every row
+     */
+    static void quantizeRows(double[] x, int rows, int cols, byte[] q, float[] scales) {
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+
+            double max = 0;
+            for (int k = 0; k < cols; k++)
+                max = Math.max(max, Math.abs(x[offset + k]));
+
+            float scale = max == 0 ? 1 : (float) (max / 127);
+            scales[r] = scale;
+
+            for (int k = 0; k < cols; k++)
+                q[offset + k] = (byte) Math.max(-127, Math.min(127, Math.round(x[offset + k] / scale)));
+        }
+    }
+
+    /**
+     * Returns the dot product of two int8 vectors
+     */
+    static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int n) {
+        int acc0 = 0, acc1 = 0, acc2 = 0, acc3 = 0, k = 0;
+        for (; k + 3 < n; k += 4) {
+            acc0 += a[aOffset + k] * b[bOffset + k];
+            acc1 += a[aOffset + k + 1] * b[bOffset + k + 1];
+            acc2 += a[aOffset + k + 2] * b[bOffset + k + 2];
+            acc3 += a[aOffset + k + 3] * b[bOffset + k + 3];
+        }
+        for (; k < n; k++)
+            acc0 += a[aOffset + k] * b[bOffset + k];
+
+        return acc0 + acc1 + acc2 + acc3;
+    }
+}
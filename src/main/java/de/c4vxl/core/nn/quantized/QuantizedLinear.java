@@ -0,0 +1,109 @@
+package de.c4vxl.core.nn.quantized;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
+import de.c4vxl.core.type.DType;
+
+import java.lang.reflect.Array;
+import java.util.stream.IntStream;
+
+/**
+ * A Linear-Layer-Module whose weight is stored as int8 with a scale per output channel (weight-only quantization).
+ * The weight is dequantized on the fly during the matrix multiplication. This module is meant for inference and doesn't track gradients.
+ * @see de.c4vxl.core.utils.QuantizationUtils#quantize(de.c4vxl.core.nn.module.Module)
+ */
+public class QuantizedLinear extends Linear implements QuantizedModule {
+    protected int in_features, out_features;
+    protected byte[] qweight;   // out_features x in_features
+    protected float[] scales;   // out_features
+
+    /**
+     * Quantize the weight of a linear layer
+     * @param linear The layer
+     */
+    public QuantizedLinear(Linear linear) {
+        linear.weight.materialize();
+
+        this.in_features = linear.weight.size(0);
+        this.out_features = linear.weight.size(1);
+        this.qweight = new byte[this.in_features * this.out_features];
+        this.scales = new float[this.out_features];
+        this.bias = linear.bias == null ? null : linear.bias.detach();
+
+        // symmetric quantization of every output channel (column of the weight)
+        for (int o = 0; o < this.out_features; o++) {
+            double max = 0;
+            for (int k = 0; k < this.in_features; k++)
+                max = Math.max(max, Math.abs(DType.DOUBLE.parse(linear.weight.data[k * this.out_features + o])));
+
+            float scale = max == 0 ? 1 : (float) (max / 127);
+            this.scales[o] = scale;
+
+            for (int k = 0; k < this.in_features; k++) {
+                long q = Math.round(DType.DOUBLE.parse(linear.weight.data[k * this.out_features + o]) / scale);
+                this.qweight[o * this.in_features + k] = (byte) Math.max(-127, Math.min(127, q));
+            }
+        }
+
+        this.weight = null;
+    }
+
+    /**
+     * Returns the dequantized weight
+     */
+    public Tensor<Double> dequantize() {
+        Double[] data = new Double[this.qweight.length];
+        for (int o = 0; o < this.out_features; o++)
+            for (int k = 0; k < this.in_features; k++)
+                data[k * this.out_features + o] = (double) this.qweight[o * this.in_features + k] * this.scales[o];
+
+        return new Tensor<>(data, this.in_features, this.out_features);
+    }
+
+    @Override
+    public <T> Tensor<T> forward(Tensor<T> input) {
+        if (input.size(-1) != this.in_features)
+            throw new IllegalArgumentException("Expected last dimension of input to be " + this.in_features + " but got " + input.size(-1) + "!");
+
+        return Tracer.record("QuantizedLinear", () -> {
+            int rows = input.size() / this.in_features;
+
+            double[] x = new double[input.size()];
+            for (int i = 0; i < x.length; i++)
+                x[i] = DType.DOUBLE.parse(input.data[i]);
+
+            double[] b = new double[this.out_features];
+            if (this.bias != null)
+                for (int o = 0; o < b.length; o++)
+                    b[o] = DType.DOUBLE.parse(this.bias.data[o]);
+
+            @SuppressWarnings("unchecked")
+            T[] data = (T[]) Array.newInstance(input.dtype.clazz, rows * this.out_features);
+
+            IntStream channels = IntStream.range(0, this.out_features);
+            if ((long) rows * this.qweight.length > 1 << 16)
+                channels = channels.parallel();
+
+            channels.forEach(o -> {
+                int offset = o * this.in_features;
+                for (int r = 0; r < rows; r++) {
+                    int row = r * this.in_features;
+
+                    double acc = 0;
+                    for (int k = 0; k < this.in_features; k++)
+                        acc += x[row + k] * this.qweight[offset + k];
+
+                    data[r * this.out_features + o] = input.dtype.parse(acc * this.scales[o] + b[o]);
+                }
+            });
+
+            Integer[] shape = input.shape.dimensions.clone();
+            shape[shape.length - 1] = this.out_features;
+
+            Tensor<T> result = new Tensor<>(data, shape);
+            result.requires_grad = false;
+            return result;
+        }, input);
+    }
+}
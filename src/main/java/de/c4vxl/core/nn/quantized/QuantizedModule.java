@@ -0,0 +1,8 @@
+package de.c4vxl.core.nn.quantized;
+
+/**
+ * A module whose quantized weights are not part of its state.
+ * Models containing such a module can't be exported. Export the model before quantizing it and quantize it again after loading.
+ * @see de.c4vxl.core.nn.module.Module#export(String)
+ */
+public interface QuantizedModule { }
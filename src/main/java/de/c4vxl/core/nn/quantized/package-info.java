@@ -0,0 +1,6 @@
+/**
+ * This package contains quantized replacements of layers
+ * used for memory efficient inference.
+ * @see de.c4vxl.core.utils.QuantizationUtils
+ */
+package de.c4vxl.core.nn.quantized;
@@ -0,0 +1,166 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the implementation of an Adafactor optimizer.
+ * For parameters with two or more dimensions the second moment is factored into running averages over the rows and the columns,
+ * so its memory grows with {@code rows + cols} instead of {@code rows * cols}. Leading dimensions are treated as additional rows.
+ * The step size is relative to the scale of each parameter and every update is clipped by its root mean square.
+ * <a href="https://arxiv.org/abs/1804.04235">Read more</a>
+ */
+public class AdafactorOptimizer extends AbstractOptimizer {
+    protected final double beta1, decay_rate, epsilon1, epsilon2, clip_threshold, weight_decay;
+    protected int timestep;
+    protected final Map<Tensor<?>, Slot> slots;
+
+    // the decay of the second moment and the relative step size of the current step
+    private double beta2, rho;
+
+    /**
+     * The optimizer state of a single parameter
+     */
+    protected static class Slot {
+        public final int rows, cols;
+
+        /**
+         * The factored second moment. Null for parameters with less than two dimensions
+         */
+        public double[] row, col;
+
+        /**
+         * The full second moment of parameters with less than two dimensions
+         */
+        public double[] v;
+
+        /**
+         * The first moment. Null if momentum is disabled
+         */
+        public double[] m;
+
+        protected Slot(Tensor<?> parameter, boolean momentum) {
+            this.cols = parameter.dim() >= 2 ? parameter.size(-1) : parameter.size();
+            this.rows = parameter.size() / Math.max(1, this.cols);
+
+            if (parameter.dim() >= 2) {
+                this.row = new double[this.rows];
+                this.col = new double[this.cols];
+            } else
+                this.v = new double[parameter.size()];
+
+            if (momentum)
+                this.m = new double[parameter.size()];
+        }
+    }
+
+    public AdafactorOptimizer(List<Tensor<?>> parameters, double learningRate) {
+        this(parameters, learningRate, 0, -0.8, 1e-30, 1e-3, 1.0, 0);
+    }
+
+    /**
+     * @param parameters The parameters to optimize
+     * @param learningRate The maximum relative step size
+     * @param beta1 The decay of the first moment. Set to 0 to disable momentum and save its memory
+     * @param decay_rate The second moment decays with {@code 1 - t^decay_rate} in step {@code t}
+     * @param epsilon1 Added to the squared gradients
+     * @param epsilon2 The minimum scale of a parameter
+     * @param clip_threshold The maximum root mean square of an update
+     * @param weight_decay The decoupled weight decay
+     */
+    public AdafactorOptimizer(List<Tensor<?>> parameters, double learningRate, double beta1, double decay_rate, double epsilon1, double epsilon2, double clip_threshold, double weight_decay) {
+        super(parameters, learningRate);
+        this.beta1 = beta1;
+        this.decay_rate = decay_rate;
+        this.epsilon1 = epsilon1;
+        this.epsilon2 = epsilon2;
+        this.clip_threshold = clip_threshold;
+        this.weight_decay = weight_decay;
+        this.timestep = 0;
+
+        this.slots = new IdentityHashMap<>();
+        for (Tensor<?> parameter : this.parameters)
+            this.slots.put(parameter, new Slot(parameter, beta1 > 0));
+    }
+
+    @Override
+    protected int chunk_size() { return Integer.MAX_VALUE; }
+
+    @Override
+    protected void prepare_step() {
+        timestep++;
+
+        this.beta2 = 1.0 - Math.pow(timestep, this.decay_rate);
+        this.rho = Math.min(this.learningRate, 1.0 / Math.sqrt(timestep));
+    }
+
+    @Override
+    protected void update(Chunk chunk) {
+        Slot slot = this.slots.get(chunk.parameter());
+        double[] data = chunk.data(), grad = chunk.grad();
+        int from = chunk.from(), n = chunk.to() - from;
+
+        // the step size is relative to the scale of the parameter
+        double squares = 0;
+        for (int i = from; i < chunk.to(); i++)
+            squares += data[i] * data[i];
+        double alpha = Math.max(this.epsilon2, Math.sqrt(squares / n)) * this.rho;
+
+        // update the second moment
+        if (slot.row != null) {
+            double[] rows = new double[slot.rows], cols = new double[slot.cols];
+            for (int r = 0, i = from; r < slot.rows; r++)
+                for (int c = 0; c < slot.cols; c++, i++) {
+                    double g2 = grad[i] * grad[i] + this.epsilon1;
+                    rows[r] += g2;
+                    cols[c] += g2;
+                }
+
+            for (int r = 0; r < slot.rows; r++)
+                slot.row[r] = this.beta2 * slot.row[r] + (1 - this.beta2) * rows[r] / slot.cols;
+            for (int c = 0; c < slot.cols; c++)
+                slot.col[c] = this.beta2 * slot.col[c] + (1 - this.beta2) * cols[c] / slot.rows;
+        } else
+            for (int k = 0; k < n; k++)
+                slot.v[k] = this.beta2 * slot.v[k] + (1 - this.beta2) * (grad[from + k] * grad[from + k] + this.epsilon1);
+
+        // v_hat = row * col / mean(row)
+        double row_mean = 0;
+        if (slot.row != null) {
+            for (double r : slot.row) row_mean += r;
+            row_mean /= slot.rows;
+        }
+
+        // clip the update by its root mean square
+        double update_squares = 0;
+        for (int k = 0; k < n; k++) {
+            double u = grad[from + k] / Math.sqrt(variance(slot, k, row_mean));
+            update_squares += u * u;
+        }
+        double clip = 1.0 / Math.max(1.0, Math.sqrt(update_squares / n) / this.clip_threshold);
+        double decay = 1.0 - this.learningRate * this.weight_decay;
+
+        for (int k = 0, i = from; k < n; k++, i++) {
+            double u = clip * grad[i] / Math.sqrt(variance(slot, k, row_mean));
+
+            if (slot.m != null)
+                u = slot.m[k] = this.beta1 * slot.m[k] + (1 - this.beta1) * u;
+
+            data[i] = data[i] * decay - alpha * u;
+        }
+    }
+
+    /**
+     * Returns the second moment estimate of an element
+     */
+    private static double variance(Slot slot, int k, double row_mean) {
+        if (slot.row == null)
+            return slot.v[k];
+
+        return slot.row[k / slot.cols] * slot.col[k % slot.cols] / row_mean;
+    }
+}
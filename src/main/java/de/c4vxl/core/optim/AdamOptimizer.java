@@ -3,17 +3,36 @@ package de.c4vxl.core.optim;
 import de.c4vxl.core.optim.type.AbstractOptimizer;
 import de.c4vxl.core.tensor.Tensor;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * This is the implementation of an Adam optimizer.
+ * The moments of every parameter are kept in a slot bound to the parameter itself (not to its values),
+ * and the moments and the parameter are updated in a single in-place pass.
+ * Parameters are updated in parallel.
+ */
 public class AdamOptimizer extends AbstractOptimizer {
-    public static int MAX_MEMORY = 1000;
-
-    private final double beta1, beta2, epsilon;
-    private int timestep;
-    private final Map<Tensor<?>, Tensor<?>> m, v;
+    protected final double beta1, beta2, epsilon;
+    protected int timestep;
+    protected final Map<Tensor<?>, Slot> slots;
+
+    // the learning rate divided by the bias correction of the first moment,
+    // the inverse bias correction of the second moment and the factor the parameters are multiplied with before the update
+    private double step_size, v_correction, decay;
+
+    /**
+     * The optimizer state of a single parameter
+     */
+    protected static class Slot {
+        public double[] m, v;
+
+        protected Slot(int size) {
+            this.m = new double[size];
+            this.v = new double[size];
+        }
+    }
 
     public AdamOptimizer(List<Tensor<?>> parameters, double learningRate) {
         this(parameters, learningRate, 0.9, 0.999, 1e-8);
@@ -25,76 +44,44 @@ public class AdamOptimizer extends AbstractOptimizer {
         this.beta2 = beta2;
         this.epsilon = epsilon;
         this.timestep = 0;
-        this.m = new HashMap<>();
-        this.v = new HashMap<>();
+
+        this.slots = new IdentityHashMap<>();
+        for (Tensor<?> parameter : this.parameters)
+            this.slots.put(parameter, new Slot(parameter.size()));
     }
 
+    /**
+     * Returns the decoupled weight decay applied in every step
+     */
+    protected double weight_decay() { return 0; }
+
     @Override
-    public void step() {
+    protected void prepare_step() {
         timestep++;
 
-        for (Tensor<?> parameter : this.parameters) {
-            this.handle(parameter);
-
-            // "Forget" older values
-            prune(m);
-            prune(v);
-        }
-    }
-
-    private void prune(Map<Tensor<?>, Tensor<?>> map) {
-        while (map.size() > MAX_MEMORY) {
-            Iterator<Tensor<?>> it = map.keySet().iterator();
-            if (it.hasNext()) {
-                it.next();
-                it.remove();
-            } else {
-                break;
-            }
-        }
+        this.step_size = this.learningRate / (1.0 - Math.pow(this.beta1, timestep));
+        this.v_correction = 1.0 / (1.0 - Math.pow(this.beta2, timestep));
+        this.decay = 1.0 - this.learningRate * this.weight_decay();
     }
 
-    @SuppressWarnings("unchecked")
-    protected <T> Tensor<T> calculateStep(Tensor<T> parameter) {
-        // Initialize moments if necessary
-        if (!m.containsKey(parameter)) {
-            m.put(parameter, Tensor.zeros(parameter.shape.dimensions).asDType(parameter.dtype));
-            v.put(parameter, Tensor.zeros(parameter.shape.dimensions).asDType(parameter.dtype));
-        }
-
-        Tensor<T> m_t = (Tensor<T>) m.get(parameter);
-        Tensor<T> v_t = (Tensor<T>) v.get(parameter);
-
-        T beta1 = parameter.dtype.parse(this.beta1);
-        T beta2 = parameter.dtype.parse(this.beta2);
-        T oneMinusBeta1 = parameter.dtype.parse(1 - this.beta1);
-        T oneMinusBeta2 = parameter.dtype.parse(1 - this.beta2);
-
-        // m_t = beta1 * m_t + (1 - beta1) * grad
-        Tensor<T> m_u = m_t.mul(beta1).add(parameter.grad.mul(oneMinusBeta1));
-        m.put(parameter, m_u);
-
-        // v_t = beta2 * v + (1 - beta2) * grad^2
-        Tensor<T> gradSquared = parameter.grad.pow(2.);
-        Tensor<T> v_u = v_t.mul(beta2).add(gradSquared.mul(oneMinusBeta2));
-        v.put(parameter, v_u);
-
-        // Bias correction
-        T bc1 = parameter.dtype.parse(1.0 - Math.pow(this.beta1, timestep));
-        Tensor<T> m_hat = m_u.div(bc1);
-        T bc2 = parameter.dtype.parse(1.0 - Math.pow(this.beta2, timestep));
-        Tensor<T> v_hat = v_u.div(bc2);
+    /**
+     * Update a chunk of a parameter and its moments in place
+     */
+    @Override
+    protected void update(Chunk chunk) {
+        Slot slot = this.slots.get(chunk.parameter());
+        double[] data = chunk.data(), grad = chunk.grad(), m = slot.m, v = slot.v;
 
-        // update = learningRate * m_hat / (sqrt(v_hat) + epsilon)
-        Tensor<T> denom = v_hat.sqrt().add(parameter.dtype.parse(this.epsilon));
-        return m_hat.div(denom).mul(parameter.dtype.parse(this.learningRate));
-    }
+        for (int i = chunk.from(), k = i - chunk.offset(); i < chunk.to(); i++, k++) {
+            double g = grad[i];
 
-    protected <T> void handle(Tensor<T> parameter) {
-        Tensor<T> updated = parameter.sub(this.calculateStep(parameter));
+            // m_t = beta1 * m + (1 - beta1) * grad
+            // v_t = beta2 * v + (1 - beta2) * grad^2
+            double m_t = m[k] = this.beta1 * m[k] + (1 - this.beta1) * g;
+            double v_t = v[k] = this.beta2 * v[k] + (1 - this.beta2) * g * g;
 
-        // Update parameter
-        // Detach to prevent gradients from being reused in next training step
-        parameter.update(updated.detach(true));
+            // p = p * decay - learningRate * m_hat / (sqrt(v_hat) + epsilon)
+            data[i] = data[i] * decay - step_size * m_t / (Math.sqrt(v_t * v_correction) + this.epsilon);
+        }
     }
-}
\ No newline at end of file
+}
@@ -20,14 +20,5 @@ public class AdamWOptimizer extends AdamOptimizer {
     }
 
     @Override
-    protected <T> void handle(Tensor<T> parameter) {
-        // Apply weight decay
-        Tensor<T> decayTerm = parameter.mul(parameter.dtype.parse(this.learningRate * this.weight_decay));
-
-        Tensor<T> updated = parameter.sub(calculateStep(parameter)).sub(decayTerm);
-
-        // Update parameter
-        // Detach to prevent gradients from being reused in next training step
-        parameter.update(updated.detach(true));
-    }
-}
\ No newline at end of file
+    protected double weight_decay() { return this.weight_decay; }
+}
@@ -0,0 +1,97 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the implementation of a LAMB optimizer.
+ * It computes the Adam update (including weight decay) and scales it per parameter by the trust ratio {@code ||p|| / ||update||},
+ * which keeps training stable with large batches.
+ * <a href="https://arxiv.org/abs/1904.00962">Read more</a>
+ */
+public class LAMBOptimizer extends AbstractOptimizer {
+    protected final double beta1, beta2, epsilon, weight_decay;
+    protected int timestep;
+    protected final Map<Tensor<?>, Slot> slots;
+
+    // the inverse bias corrections of the moments
+    private double m_correction, v_correction;
+
+    /**
+     * The optimizer state of a single parameter
+     */
+    protected static class Slot {
+        public double[] m, v;
+
+        protected Slot(int size) {
+            this.m = new double[size];
+            this.v = new double[size];
+        }
+    }
+
+    public LAMBOptimizer(List<Tensor<?>> parameters, double learningRate) {
+        this(parameters, learningRate, 0.9, 0.999, 1e-6, 0.01);
+    }
+
+    public LAMBOptimizer(List<Tensor<?>> parameters, double learningRate, double beta1, double beta2, double epsilon, double weight_decay) {
+        super(parameters, learningRate);
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+        this.weight_decay = weight_decay;
+        this.timestep = 0;
+
+        this.slots = new IdentityHashMap<>();
+        for (Tensor<?> parameter : this.parameters)
+            this.slots.put(parameter, new Slot(parameter.size()));
+    }
+
+    // the trust ratio needs the norms of whole parameters
+    @Override
+    protected int chunk_size() { return Integer.MAX_VALUE; }
+
+    @Override
+    protected void prepare_step() {
+        timestep++;
+
+        this.m_correction = 1.0 / (1.0 - Math.pow(this.beta1, timestep));
+        this.v_correction = 1.0 / (1.0 - Math.pow(this.beta2, timestep));
+    }
+
+    @Override
+    protected void update(Chunk chunk) {
+        Slot slot = this.slots.get(chunk.parameter());
+        double[] data = chunk.data(), grad = chunk.grad(), m = slot.m, v = slot.v;
+
+        // update the moments and measure the update
+        double update_norm = 0;
+        for (int i = chunk.from(), k = i - chunk.offset(); i < chunk.to(); i++, k++) {
+            double g = grad[i];
+            m[k] = this.beta1 * m[k] + (1 - this.beta1) * g;
+            v[k] = this.beta2 * v[k] + (1 - this.beta2) * g * g;
+
+            double u = this.direction(m[k], v[k], data[i]);
+            update_norm += u * u;
+        }
+
+        // trust ratio = ||p|| / ||update||
+        double parameter_norm = Math.sqrt(squared_norm(data, chunk.from(), chunk.to()));
+        update_norm = Math.sqrt(update_norm);
+        double trust = parameter_norm > 0 && update_norm > 0 ? parameter_norm / update_norm : 1.0;
+
+        double step_size = this.learningRate * trust;
+        for (int i = chunk.from(), k = i - chunk.offset(); i < chunk.to(); i++, k++)
+            data[i] -= step_size * this.direction(m[k], v[k], data[i]);
+    }
+
+    /**
+     * Returns the Adam update of an element with weight decay: m_hat / (sqrt(v_hat) + epsilon) + weight_decay * p
+     */
+    private double direction(double m, double v, double p) {
+        return m * this.m_correction / (Math.sqrt(v * this.v_correction) + this.epsilon) + this.weight_decay * p;
+    }
+}
@@ -0,0 +1,67 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the implementation of a LARS optimizer.
+ * It is SGD with momentum where the learning rate of every parameter is scaled by the trust ratio
+ * {@code trust_coefficient * ||p|| / (||grad|| + weight_decay * ||p||)}, which keeps training stable with large batches.
+ * <a href="https://arxiv.org/abs/1708.03888">Read more</a>
+ */
+public class LARSOptimizer extends AbstractOptimizer {
+    protected final double momentum, weight_decay, trust_coefficient, epsilon;
+    protected final Map<Tensor<?>, double[]> velocities;
+
+    public LARSOptimizer(List<Tensor<?>> parameters, double learningRate) {
+        this(parameters, learningRate, 0.9, 0, 0.001, 1e-8);
+    }
+
+    /**
+     * @param parameters The parameters to optimize
+     * @param learningRate The global learning rate
+     * @param momentum The momentum
+     * @param weight_decay The weight decay
+     * @param trust_coefficient The scale of the trust ratio
+     * @param epsilon Added to the denominator of the trust ratio
+     */
+    public LARSOptimizer(List<Tensor<?>> parameters, double learningRate, double momentum, double weight_decay, double trust_coefficient, double epsilon) {
+        super(parameters, learningRate);
+        this.momentum = momentum;
+        this.weight_decay = weight_decay;
+        this.trust_coefficient = trust_coefficient;
+        this.epsilon = epsilon;
+
+        this.velocities = new IdentityHashMap<>();
+        for (Tensor<?> parameter : this.parameters)
+            this.velocities.put(parameter, new double[parameter.size()]);
+    }
+
+    // the trust ratio needs the norms of whole parameters
+    @Override
+    protected int chunk_size() { return Integer.MAX_VALUE; }
+
+    @Override
+    protected void update(Chunk chunk) {
+        double[] data = chunk.data(), grad = chunk.grad(), velocity = this.velocities.get(chunk.parameter());
+
+        double parameter_norm = Math.sqrt(squared_norm(data, chunk.from(), chunk.to()));
+        double grad_norm = Math.sqrt(squared_norm(grad, chunk.from(), chunk.to()));
+
+        double trust = parameter_norm > 0 && grad_norm > 0
+                ? this.trust_coefficient * parameter_norm / (grad_norm + this.weight_decay * parameter_norm + this.epsilon)
+                : 1.0;
+
+        // v = momentum * v + learningRate * trust * (grad + weight_decay * p)
+        // p = p - v
+        double step_size = this.learningRate * trust;
+        for (int i = chunk.from(), k = i - chunk.offset(); i < chunk.to(); i++, k++) {
+            velocity[k] = this.momentum * velocity[k] + step_size * (grad[i] + this.weight_decay * data[i]);
+            data[i] -= velocity[k];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.tensor.Tensor;
+
+/**
+ * Dynamically scales the loss to keep small gradients representable in low precision.
+ * The scale is reduced whenever non-finite gradients occur and grows again after a number of steps without them.
+ * <a href="https://pytorch.org/docs/stable/amp.html#gradient-scaling">Read more</a>
+ */
+public class LossScaler {
+    public double scale, growth_factor, backoff_factor;
+    public int growth_interval;
+    private int growth_tracker = 0;
+
+    public LossScaler() { this(65536., 2., 0.5, 2000); }
+    public LossScaler(double init_scale, double growth_factor, double backoff_factor, int growth_interval) {
+        this.scale = init_scale;
+        this.growth_factor = growth_factor;
+        this.backoff_factor = backoff_factor;
+        this.growth_interval = growth_interval;
+    }
+
+    /**
+     * Multiply a loss with the current scale
+     * @param loss The loss
+     */
+    public <T> Tensor<T> scale(Tensor<T> loss) {
+        return loss.mul(loss.dtype.parse(this.scale));
+    }
+
+    /**
+     * Update the scale after an optimization step
+     * @param found_inf {@code true} if non-finite gradients were found in this step
+     */
+    public void update(boolean found_inf) {
+        if (found_inf) {
+            this.scale *= this.backoff_factor;
+            this.growth_tracker = 0;
+            return;
+        }
+
+        if (++this.growth_tracker >= this.growth_interval) {
+            this.scale *= this.growth_factor;
+            this.growth_tracker = 0;
+        }
+    }
+}
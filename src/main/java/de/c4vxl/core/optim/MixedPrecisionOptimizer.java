@@ -0,0 +1,125 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Wraps an optimizer for mixed precision training.
+ * The model computes in the (lower) precision of its parameters, while the wrapped optimizer updates master copies of them in a higher precision.
+ * After every step the master weights are copied back into the model.
+ * The loss has to be scaled with {@link MixedPrecisionOptimizer#scale(Tensor)} before backpropagation. Steps with non-finite gradients are skipped.
+ * Since every step needs all gradients to check them, parameters can't be updated during backpropagation.
+ * <p>
+ * Example: {@code new MixedPrecisionOptimizer(model.parameters(), DType.DOUBLE, masters -> new AdamOptimizer(masters, 1e-3))}
+ */
+public class MixedPrecisionOptimizer extends AbstractOptimizer {
+    public final LossScaler scaler;
+    protected final List<Tensor<?>> model_parameters;
+    protected final AbstractOptimizer optimizer;
+    private boolean unscaled = false, found_inf = false;
+
+    public MixedPrecisionOptimizer(List<Tensor<?>> parameters, DType<?> master_dtype, Function<List<Tensor<?>>, AbstractOptimizer> optimizer) {
+        this(parameters, master_dtype, optimizer, new LossScaler());
+    }
+
+    /**
+     * @param parameters The parameters of the model
+     * @param master_dtype The dtype of the master weights
+     * @param optimizer Creates the wrapped optimizer from the master weights
+     * @param scaler The loss scaler
+     * @throws IllegalArgumentException If the wrapped optimizer updates parameters during backpropagation
+     */
+    public MixedPrecisionOptimizer(List<Tensor<?>> parameters, DType<?> master_dtype, Function<List<Tensor<?>>, AbstractOptimizer> optimizer, LossScaler scaler) {
+        super(parameters.stream().<Tensor<?>>map(parameter -> master(parameter, master_dtype)).toList(), 0, false);
+        this.model_parameters = parameters;
+        this.optimizer = optimizer.apply(this.parameters);
+        this.scaler = scaler;
+
+        if (this.optimizer.steps_during_backward())
+            throw new IllegalArgumentException("The optimizer wrapped by a " + this.getClass().getSimpleName() + " can't update parameters during backpropagation!");
+    }
+
+    private static Tensor<?> master(Tensor<?> parameter, DType<?> dtype) {
+        Tensor<?> master = parameter.detach(true).asDType(dtype);
+        master.grad = null;
+        return master;
+    }
+
+    /**
+     * Scale a loss before backpropagation
+     * @param loss The loss
+     */
+    public <T> Tensor<T> scale(Tensor<T> loss) { return this.scaler.scale(loss); }
+
+    /**
+     * Copy the gradients of the model into the master weights and undo the loss scaling.
+     * This is done automatically by {@link MixedPrecisionOptimizer#step()}. Call it manually to inspect or clip the gradients before stepping.
+     */
+    public void unscale() {
+        if (this.unscaled) return;
+
+        this.found_inf = false;
+        for (int i = 0; i < this.parameters.size(); i++) {
+            Tensor<?> parameter = this.model_parameters.get(i), master = this.parameters.get(i);
+            unscale(parameter, master, 1. / this.scaler.scale);
+
+            if (master.grad != null)
+                this.found_inf |= !Double.isFinite(master.grad.lazy().sum());
+        }
+
+        this.unscaled = true;
+    }
+
+    private static <T> void unscale(Tensor<?> parameter, Tensor<T> master, double factor) {
+        master.grad = parameter.grad == null ? null : parameter.grad.lazy().mul(factor).evaluate(master.dtype);
+    }
+
+    /**
+     * Returns {@code true} if the gradients of the current step contain infinite or NaN values
+     */
+    public boolean found_inf() {
+        this.unscale();
+        return this.found_inf;
+    }
+
+    @Override
+    public void step() {
+        this.unscale();
+
+        if (!this.found_inf) {
+            super.step();
+
+            for (int i = 0; i < this.parameters.size(); i++)
+                copy(this.parameters.get(i), this.model_parameters.get(i));
+        }
+
+        this.scaler.update(this.found_inf);
+        this.unscaled = false;
+    }
+
+    private static <T> void copy(Tensor<?> master, Tensor<T> parameter) {
+        parameter.data = master.asDType(parameter.dtype).data;
+    }
+
+    // the master weights are updated by the wrapped optimizer
+    @Override
+    protected void prepare_step() { prepare_step(this.optimizer); }
+
+    @Override
+    protected void update(Chunk chunk) { update(this.optimizer, chunk); }
+
+    @Override
+    protected int chunk_size() { return chunk_size(this.optimizer); }
+
+    @Override
+    public void zeroGrad() {
+        super.zeroGrad();
+
+        for (Tensor<?> parameter : this.model_parameters)
+            parameter.grad = null;
+    }
+}
@@ -0,0 +1,158 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the implementation of an Adam optimizer storing its moments as 8-bit integers.
+ * Each moment is split into blocks of {@link QuantizedAdamOptimizer#BLOCK_SIZE} elements that are quantized relative to their largest value.
+ * The codes are spaced logarithmically, so every value keeps the same relative precision, no matter how small it is compared to the rest of its block.
+ * Moments are dequantized, updated and quantized again inside the update, one block at a time.
+ * <p>
+ * This uses one byte per element and moment, compared to eight bytes for the {@link AdamOptimizer}.
+ * <a href="https://arxiv.org/abs/2110.02861">Read more</a>
+ */
+public class QuantizedAdamOptimizer extends AbstractOptimizer {
+    /**
+     * The amount of elements sharing a scale
+     */
+    public static final int BLOCK_SIZE = 256;
+
+    /**
+     * The smallest non-zero code of the first moment is {@code 2^-M_RANGE} times the scale of its block. The second moment uses {@code 2^-V_RANGE}
+     */
+    public static final int M_RANGE = 24, V_RANGE = 48;
+
+    // the value of every code relative to the scale of its block
+    private static final double[] M_CODES = codes(127, M_RANGE), V_CODES = codes(255, V_RANGE);
+
+    protected final double beta1, beta2, epsilon;
+    protected int timestep;
+    protected final Map<Tensor<?>, Slot> slots;
+
+    // the learning rate divided by the bias correction of the first moment,
+    // the inverse bias correction of the second moment and the factor the parameters are multiplied with before the update
+    private double step_size, v_correction, decay;
+
+    /**
+     * The quantized optimizer state of a single parameter
+     */
+    protected static class Slot {
+        public final byte[] m, v;
+        public final float[] m_scale, v_scale;
+
+        protected Slot(int size) {
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.m = new byte[size];
+            this.v = new byte[size];
+            this.m_scale = new float[blocks];
+            this.v_scale = new float[blocks];
+        }
+    }
+
+    public QuantizedAdamOptimizer(List<Tensor<?>> parameters, double learningRate) {
+        this(parameters, learningRate, 0.9, 0.999, 1e-8);
+    }
+
+    public QuantizedAdamOptimizer(List<Tensor<?>> parameters, double learningRate, double beta1, double beta2, double epsilon) {
+        super(parameters, learningRate);
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+        this.timestep = 0;
+
+        this.slots = new IdentityHashMap<>();
+        for (Tensor<?> parameter : this.parameters)
+            this.slots.put(parameter, new Slot(parameter.size()));
+    }
+
+    /**
+     * Returns the decoupled weight decay applied in every step
+     */
+    protected double weight_decay() { return 0; }
+
+    // chunks have to start at the beginning of a block
+    @Override
+    protected int chunk_size() { return Math.max(1, CHUNK_SIZE / BLOCK_SIZE) * BLOCK_SIZE; }
+
+    @Override
+    protected void prepare_step() {
+        timestep++;
+
+        this.step_size = this.learningRate / (1.0 - Math.pow(this.beta1, timestep));
+        this.v_correction = 1.0 / (1.0 - Math.pow(this.beta2, timestep));
+        this.decay = 1.0 - this.learningRate * this.weight_decay();
+    }
+
+    /**
+     * Update a chunk of a parameter and its moments block by block
+     */
+    @Override
+    protected void update(Chunk chunk) {
+        Slot slot = this.slots.get(chunk.parameter());
+        double[] data = chunk.data(), grad = chunk.grad();
+        double[] m = new double[BLOCK_SIZE], v = new double[BLOCK_SIZE];
+
+        for (int start = chunk.from(); start < chunk.to(); start += BLOCK_SIZE) {
+            int k0 = start - chunk.offset(), block = k0 / BLOCK_SIZE, n = Math.min(BLOCK_SIZE, chunk.to() - start);
+            double m_scale = slot.m_scale[block], v_scale = slot.v_scale[block];
+            double m_max = 0, v_max = 0;
+
+            for (int j = 0; j < n; j++) {
+                int i = start + j, k = k0 + j;
+                double g = grad[i];
+
+                // dequantize
+                double m_t = slot.m[k] < 0 ? -M_CODES[-slot.m[k]] * m_scale : M_CODES[slot.m[k]] * m_scale;
+                double v_t = V_CODES[slot.v[k] & 0xFF] * v_scale;
+
+                // m_t = beta1 * m + (1 - beta1) * grad
+                // v_t = beta2 * v + (1 - beta2) * grad^2
+                m_t = this.beta1 * m_t + (1 - this.beta1) * g;
+                v_t = this.beta2 * v_t + (1 - this.beta2) * g * g;
+
+                // p = p * decay - learningRate * m_hat / (sqrt(v_hat) + epsilon)
+                data[i] = data[i] * decay - step_size * m_t / (Math.sqrt(v_t * v_correction) + this.epsilon);
+
+                m[j] = m_t;
+                v[j] = v_t;
+                m_max = Math.max(m_max, Math.abs(m_t));
+                v_max = Math.max(v_max, v_t);
+            }
+
+            // quantize with the new scales of the block
+            slot.m_scale[block] = (float) m_max;
+            slot.v_scale[block] = (float) v_max;
+            for (int j = 0; j < n; j++) {
+                int q_m = quantize(Math.abs(m[j]), m_max, 127, M_RANGE);
+                slot.m[k0 + j] = (byte) (m[j] < 0 ? -q_m : q_m);
+                slot.v[k0 + j] = (byte) quantize(v[j], v_max, 255, V_RANGE);
+            }
+        }
+    }
+
+    /**
+     * Returns the code of a non-negative value
+     * @param value The value
+     * @param scale The largest value of the block
+     * @param levels The largest code
+     * @param range The binary logarithm of the ratio between the largest and the smallest non-zero code
+     */
+    private static int quantize(double value, double scale, int levels, int range) {
+        if (value == 0 || scale == 0) return 0;
+
+        long code = levels + Math.round(Math.log(value / scale) / Math.log(2) * (levels - 1) / range);
+        return (int) Math.max(0, Math.min(levels, code));
+    }
+
+    private static double[] codes(int levels, int range) {
+        double[] codes = new double[levels + 1];
+        for (int q = 1; q <= levels; q++)
+            codes[q] = Math.pow(2, -(double) (levels - q) * range / (levels - 1));
+        return codes;
+    }
+}
@@ -0,0 +1,25 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.tensor.Tensor;
+
+import java.util.List;
+
+/**
+ * This is the implementation of an AdamW optimizer storing its moments as 8-bit integers
+ * @see QuantizedAdamOptimizer
+ */
+public class QuantizedAdamWOptimizer extends QuantizedAdamOptimizer {
+    private final double weight_decay;
+
+    public QuantizedAdamWOptimizer(List<Tensor<?>> parameters, double learningRate) {
+        this(parameters, learningRate, 0.9, 0.999, 1e-8, 0.01);
+    }
+
+    public QuantizedAdamWOptimizer(List<Tensor<?>> parameters, double learningRate, double beta1, double beta2, double epsilon, double weight_decay) {
+        super(parameters, learningRate, beta1, beta2, epsilon);
+        this.weight_decay = weight_decay;
+    }
+
+    @Override
+    protected double weight_decay() { return this.weight_decay; }
+}
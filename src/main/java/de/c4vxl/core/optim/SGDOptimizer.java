@@ -11,18 +11,11 @@ public class SGDOptimizer extends AbstractOptimizer {
     }
 
     @Override
-    public void step() {
-        for (Tensor<?> parameter : this.parameters)
-            this.handle(parameter);
-    }
+    protected void update(Chunk chunk) {
+        double[] data = chunk.data(), grad = chunk.grad();
 
-    private <T> void handle(Tensor<T> parameter) {
         // data = data - learningRate * grad
-        Tensor<T> lr = Tensor.filled(parameter.dtype.parse(this.learningRate), parameter.shape.dimensions);
-        Tensor<T> optimized = parameter.sub(lr.mul(parameter.grad));
-
-        // Update parameter
-        // Detach to prevent gradients from being reused in next training step
-        parameter.update(optimized.detach(true));
+        for (int i = chunk.from(); i < chunk.to(); i++)
+            data[i] -= this.learningRate * grad[i];
     }
-}
\ No newline at end of file
+}
@@ -2,15 +2,45 @@ package de.c4vxl.core.optim.type;
 
 import de.c4vxl.core.tensor.Tensor;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.DoubleFunction;
+import java.util.stream.IntStream;
 
 public abstract class AbstractOptimizer implements Optimizer {
+    /**
+     * The amount of elements updated by a single task of a parallel step
+     */
+    public static int CHUNK_SIZE = 1 << 14;
+
     protected List<Tensor<?>> parameters;
     protected double learningRate;
 
-    public AbstractOptimizer(List<Tensor<?>> parameters, double learningRate) {
+    // false if every step needs all gradients before the first parameter is updated
+    private final boolean supports_backward_steps;
+
+    // the updates scheduled during backpropagation
+    private final List<ForkJoinTask<?>> pending = new ArrayList<>();
+    private Consumer<Tensor<?>> backward_hook;
+    private Map<Tensor<?>, Integer> indices;
+
+    public AbstractOptimizer(List<Tensor<?>> parameters, double learningRate) { this(parameters, learningRate, true); }
+
+    /**
+     * @param parameters The parameters to optimize
+     * @param learningRate The learning rate
+     * @param supports_backward_steps {@code false} if a step needs all gradients before updating the first parameter.
+     *                                Such optimizers can't update parameters during backpropagation
+     * @see AbstractOptimizer#step_during_backward(boolean)
+     */
+    protected AbstractOptimizer(List<Tensor<?>> parameters, double learningRate, boolean supports_backward_steps) {
         this.parameters = parameters;
         this.learningRate = learningRate;
+        this.supports_backward_steps = supports_backward_steps;
+
+        this.parameters.forEach(Tensor::materialize);
     }
 
     /**
@@ -27,9 +57,243 @@ public abstract class AbstractOptimizer implements Optimizer {
         parameter.grad = parameter.grad.clip(min, max);
     }
 
+    /**
+     * Scale all gradients so that their global L2 norm is at most {@code max_norm}.
+     * Unlike {@link AbstractOptimizer#clip_gradients(double, double)} this keeps the direction of the gradient
+     * @param max_norm The maximum norm
+     * @return The norm of the gradients before clipping
+     */
+    public double clip_grad_norm(double max_norm) {
+        double norm = this.grad_norm();
+
+        double factor = max_norm / (norm + 1e-6);
+        if (factor < 1)
+            this.scale_gradients(factor);
+
+        return norm;
+    }
+
+    /**
+     * Returns the global L2 norm over the gradients of all parameters, computed in one parallel reduction
+     */
+    public double grad_norm() {
+        return Math.sqrt(this.parameters.parallelStream().filter(parameter -> parameter.grad != null).mapToDouble(parameter -> {
+            double sum = 0;
+            for (Object value : parameter.grad.data) {
+                double v = ((Number) value).doubleValue();
+                sum += v * v;
+            }
+            return sum;
+        }).sum());
+    }
+
+    /**
+     * Multiply all gradients with a factor in place
+     * @param factor The factor
+     */
+    public void scale_gradients(double factor) {
+        // the autograd engine may hand the same gradient data to multiple parameters
+        Map<Object[], Tensor<?>> gradients = new IdentityHashMap<>();
+        for (Tensor<?> parameter : this.parameters)
+            if (parameter.grad != null)
+                gradients.putIfAbsent(parameter.grad.data, parameter.grad);
+
+        gradients.values().parallelStream().forEach(grad -> scale(grad, factor));
+    }
+
+    private static <T> void scale(Tensor<T> tensor, double factor) {
+        DoubleFunction<T> convert = tensor.dtype.converter();
+        T[] data = tensor.data;
+        for (int i = 0; i < data.length; i++)
+            data[i] = convert.apply(((Number) data[i]).doubleValue() * factor);
+    }
+
+    /**
+     * Returns the sum of the squares of a range of values. Large ranges are reduced in parallel
+     * @param values The values
+     * @param from The first index
+     * @param to The index after the last one
+     */
+    protected static double squared_norm(double[] values, int from, int to) {
+        return chunks(to - from).mapToDouble(c -> {
+            double sum = 0;
+            for (int i = from + c * CHUNK_SIZE, end = Math.min(to, i + CHUNK_SIZE); i < end; i++)
+                sum += values[i] * values[i];
+            return sum;
+        }).sum();
+    }
+
+    private static IntStream chunks(int size) {
+        IntStream chunks = IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        return size > CHUNK_SIZE ? chunks.parallel() : chunks;
+    }
+
     @Override
     public void zeroGrad() {
         for (Tensor<?> parameter : this.parameters)
-            parameter.zeroGrad();
+            parameter.grad = null;
+    }
+
+    /**
+     * A range of the elements of a parameter and its gradient.
+     * Element {@code i} of {@code data} and {@code grad} (with {@code from <= i < to}) is element {@code i - offset} of the parameter
+     * @param parameter The parameter
+     * @param data The values. Changes are written back into the parameter
+     * @param grad The gradient
+     */
+    protected record Chunk(Tensor<?> parameter, double[] data, double[] grad, int from, int to, int offset) { }
+
+    /**
+     * Prepare a new step. Called once before the first parameter of a step is updated
+     */
+    protected void prepare_step() { }
+
+    /**
+     * Update a chunk of a parameter in place
+     * @param chunk The chunk
+     */
+    protected abstract void update(Chunk chunk);
+
+    /**
+     * Prepare a new step of another optimizer, e.g. one wrapped by this optimizer
+     * @param optimizer The optimizer
+     */
+    protected static void prepare_step(AbstractOptimizer optimizer) { optimizer.prepare_step(); }
+
+    /**
+     * Update a chunk with another optimizer, e.g. one wrapped by this optimizer
+     * @param optimizer The optimizer
+     * @param chunk The chunk
+     */
+    protected static void update(AbstractOptimizer optimizer, Chunk chunk) { optimizer.update(chunk); }
+
+    /**
+     * Returns the chunk size of another optimizer, e.g. one wrapped by this optimizer
+     * @param optimizer The optimizer
+     */
+    protected static int chunk_size(AbstractOptimizer optimizer) { return optimizer.chunk_size(); }
+
+    /**
+     * Returns the maximum amount of elements passed to {@link AbstractOptimizer#update(Chunk)} at once.
+     * Optimizers that need whole parameters return {@link Integer#MAX_VALUE}
+     */
+    protected int chunk_size() { return CHUNK_SIZE; }
+
+    @Override
+    public void step() {
+        // the parameters were already updated during backpropagation
+        if (this.await_backward_steps())
+            return;
+
+        this.prepare_step();
+        this.forEachChunk(this::update);
+    }
+
+    /**
+     * Update every parameter as soon as backpropagation has computed its gradient, instead of in {@link AbstractOptimizer#step()}.
+     * The updates run on the common {@link ForkJoinPool} while the rest of the graph is backpropagated through, and {@code step()} waits for them to finish.
+     * Every gradient is freed once it has been applied, so gradients can't be clipped or inspected between backpropagation and {@code step()}
+     * @param enabled {@code true} to update parameters during backpropagation
+     * @throws IllegalStateException If this optimizer was built without support for it
+     * @see Tensor#register_grad_hook(Consumer)
+     */
+    public void step_during_backward(boolean enabled) {
+        if (enabled == this.steps_during_backward())
+            return;
+
+        if (enabled && !this.supports_backward_steps)
+            throw new IllegalStateException(this.getClass().getSimpleName() + " needs all gradients before updating a parameter and can't update parameters during backpropagation!");
+
+        this.await_backward_steps();
+        if (enabled) {
+            this.indices = new IdentityHashMap<>();
+            for (int p = 0; p < this.parameters.size(); p++)
+                this.indices.put(this.parameters.get(p), p);
+
+            this.backward_hook = this::schedule;
+            for (Tensor<?> parameter : this.parameters)
+                parameter.register_grad_hook(this.backward_hook);
+        } else {
+            for (Tensor<?> parameter : this.parameters)
+                parameter.remove_grad_hook(this.backward_hook);
+            this.backward_hook = null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if parameters are updated during backpropagation
+     * @see AbstractOptimizer#step_during_backward(boolean)
+     */
+    public boolean steps_during_backward() { return this.backward_hook != null; }
+
+    private void schedule(Tensor<?> parameter) {
+        Integer p = this.indices.get(parameter);
+        if (p == null) return;
+
+        if (this.pending.isEmpty())
+            this.prepare_step();
+
+        this.pending.add(ForkJoinPool.commonPool().submit(() -> {
+            this.update_parameter(p);
+            parameter.grad = null;
+        }));
+    }
+
+    private boolean await_backward_steps() {
+        if (this.pending.isEmpty())
+            return false;
+
+        this.pending.forEach(ForkJoinTask::join);
+        this.pending.clear();
+        return true;
+    }
+
+    private void update_parameter(int p) {
+        Tensor<?> parameter = this.parameters.get(p);
+        int size = parameter.size(), chunk_size = this.chunk_size();
+        IntStream chunks = IntStream.range(0, (int) ((size + (long) chunk_size - 1) / chunk_size));
+        if (size > chunk_size)
+            chunks = chunks.parallel();
+
+        chunks.forEach(c -> this.handle_chunk(parameter, c * chunk_size, (int) Math.min(size, (long) c * chunk_size + chunk_size), this::update));
+    }
+
+    /**
+     * Split all parameters with a gradient into chunks of at most {@link AbstractOptimizer#chunk_size()} elements and process them in parallel on the common {@link ForkJoinPool}.
+     * Chunks never overlap, so every chunk can be updated in place.
+     * Every chunk is copied into a buffer and written back into its parameter afterward
+     * @param consumer Processes a single chunk
+     */
+    protected void forEachChunk(Consumer<Chunk> consumer) {
+        int chunk_size = this.chunk_size();
+        List<int[]> ranges = new ArrayList<>();
+        for (int p = 0; p < this.parameters.size(); p++) {
+            int size = this.parameters.get(p).size();
+            if (this.parameters.get(p).grad == null) continue;
+
+            for (int start = 0; start < size; start += chunk_size)
+                ranges.add(new int[]{ p, start, (int) Math.min(size, (long) start + chunk_size) });
+        }
+
+        IntStream chunks = IntStream.range(0, ranges.size());
+        if (ranges.size() > 1)
+            chunks = chunks.parallel();
+
+        chunks.forEach(i -> this.handle_chunk(this.parameters.get(ranges.get(i)[0]), ranges.get(i)[1], ranges.get(i)[2], consumer));
+    }
+
+    private <T> void handle_chunk(Tensor<T> parameter, int start, int end, Consumer<Chunk> consumer) {
+        T[] values = parameter.data, gradient = parameter.grad.data;
+        double[] data = new double[end - start], grad = new double[end - start];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = ((Number) values[start + i]).doubleValue();
+            grad[i] = ((Number) gradient[start + i]).doubleValue();
+        }
+
+        consumer.accept(new Chunk(parameter, data, grad, 0, data.length, -start));
+
+        DoubleFunction<T> convert = parameter.dtype.converter();
+        for (int i = 0; i < data.length; i++)
+            values[start + i] = convert.apply(data[i]);
     }
-}
\ No newline at end of file
+}
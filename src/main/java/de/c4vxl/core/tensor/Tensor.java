@@ -1,8 +1,10 @@
 package de.c4vxl.core.tensor;
 
 import de.c4vxl.core.tensor.grad.GradContext;
+import de.c4vxl.core.tensor.lazy.Expression;
 import de.c4vxl.core.tensor.operation.*;
 import de.c4vxl.core.tensor.operation.type.Operation;
+import de.c4vxl.core.tensor.trace.Tracer;
 import de.c4vxl.core.type.DType;
 import de.c4vxl.core.type.Shape;
 import de.c4vxl.core.utils.BroadcastingUtils;
@@ -11,6 +13,8 @@ import de.c4vxl.core.utils.TensorUtils;
 
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * A Tensor can be imagined as a multidimensional matrix of any shape and data type capable of performing various mathematical operations.
@@ -68,18 +72,66 @@ public class Tensor<T> {
      */
     public Operation<?> operation;
 
+    /**
+     * Reads the data of a deferred tensor. Null once the data is available
+     * @see Tensor#deferred(DType, Supplier, Integer...)
+     */
+    private volatile Supplier<T[]> loader;
+
+    /**
+     * Called during backpropagation once the gradient of this leaf tensor is complete
+     * @see Tensor#register_grad_hook(Consumer)
+     */
+    private List<Consumer<? super Tensor<T>>> grad_hooks = List.of();
+
+    /**
+     * The leaves whose hooks wait for the nested backward passes (see {@link CheckpointOperation}) of the running backward pass on this thread
+     */
+    private static final ThreadLocal<Set<Tensor<?>>> deferred_hooks = new ThreadLocal<>();
+
     /**
      * Accumulates this tensors gradient with a new one
      */
     public void accumulate_grad(Tensor<T> grad) {
         if (!this.requires_grad) return;
 
+        // Gradients are never backpropagated through
+        // Unlinking them prevents them from keeping the graph they were computed with alive
         grad.requires_grad = false;
+        grad.operation = null;
+        grad.parents = List.of();
 
         if (this.grad == null)
             this.grad = grad;
-        else
-            this.grad = this.grad.add(grad);
+        else {
+            Tensor<T> sum = this.grad.add(grad);
+            sum.operation = null;
+            sum.parents = List.of();
+            this.grad = sum;
+        }
+    }
+
+    /**
+     * Register a function that is called during backpropagation as soon as the gradient of this leaf tensor has been fully accumulated.
+     * Runs before the rest of the graph has been backpropagated through.
+     * Checkpointed functions backpropagate through their recomputed graph in nested passes, which can add to the gradient of any leaf.
+     * So the hooks of leaves reached before the last checkpoint of the graph run once it has been backpropagated through
+     * @param hook Receives this tensor
+     */
+    public synchronized void register_grad_hook(Consumer<? super Tensor<T>> hook) {
+        List<Consumer<? super Tensor<T>>> hooks = new ArrayList<>(this.grad_hooks);
+        hooks.add(hook);
+        this.grad_hooks = List.copyOf(hooks);
+    }
+
+    /**
+     * Remove a function registered with {@link Tensor#register_grad_hook(Consumer)}
+     * @param hook The function
+     */
+    public synchronized void remove_grad_hook(Consumer<? super Tensor<T>> hook) {
+        List<Consumer<? super Tensor<T>>> hooks = new ArrayList<>(this.grad_hooks);
+        hooks.remove(hook);
+        this.grad_hooks = List.copyOf(hooks);
     }
 
     /**
@@ -97,10 +149,19 @@ public class Tensor<T> {
         }
     }
 
+    /**
+     * Perform backpropagation starting from this tensor.
+     * The graph is released while traversing it. Use {@code backward(true)} to keep it.
+     */
+    public void backward() { this.backward(false); }
+
     /**
      * Perform backpropagation starting from this tensor
+     * @param retain_graph If {@code false}, every operation frees its saved tensors and is unlinked from the graph once it has been backpropagated through.
+     *                     Gradients of non-leaf tensors will be dropped as well.
+     *                     Set to {@code true} to keep the graph for another backward pass.
      */
-    public void backward() {
+    public void backward(boolean retain_graph) {
         if (!requires_grad)
             throw new IllegalStateException("Cannot backpropagate on a tensor that doesn't have requires_grad enabled!");
 
@@ -111,16 +172,70 @@ public class Tensor<T> {
         if (this.grad == null)
             this.grad = Tensor.filled(this.dtype.parse(1), this.shape.dimensions);
 
+        // Nested passes leave running the hooks to the outermost pass
+        Set<Tensor<?>> outer = deferred_hooks.get(), deferred = outer != null ? outer : Collections.newSetFromMap(new IdentityHashMap<>());
+        long checkpoints = order.stream().filter(tensor -> tensor.operation instanceof CheckpointOperation).count();
+
+        if (outer == null) deferred_hooks.set(deferred);
+        try {
+            this.backpropagate(order, retain_graph, outer == null, deferred, checkpoints);
+        } finally {
+            if (outer == null) deferred_hooks.remove();
+        }
+    }
+
+    private void backpropagate(List<Tensor<?>> order, boolean retain_graph, boolean outermost, Set<Tensor<?>> deferred, long checkpoints) {
+        // Every tensor comes after all tensors computed from it
+        // So the gradient of a leaf is complete once it is reached and every checkpoint has been backpropagated through
         Collections.reverse(order);
-        for (Tensor<?> tensor : order)
+
+        // the position of every leaf with hooks
+        Map<Tensor<?>, Integer> leaves = new IdentityHashMap<>();
+        for (int i = 0; i < order.size(); i++)
+            if (order.get(i).is_leaf && !order.get(i).grad_hooks.isEmpty())
+                leaves.put(order.get(i), i);
+
+        for (int i = 0; i < order.size(); i++) {
+            Tensor<?> tensor = order.get(i);
+
+            if (tensor.is_leaf && tensor.grad != null && !tensor.grad_hooks.isEmpty()) {
+                if (outermost && checkpoints == 0) tensor.run_grad_hooks();
+                else deferred.add(tensor);
+            }
+
             if (tensor.operation != null) {
                 Tensor<?> grad = tensor.grad;
 
                 if (grad == null)
                     grad = Tensor.zeros(tensor.shape.dimensions).asDType(tensor.dtype);
 
+                boolean checkpoint = tensor.operation instanceof CheckpointOperation;
                 tensor.operation.backward(grad);
+
+                // leaves that are reached later run their hooks then
+                if (checkpoint && --checkpoints == 0 && outermost) {
+                    for (Tensor<?> leaf : deferred)
+                        if (leaves.getOrDefault(leaf, -1) < i)
+                            leaf.run_grad_hooks();
+                    deferred.clear();
+                }
+
+                if (retain_graph) continue;
+
+                // Release graph
+                tensor.operation.release();
+                tensor.operation = null;
+                tensor.parents = List.of();
+
+                if (!tensor.is_leaf)
+                    tensor.grad = null;
             }
+        }
+    }
+
+    private void run_grad_hooks() {
+        for (Consumer<? super Tensor<T>> hook : this.grad_hooks)
+            hook.accept(this);
     }
 
     /**
@@ -175,6 +290,44 @@ public class Tensor<T> {
         }
     }
 
+    private Tensor(DType<T> dtype, Shape shape, Supplier<T[]> loader) {
+        this.dtype = dtype;
+        this.shape = shape;
+        this.loader = loader;
+    }
+
+    /**
+     * Construct a Tensor whose data is read the first time it is needed.
+     * Operations and modules materialize their inputs automatically; code reading {@link Tensor#data} directly has to call {@link Tensor#materialize()} first
+     * @param dtype The data type of the Tensor
+     * @param loader Reads the data
+     * @param shape The shape of the Tensor
+     */
+    public static <T> Tensor<T> deferred(DType<T> dtype, Supplier<T[]> loader, Integer... shape) {
+        return new Tensor<>(dtype, new Shape(shape), loader);
+    }
+
+    /**
+     * Returns {@code false} if the data of this deferred tensor hasn't been read yet
+     */
+    public boolean isMaterialized() { return this.loader == null; }
+
+    /**
+     * Read the data of this tensor if it is deferred
+     */
+    public Tensor<T> materialize() {
+        if (this.loader != null) {
+            synchronized (this) {
+                if (this.loader != null) {
+                    this.data = this.loader.get();
+                    this.loader = null;
+                }
+            }
+        }
+
+        return this;
+    }
+
     /**
      * Construct a Tensor filled with random values in between two bounds
      * @param dtype The data type of the Tensor
@@ -183,7 +336,7 @@ public class Tensor<T> {
      * @param shape The shape of the Tensor
      */
     public static <T> Tensor<T> random(DType<T> dtype, double min, double max, Integer... shape) {
-        Tensor<T> tensor = new Tensor<>(dtype, shape);
+        Tensor<T> tensor = new Tensor<>((T[]) Array.newInstance(dtype.clazz, new Shape(shape).size()), shape);
 
         for (int i = 0; i < tensor.data.length; i++)
             tensor.data[i] = dtype.randomValue(min, max);
@@ -264,6 +417,24 @@ public class Tensor<T> {
         return new Tensor<>(data, data.length);
     }
 
+    /**
+     * Returns a lazily evaluated expression of this tensor.
+     * Element wise operations on the expression are fused into a single loop once it gets evaluated.
+     * @see de.c4vxl.core.tensor.lazy.Expression
+     */
+    public Expression lazy() { return Expression.of(this.materialize()); }
+
+    /**
+     * Returns a copy of this Tensor as another dtype that stays connected to the computational graph.
+     * Gradients flowing into the copy are converted back and accumulated into this tensor in its own dtype.
+     * @param target The targeted dtype
+     */
+    public <R> Tensor<R> to(DType<R> target) {
+        if (this.dtype.equals(target)) return (Tensor<R>) this;
+
+        return new CastOperation<>(this, target).forward();
+    }
+
     /**
      * Returns a copy of this Tensor as DType.DOUBLE
      */
@@ -295,15 +466,18 @@ public class Tensor<T> {
      */
     public <R> Tensor<R> asDType(DType<R> target) {
         if (this.dtype.equals(target)) return (Tensor<R>) this;
-        R[] data = (R[]) Array.newInstance(target.clazz, this.size());
 
-        for (int i = 0; i < data.length; i++) {
-            data[i] = target.parse(this.data[i]);
-        }
+        return Tracer.record("asDType", () -> {
+            R[] data = (R[]) Array.newInstance(target.clazz, this.size());
 
-        Tensor<R> result = new Tensor<>(data, this.shape.dimensions.clone());
-        result.update(this, true, true);
-        return result;
+            for (int i = 0; i < data.length; i++) {
+                data[i] = target.parse(this.data[i]);
+            }
+
+            Tensor<R> result = new Tensor<>(data, this.shape.dimensions.clone());
+            result.update(this, true, true);
+            return result;
+        }, this);
     }
 
     /**
@@ -420,8 +594,10 @@ public class Tensor<T> {
      */
     public Tensor<T> get(Integer... idx) {
         // points to a direct item
-        if (idx.length == this.shape.rank() && !Arrays.stream(idx).toList().contains(null))
-            return Tensor.of(this.item(idx));
+        if (idx.length == this.shape.rank() && !Arrays.stream(idx).toList().contains(null)) {
+            Integer[] index = idx.clone();
+            return Tracer.record("get", () -> Tensor.of(this.item(index)), this);
+        }
 
         // points to a slice
         return TensorUtils.getSlice(this, false, idx);
@@ -451,7 +627,7 @@ public class Tensor<T> {
         if (!isValid || flat < 0 || flat > this.size())
             throw new IndexOutOfBoundsException("Invalid index for shape " + this.shape + ".");
 
-        return dtype.parse(this.data[flat]);
+        return dtype.parse(this.materialize().data[flat]);
     }
 
     /**
@@ -472,6 +648,7 @@ public class Tensor<T> {
         boolean canPerform = idx.length == this.shape.rank();
 
         int flatIndex = TensorUtils.flatIndex(this.shape.dimensions, idx);
+        this.materialize();
 
         canPerform = flatIndex < 0 || this.data.length >= flatIndex || canPerform;
 
@@ -611,18 +788,18 @@ public class Tensor<T> {
     /**
      * Get the largest element in the Tensors data
      */
-    public T max() { return Arrays.stream(this.data).max((Comparator<? super T>) Comparator.naturalOrder()).orElseThrow(); }
+    public T max() { return Arrays.stream(this.materialize().data).max((Comparator<? super T>) Comparator.naturalOrder()).orElseThrow(); }
 
     /**
      * Get the smallest element in the Tensors data
      */
-    public T min() { return Arrays.stream(this.data).min((Comparator<? super T>) Comparator.naturalOrder()).orElseThrow(); }
+    public T min() { return Arrays.stream(this.materialize().data).min((Comparator<? super T>) Comparator.naturalOrder()).orElseThrow(); }
 
     /**
      * Get the index of an element in the data array
      * @param obj The object to search for
      */
-    public int indexOf(T obj) { return Arrays.stream(this.data).toList().indexOf(obj); }
+    public int indexOf(T obj) { return Arrays.stream(this.materialize().data).toList().indexOf(obj); }
 
     /**
      * Get the multidimensional index of an element in the data array
@@ -697,7 +874,7 @@ public class Tensor<T> {
         this.parents = a.parents;
 
         if (!ignoreData)
-            this.data = (T[]) a.data;
+            this.data = (T[]) a.materialize().data;
     }
 
     /**
@@ -721,18 +898,20 @@ public class Tensor<T> {
 
     @Override
     public Tensor<T> clone() {
-        Tensor<T> copy = new Tensor<>(this.data.clone(), this.shape.dimensions);
-
-        if (this.requires_grad) {
-            copy.requires_grad = true;
-            copy.grad = this.grad;
-            copy.operation = this.operation;
-            copy.parents = this.parents;
-        }
+        return Tracer.record("clone", () -> {
+            Tensor<T> copy = new Tensor<>(this.data.clone(), this.shape.dimensions);
+
+            if (this.requires_grad) {
+                copy.requires_grad = true;
+                copy.grad = this.grad;
+                copy.operation = this.operation;
+                copy.parents = this.parents;
+            }
 
-        copy.label = this.label;
+            copy.label = this.label;
 
-        return copy;
+            return copy;
+        }, this);
     }
 
     @Override
@@ -741,7 +920,7 @@ public class Tensor<T> {
                 "shape=" + shape +
                 ", size=" + shape.size() +
                 ", dtype=" + dtype +
-                ", data=" + Arrays.toString(data) +
+                ", data=" + (this.isMaterialized() ? Arrays.toString(data) : "<deferred>") +
                 (this.label != null ? ", label=" + this.label : "") +
                 '}';
     }
@@ -749,12 +928,12 @@ public class Tensor<T> {
     @Override
     public boolean equals(Object o) {
         return o instanceof Tensor<?> && // same class
-                Arrays.equals(((Tensor<?>) o).data, this.data) && // same data
+                Arrays.equals(((Tensor<?>) o).materialize().data, this.materialize().data) && // same data
                 ((Tensor<?>) o).shape.equals(this.shape); // same shape
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(Arrays.hashCode(data), shape, grad, dtype);
+        return Objects.hash(Arrays.hashCode(this.materialize().data), shape, grad, dtype);
     }
 }
\ No newline at end of file
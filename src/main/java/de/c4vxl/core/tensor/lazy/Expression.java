@@ -0,0 +1,323 @@
+package de.c4vxl.core.tensor.lazy;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.utils.BroadcastingUtils;
+import de.c4vxl.core.utils.TensorUtils;
+import de.c4vxl.jNN;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A lazily evaluated chain of element wise operations.
+ * Building an expression doesn't compute anything. Calling {@link Expression#evaluate} runs the whole chain in a single loop
+ * without allocating a tensor for every intermediate result. Identical subexpressions are computed once per element.
+ * Leaves are broadcast to a common shape. Results of an expression don't track gradients.
+ * Expressions are immutable, so they can be evaluated from multiple threads at once.
+ * If {@link jNN#COMPILE_KERNELS} is set, the loop is compiled into a specialized kernel by the {@link KernelCompiler}.
+ * <p>
+ * Example: {@code x.lazy().mul(2.).add(y.lazy()).exp().evaluate(x.dtype)}
+ */
+public abstract class Expression {
+    /**
+     * Create an expression from a tensor
+     * @param tensor The tensor
+     */
+    public static Expression of(Tensor<?> tensor) { return new Leaf(tensor); }
+
+    /**
+     * Create an expression from a constant value
+     * @param value The value
+     */
+    public static Expression of(double value) { return new Constant(value); }
+
+    public Expression add(Expression other) { return new Binary(this, other, "add", Double::sum); }
+    public Expression add(double other) { return this.add(Expression.of(other)); }
+
+    public Expression sub(Expression other) { return new Binary(this, other, "sub", (a, b) -> a - b); }
+    public Expression sub(double other) { return this.sub(Expression.of(other)); }
+
+    public Expression mul(Expression other) { return new Binary(this, other, "mul", (a, b) -> a * b); }
+    public Expression mul(double other) { return this.mul(Expression.of(other)); }
+
+    public Expression div(Expression other) { return new Binary(this, other, "div", (a, b) -> a / b); }
+    public Expression div(double other) { return this.div(Expression.of(other)); }
+
+    public Expression pow(double power) { return new Unary(this, "pow", a -> Math.pow(a, power), power); }
+    public Expression sqrt() { return new Unary(this, "sqrt", Math::sqrt); }
+    public Expression exp() { return new Unary(this, "exp", Math::exp); }
+    public Expression log() { return new Unary(this, "log", Math::log); }
+    public Expression tanh() { return new Unary(this, "tanh", Math::tanh); }
+    public Expression neg() { return new Unary(this, "neg", a -> -a); }
+    public Expression clip(double min, double max) { return new Unary(this, "clip", a -> Math.max(Math.min(a, max), min), min, max); }
+
+    /**
+     * Apply a function on every element
+     * @param operation The function
+     */
+    public Expression map(DoubleUnaryOperator operation) { return new Unary(this, null, operation); }
+
+    /**
+     * Combine the elements of this and another expression
+     * @param other The other expression
+     * @param operation The function. Format: (elementA, elementB) -> result
+     */
+    public Expression combine(Expression other, DoubleBinaryOperator operation) { return new Binary(this, other, null, operation); }
+
+    /**
+     * Compute this expression in a single pass
+     * @param dtype The dtype of the result
+     */
+    public <T> Tensor<T> evaluate(DType<T> dtype) {
+        Graph graph = new Graph(this);
+
+        return Tracer.record("Expression", () -> {
+            Integer[] shape = graph.shape();
+
+            @SuppressWarnings("unchecked")
+            T[] data = (T[]) Array.newInstance(dtype.clazz, TensorUtils.shapeToSize(shape));
+
+            KernelCompiler.Launch kernel = jNN.COMPILE_KERNELS ? KernelCompiler.prepare(graph, shape, dtype) : null;
+            if (kernel != null)
+                kernel.run(data, data.length);
+            else {
+                Frame frame = new Frame(graph, shape);
+                for (int i = 0; i < data.length; i++)
+                    data[i] = dtype.parse(frame.at(i));
+            }
+
+            Tensor<T> result = new Tensor<>(data, shape);
+            result.requires_grad = false;
+            return result;
+        }, graph.leaves.stream().map(leaf -> leaf.tensor).toArray(Tensor<?>[]::new));
+    }
+
+    /**
+     * Compute the sum over all elements of this expression in a single pass without materializing it
+     */
+    public double sum() {
+        Graph graph = new Graph(this);
+
+        Integer[] shape = graph.shape();
+        int size = TensorUtils.shapeToSize(shape);
+
+        KernelCompiler.Launch kernel = jNN.COMPILE_KERNELS ? KernelCompiler.prepare(graph, shape, null) : null;
+        if (kernel != null)
+            return kernel.run(null, size);
+
+        Frame frame = new Frame(graph, shape);
+        double sum = 0;
+        for (int i = 0; i < size; i++)
+            sum += frame.at(i);
+
+        return sum;
+    }
+
+    /**
+     * The nodes of an expression with identical subexpressions merged, so every one of them is computed once per element.
+     * Leaves of the same tensor and operations with the same arguments on the same operands are identical. Constants are only merged with themselves.
+     * Every node comes after its operands, so the last node is the expression itself
+     */
+    static final class Graph {
+        final List<Expression> nodes = new ArrayList<>();
+        final List<Leaf> leaves = new ArrayList<>();
+
+        // the operands of every node (-1 if it has fewer) and how often every node is used as an operand
+        final int[] a, b, uses;
+
+        private final List<int[]> operands = new ArrayList<>();
+        private final Map<Expression, Integer> visited = new IdentityHashMap<>();
+        private final Map<Tensor<?>, Integer> tensors = new IdentityHashMap<>();
+        private final Map<Key, Integer> operations = new HashMap<>();
+
+        /**
+         * Identifies an operation. Arbitrary functions are compared by identity
+         */
+        private record Key(String name, Object function, List<Double> arguments, int a, int b) { }
+
+        Graph(Expression expression) {
+            this.add(expression);
+
+            int size = this.nodes.size();
+            this.a = new int[size];
+            this.b = new int[size];
+            this.uses = new int[size];
+            for (int k = 0; k < size; k++) {
+                this.a[k] = this.operands.get(k)[0];
+                this.b[k] = this.operands.get(k)[1];
+                if (this.a[k] >= 0) this.uses[this.a[k]]++;
+                if (this.b[k] >= 0) this.uses[this.b[k]]++;
+            }
+        }
+
+        private int add(Expression expression) {
+            Integer known = this.visited.get(expression);
+            if (known != null) return known;
+
+            int node = switch (expression) {
+                case Leaf leaf -> this.tensors.computeIfAbsent(leaf.tensor, tensor -> {
+                    this.leaves.add(leaf);
+                    return this.node(leaf, -1, -1);
+                });
+                case Constant constant -> this.node(constant, -1, -1);
+                case Unary unary -> {
+                    int a = this.add(unary.a);
+                    yield this.operation(unary, new Key(unary.name, unary.name == null ? unary.operation : null,
+                            Arrays.stream(unary.arguments).boxed().toList(), a, -1), a, -1);
+                }
+                case Binary binary -> {
+                    int a = this.add(binary.a), b = this.add(binary.b);
+                    yield this.operation(binary, new Key(binary.name, binary.name == null ? binary.operation : null, List.of(), a, b), a, b);
+                }
+                default -> throw new IllegalArgumentException("Unknown expression: " + expression.getClass().getSimpleName());
+            };
+
+            this.visited.put(expression, node);
+            return node;
+        }
+
+        private int operation(Expression expression, Key key, int a, int b) {
+            Integer known = this.operations.get(key);
+            if (known != null) return known;
+
+            int node = this.node(expression, a, b);
+            this.operations.put(key, node);
+            return node;
+        }
+
+        private int node(Expression expression, int a, int b) {
+            this.nodes.add(expression);
+            this.operands.add(new int[]{ a, b });
+            return this.nodes.size() - 1;
+        }
+
+        /**
+         * Returns the index of the node of a leaf in {@link Graph#leaves}
+         */
+        int leafIndex(int node) {
+            for (int i = 0; i < this.leaves.size(); i++)
+                if (this.leaves.get(i) == this.nodes.get(node)) return i;
+
+            throw new IllegalArgumentException("Node " + node + " isn't a leaf");
+        }
+
+        /**
+         * Returns the shape all leaves are broadcast to
+         */
+        Integer[] shape() {
+            return this.leaves.stream()
+                    .map(leaf -> leaf.tensor.shape.dimensions)
+                    .reduce(BroadcastingUtils::broadcastShapes)
+                    .orElse(new Integer[]{ 1 });
+        }
+    }
+
+    /**
+     * Interprets a graph. Holds the unboxed leaves and the value of every node at the current element, so every evaluation uses its own frame
+     */
+    private static final class Frame {
+        private final int[] a, b;
+        private final double[][] leaves;
+        private final DoubleUnaryOperator[] unary;
+        private final DoubleBinaryOperator[] binary;
+        private final double[] values;
+
+        Frame(Graph graph, Integer[] shape) {
+            int size = graph.nodes.size();
+            this.a = graph.a;
+            this.b = graph.b;
+            this.leaves = new double[size][];
+            this.unary = new DoubleUnaryOperator[size];
+            this.binary = new DoubleBinaryOperator[size];
+            this.values = new double[size];
+
+            for (int k = 0; k < size; k++) {
+                switch (graph.nodes.get(k)) {
+                    case Leaf leaf -> this.leaves[k] = leaf.unbox(shape);
+                    case Constant constant -> this.values[k] = constant.value;
+                    case Unary operation -> this.unary[k] = operation.operation;
+                    case Binary operation -> this.binary[k] = operation.operation;
+                    default -> throw new IllegalArgumentException("Unknown expression: " + graph.nodes.get(k).getClass().getSimpleName());
+                }
+            }
+        }
+
+        /**
+         * Compute the value at a flat index of the broadcast shape
+         * @param i The flat index
+         */
+        double at(int i) {
+            double[] values = this.values;
+            for (int k = 0; k < values.length; k++) {
+                if (this.leaves[k] != null) values[k] = this.leaves[k][i];
+                else if (this.binary[k] != null) values[k] = this.binary[k].applyAsDouble(values[this.a[k]], values[this.b[k]]);
+                else if (this.unary[k] != null) values[k] = this.unary[k].applyAsDouble(values[this.a[k]]);
+            }
+
+            return values[values.length - 1];
+        }
+    }
+
+    protected static class Leaf extends Expression {
+        protected final Tensor<?> tensor;
+
+        protected Leaf(Tensor<?> tensor) { this.tensor = tensor; }
+
+        /**
+         * Unbox the data of the tensor, broadcast to the shape of the result
+         */
+        protected double[] unbox(Integer[] shape) {
+            Object[] data = Arrays.equals(this.tensor.shape.dimensions, shape) ? this.tensor.data
+                    : BroadcastingUtils.broadcastData(this.tensor.data, this.tensor.shape.dimensions, shape);
+
+            double[] values = new double[data.length];
+            for (int i = 0; i < data.length; i++)
+                values[i] = DType.DOUBLE.parse(data[i]);
+            return values;
+        }
+    }
+
+    protected static class Constant extends Expression {
+        protected final double value;
+
+        protected Constant(double value) { this.value = value; }
+    }
+
+    protected static class Unary extends Expression {
+        protected final Expression a;
+        protected final String name;
+        protected final DoubleUnaryOperator operation;
+        protected final double[] arguments;
+
+        /**
+         * @param name The name of a built-in operation or null if the operation is an arbitrary function
+         * @param arguments Constant arguments of a built-in operation
+         */
+        protected Unary(Expression a, String name, DoubleUnaryOperator operation, double... arguments) {
+            this.a = a;
+            this.name = name;
+            this.operation = operation;
+            this.arguments = arguments;
+        }
+    }
+
+    protected static class Binary extends Expression {
+        protected final Expression a, b;
+        protected final String name;
+        protected final DoubleBinaryOperator operation;
+
+        /**
+         * @param name The name of a built-in operation or null if the operation is an arbitrary function
+         */
+        protected Binary(Expression a, Expression b, String name, DoubleBinaryOperator operation) {
+            this.a = a;
+            this.b = b;
+            this.name = name;
+            this.operation = operation;
+        }
+    }
+}
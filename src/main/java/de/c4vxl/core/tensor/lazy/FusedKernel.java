@@ -0,0 +1,18 @@
+package de.c4vxl.core.tensor.lazy;
+
+/**
+ * A loop over all elements of an expression, generated at runtime by the {@link KernelCompiler}.
+ */
+public interface FusedKernel {
+    /**
+     * Run the kernel
+     * @param inputs The data of every leaf
+     * @param indices The broadcast index maps of strided leaves (null for contiguous leaves)
+     * @param constants The constants of the expression
+     * @param functions The custom functions of the expression
+     * @param out The output data. Unused if the kernel is a reduction
+     * @param n The amount of elements
+     * @return The sum over all elements if the kernel is a reduction. Otherwise 0
+     */
+    double run(Object[][] inputs, int[][] indices, double[] constants, Object[] functions, Object[] out, int n);
+}
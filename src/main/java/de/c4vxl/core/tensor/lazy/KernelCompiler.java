@@ -0,0 +1,643 @@
+package de.c4vxl.core.tensor.lazy;
+
+import de.c4vxl.core.type.BFloat16;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.type.Half;
+import de.c4vxl.core.utils.BroadcastingUtils;
+import de.c4vxl.jNN;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiles expressions into {@link FusedKernel}s.
+ * Every kernel is a hidden class containing a single loop whose body is generated bytecode.
+ * It reads the boxed data of every leaf directly and is specialized for the dtype and the layout (contiguous, scalar or broadcast) of every leaf and the dtype of the output,
+ * so the JIT sees monomorphic unboxing and arithmetic it can inline.
+ * <p>
+ * Kernels are cached by the signature of the expression. Constants are passed in at runtime, so changing a constant doesn't generate a new class.
+ * Expressions that fail to compile are reported once and interpreted, unless {@link jNN#FORCE_KERNEL_COMPILATION} is enabled.
+ * Every generated class is checked by the bytecode verifier of the JVM when it is defined, so a malformed kernel fails to compile instead of running.
+ */
+public class KernelCompiler {
+    private static final String NAME = "de/c4vxl/core/tensor/lazy/GeneratedKernel";
+    private static final String KERNEL = "de/c4vxl/core/tensor/lazy/FusedKernel";
+    private static final String DESCRIPTOR = "([[Ljava/lang/Object;[[I[D[Ljava/lang/Object;[Ljava/lang/Object;I)D";
+
+    // methods larger than this are never compiled by the JIT
+    private static final int MAX_CODE_LENGTH = 8000;
+
+    // the opcodes used by the generated code (JVMS chapter 6)
+    private static final int ICONST_0 = 0x03, DCONST_0 = 0x0e, BIPUSH = 0x10, SIPUSH = 0x11,
+            ILOAD = 0x15, DLOAD = 0x18, ALOAD = 0x19, ALOAD_0 = 0x2a, IALOAD = 0x2e, DALOAD = 0x31, AALOAD = 0x32,
+            ISTORE = 0x36, DSTORE = 0x39, ASTORE = 0x3a, AASTORE = 0x53, DUP2 = 0x5c,
+            DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77, IINC = 0x84,
+            I2D = 0x87, L2D = 0x8a, F2D = 0x8d, D2I = 0x8e, D2L = 0x8f, D2F = 0x90,
+            IF_ICMPGE = 0xa2, GOTO = 0xa7, DRETURN = 0xaf, RETURN = 0xb1,
+            INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9, CHECKCAST = 0xc0;
+
+    // constant pool tags, access flags and stack map frame types of the class file format (JVMS chapter 4)
+    private static final int CLASS_FILE_VERSION = 61;
+    private static final int CONSTANT_UTF8 = 1, CONSTANT_CLASS = 7, CONSTANT_METHODREF = 10, CONSTANT_INTERFACE_METHODREF = 11, CONSTANT_NAME_AND_TYPE = 12;
+    private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+    private static final int ITEM_INTEGER = 1, ITEM_DOUBLE = 3, ITEM_OBJECT = 7, SAME_FRAME_MAX = 63, SAME_FRAME_EXTENDED = 251, FULL_FRAME = 255;
+
+    // the slots of the arguments and locals of the generated "run" method
+    private static final int INPUTS = 1, INDICES = 2, CONSTANTS = 3, FUNCTIONS = 4, OUT = 5, N = 6, ACCUMULATOR = 7, I = 9, FIRST_FREE = 10;
+
+    private static final List<Class<?>> SUPPORTED = List.of(Double.class, Float.class, Integer.class, Long.class, Half.class, BFloat16.class);
+
+    /**
+     * The maximum amount of cached kernels. The least recently used kernel is dropped once the cache is full
+     */
+    public static int MAX_CACHED_KERNELS = 1024;
+
+    // failed compilations are cached as well, so they are only attempted and reported once
+    private static final Map<String, Compiled> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Compiled> eldest) { return this.size() > MAX_CACHED_KERNELS; }
+    });
+
+    /**
+     * The result of compiling a kernel
+     * @param kernel The kernel or null if it couldn't be compiled
+     * @param reason Why the kernel couldn't be compiled
+     */
+    private record Compiled(FusedKernel kernel, String reason) { }
+
+    /**
+     * A compiled kernel bound to the data of an expression
+     */
+    record Launch(FusedKernel kernel, Object[][] inputs, int[][] indices, double[] constants, Object[] functions) {
+        /**
+         * Run the kernel
+         * @param out The output data or null if the kernel is a reduction
+         * @param n The amount of elements
+         */
+        double run(Object[] out, int n) { return this.kernel.run(this.inputs, this.indices, this.constants, this.functions, out, n); }
+    }
+
+    /**
+     * Remove all compiled kernels from the cache
+     */
+    public static void clearCache() { cache.clear(); }
+
+    /**
+     * Returns the amount of compiled kernels
+     */
+    public static int cacheSize() { return cache.size(); }
+
+    /**
+     * Compile (or look up) the kernel of an expression and bind it to the data of its leaves
+     * @param graph The graph of the expression
+     * @param shape The broadcast shape of the expression
+     * @param dtype The dtype of the output or null if the kernel should sum up all elements
+     * @return null if the expression can't be compiled
+     * @throws IllegalStateException If the expression can't be compiled and {@link jNN#FORCE_KERNEL_COMPILATION} is enabled
+     */
+    static Launch prepare(Expression.Graph graph, Integer[] shape, DType<?> dtype) {
+        if (dtype != null && !SUPPORTED.contains(dtype.clazz))
+            return unsupported("Unsupported output dtype " + dtype);
+
+        List<Expression.Leaf> leaves = graph.leaves;
+        Context context = new Context(graph);
+        StringBuilder signature = new StringBuilder(dtype == null ? "sum" : dtype.toString()).append('|');
+
+        Object[][] inputs = new Object[leaves.size()][];
+        int[][] indices = new int[leaves.size()][];
+        for (int i = 0; i < leaves.size(); i++) {
+            Expression.Leaf leaf = leaves.get(i);
+            inputs[i] = leaf.tensor.data;
+            context.types[i] = leaf.tensor.data.getClass().getComponentType();
+
+            if (!SUPPORTED.contains(context.types[i]))
+                return unsupported("Unsupported input type " + context.types[i].getSimpleName());
+
+            if (Arrays.equals(leaf.tensor.shape.dimensions, shape))
+                context.layouts[i] = 'c';
+            else if (leaf.tensor.size() == 1)
+                context.layouts[i] = 's';
+            else {
+                context.layouts[i] = 'b';
+                indices[i] = BroadcastingUtils.broadcastIndices(leaf.tensor.shape.dimensions, shape);
+            }
+
+            signature.append(context.types[i].getSimpleName()).append(':').append(context.layouts[i]).append(',');
+        }
+
+        describe(context.root(), context, signature.append('|'));
+
+        Compiled compiled = cache.computeIfAbsent(signature.toString(), key -> compile(key, context, dtype));
+        if (compiled.kernel == null)
+            return unsupported(compiled.reason);
+
+        return new Launch(compiled.kernel, inputs, indices,
+                context.constants.stream().mapToDouble(Double::doubleValue).toArray(),
+                context.functions.toArray());
+    }
+
+    private static Compiled compile(String signature, Context context, DType<?> dtype) {
+        try {
+            byte[] bytes = generate(context, dtype == null ? null : dtype.clazz);
+            if (bytes == null)
+                return new Compiled(null, "Kernel " + signature + " is too large");
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return new Compiled((FusedKernel) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke(), null);
+        } catch (Throwable e) {
+            if (jNN.FORCE_KERNEL_COMPILATION)
+                throw new IllegalStateException("Failed to compile kernel " + signature, e);
+
+            System.err.println("WARNING: Failed to compile kernel " + signature + ". Falling back to interpretation. " + e);
+            return new Compiled(null, "Failed to compile kernel " + signature + ": " + e);
+        }
+    }
+
+    /**
+     * Returns null so the expression is interpreted, or throws if compilation is forced
+     * @param reason Why the expression can't be compiled
+     */
+    private static Launch unsupported(String reason) {
+        if (jNN.FORCE_KERNEL_COMPILATION)
+            throw new IllegalStateException("Can't compile expression: " + reason);
+
+        return null;
+    }
+
+    /**
+     * Write the signature of a node and collect its constants and functions.
+     * Nodes used more than once are described once and referenced by their index afterward, so the signature captures which subexpressions are shared.
+     * The traversal order has to match {@link KernelCompiler#emit}
+     */
+    private static void describe(int node, Context context, StringBuilder signature) {
+        Expression.Graph graph = context.graph;
+        if (context.described[node]) {
+            signature.append('#').append(node);
+            return;
+        }
+        context.described[node] = true;
+        context.constantOffsets[node] = context.constants.size();
+        context.functionOffsets[node] = context.functions.size();
+
+        switch (graph.nodes.get(node)) {
+            case Expression.Leaf ignored -> signature.append('x').append(graph.leafIndex(node));
+            case Expression.Constant constant -> {
+                signature.append('c');
+                context.constants.add(constant.value);
+            }
+            case Expression.Unary unary -> {
+                if (unary.name == null) context.functions.add(unary.operation);
+                signature.append(unary.name == null ? "f" : unary.name).append('(');
+                describe(graph.a[node], context, signature);
+                signature.append(')');
+
+                // the constants of an operation follow the ones of its operand
+                context.constantOffsets[node] = context.constants.size();
+                for (double argument : unary.arguments)
+                    context.constants.add(argument);
+            }
+            case Expression.Binary binary -> {
+                if (binary.name == null) context.functions.add(binary.operation);
+                signature.append(binary.name == null ? "g" : binary.name).append('(');
+                describe(graph.a[node], context, signature);
+                signature.append(',');
+                describe(graph.b[node], context, signature);
+                signature.append(')');
+            }
+            default -> throw new IllegalArgumentException("Unknown expression: " + graph.nodes.get(node).getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Generate the class file of a kernel
+     * @param output The class of the output elements or null if the kernel is a reduction
+     * @return null if the kernel would be too large
+     */
+    private static byte[] generate(Context context, Class<?> output) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.clazz(NAME);
+        int superClass = pool.clazz("java/lang/Object");
+        int kernelClass = pool.clazz(KERNEL);
+
+        // constructor
+        Code init = new Code(pool);
+        init.op(ALOAD_0, 1);
+        init.op(INVOKESPECIAL, -1).u2(pool.method("java/lang/Object", "<init>", "()V", false));   // super()
+        init.op(RETURN, 0);
+
+        // run
+        Code run = new Code(pool);
+        run.frameClass(thisClass).frameClass(pool.clazz("[[Ljava/lang/Object;")).frameClass(pool.clazz("[[I"))
+                .frameClass(pool.clazz("[D")).frameClass(pool.clazz("[Ljava/lang/Object;")).frameClass(pool.clazz("[Ljava/lang/Object;"))
+                .frameType(ITEM_INTEGER).frameType(ITEM_DOUBLE).frameType(ITEM_INTEGER);
+
+        int slot = FIRST_FREE;
+        for (int i = 0; i < context.types.length; i++) {
+            if (context.layouts[i] == 's') {
+                context.slots[i] = slot;
+                run.load(ALOAD, INPUTS).push(i).op(AALOAD, -1).push(0).op(AALOAD, -1).unbox(context.types[i]).store(DSTORE, slot, 2).frameType(ITEM_DOUBLE);
+                slot += 2;
+                continue;
+            }
+
+            context.slots[i] = slot;
+            run.load(ALOAD, INPUTS).push(i).op(AALOAD, -1).store(ASTORE, slot++, 1).frameClass(pool.clazz("[Ljava/lang/Object;"));
+
+            if (context.layouts[i] == 'b') {
+                context.indexSlots[i] = slot;
+                run.load(ALOAD, INDICES).push(i).op(AALOAD, -1).store(ASTORE, slot++, 1).frameClass(pool.clazz("[I"));
+            }
+        }
+
+        context.constantSlots = new int[context.constants.size()];
+        for (int i = 0; i < context.constantSlots.length; i++) {
+            context.constantSlots[i] = slot;
+            run.load(ALOAD, CONSTANTS).push(i).op(DALOAD, 0).store(DSTORE, slot, 2).frameType(ITEM_DOUBLE);
+            slot += 2;
+        }
+
+        context.functionSlots = new int[context.functions.size()];
+        for (int i = 0; i < context.functionSlots.length; i++) {
+            context.functionSlots[i] = slot;
+            int type = pool.clazz(context.functions.get(i) instanceof DoubleUnaryOperator ? "java/util/function/DoubleUnaryOperator" : "java/util/function/DoubleBinaryOperator");
+            run.load(ALOAD, FUNCTIONS).push(i).op(AALOAD, -1).op(CHECKCAST, 0).u2(type).store(ASTORE, slot++, 1).frameClass(type);
+        }
+
+        // operations used more than once keep their value in a local
+        for (int node = 0; node < context.cacheSlots.length; node++) {
+            Expression expression = context.graph.nodes.get(node);
+            if (context.graph.uses[node] > 1 && (expression instanceof Expression.Unary || expression instanceof Expression.Binary)) {
+                context.cacheSlots[node] = slot;
+                slot += 2;
+            }
+        }
+
+        if (slot > 255)
+            return null;
+
+        run.op(DCONST_0, 2).store(DSTORE, ACCUMULATOR, 2);    // acc = 0
+        run.push(0).store(ISTORE, I, 1);                  // i = 0
+
+        // loop head: if (i >= n) break
+        int loop = run.length;
+        run.load(ILOAD, I).load(ILOAD, N);
+        int exit = run.length;
+        run.op(IF_ICMPGE, -2).u2(0);
+
+        if (output != null) run.load(ALOAD, OUT).load(ILOAD, I);
+
+        emit(context.root(), context, run);
+
+        if (output != null)
+            run.box(output).op(AASTORE, -3);                                                    // out[i] = box(value)
+        else
+            run.load(DLOAD, ACCUMULATOR).op(DADD, -2).store(DSTORE, ACCUMULATOR, 2);          // acc += value
+
+        run.op(IINC, 0).u1(I).u1(1);                                                         // i++
+        run.op(GOTO, 0).u2(loop - (run.length - 1));                                         // goto loop
+
+        int end = run.length;
+        run.patch(exit + 1, end - exit);
+        run.load(DLOAD, ACCUMULATOR).op(DRETURN, -2);                                           // return acc
+
+        if (run.length > MAX_CODE_LENGTH)
+            return null;
+
+        // the loop head and the exit share the same locals and an empty stack
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(frames);
+        try {
+            out.writeShort(2);
+            out.writeByte(FULL_FRAME);
+            out.writeShort(loop);
+            out.writeShort(run.frameLocals);
+            out.write(run.frameTypes.toByteArray());
+            out.writeShort(0);
+
+            int delta = end - loop - 1;
+            if (delta <= SAME_FRAME_MAX) out.writeByte(delta);
+            else {
+                out.writeByte(SAME_FRAME_EXTENDED);
+                out.writeShort(delta);
+            }
+
+            return classFile(pool, thisClass, superClass, kernelClass, init.attribute(1, null), run.attribute(slot, frames.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Emit the bytecode computing the value of a node at index i onto the stack.
+     * Nodes with a local are computed the first time they are reached and loaded from it afterward
+     */
+    private static void emit(int node, Context context, Code code) {
+        Expression.Graph graph = context.graph;
+        int cache = context.cacheSlots[node];
+        if (cache != 0 && context.emitted[node]) {
+            code.load(DLOAD, cache);
+            return;
+        }
+        context.emitted[node] = true;
+
+        switch (graph.nodes.get(node)) {
+            case Expression.Leaf ignored -> {
+                int i = graph.leafIndex(node);
+                switch (context.layouts[i]) {
+                    case 's' -> code.load(DLOAD, context.slots[i]);
+                    case 'c' -> code.load(ALOAD, context.slots[i]).load(ILOAD, I).op(AALOAD, -1).unbox(context.types[i]);
+                    default -> code.load(ALOAD, context.slots[i]).load(ALOAD, context.indexSlots[i]).load(ILOAD, I).op(IALOAD, -1).op(AALOAD, -1).unbox(context.types[i]);
+                }
+            }
+            case Expression.Constant ignored -> code.load(DLOAD, context.constantSlots[context.constantOffsets[node]]);
+            case Expression.Unary unary -> {
+                if (unary.name == null) {
+                    code.load(ALOAD, context.functionSlots[context.functionOffsets[node]]);
+                    emit(graph.a[node], context, code);
+                    code.op(INVOKEINTERFACE, -1).u2(code.pool.method("java/util/function/DoubleUnaryOperator", "applyAsDouble", "(D)D", true)).u1(3).u1(0);
+                    break;
+                }
+
+                emit(graph.a[node], context, code);
+                int constant = context.constantOffsets[node];
+                switch (unary.name) {
+                    case "neg" -> code.op(DNEG, 0);
+                    case "sqrt", "exp", "log", "tanh" -> code.math(unary.name, "(D)D", 0);
+                    case "pow" -> code.load(DLOAD, context.constantSlots[constant]).math("pow", "(DD)D", -2);
+                    case "clip" -> {
+                        int min = context.constantSlots[constant], max = context.constantSlots[constant + 1];
+                        code.load(DLOAD, max).math("min", "(DD)D", -2).load(DLOAD, min).math("max", "(DD)D", -2);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown operation: " + unary.name);
+                }
+            }
+            case Expression.Binary binary -> {
+                if (binary.name == null) {
+                    code.load(ALOAD, context.functionSlots[context.functionOffsets[node]]);
+                    emit(graph.a[node], context, code);
+                    emit(graph.b[node], context, code);
+                    code.op(INVOKEINTERFACE, -3).u2(code.pool.method("java/util/function/DoubleBinaryOperator", "applyAsDouble", "(DD)D", true)).u1(5).u1(0);
+                    break;
+                }
+
+                emit(graph.a[node], context, code);
+                emit(graph.b[node], context, code);
+                switch (binary.name) {
+                    case "add" -> code.op(DADD, -2);
+                    case "sub" -> code.op(DSUB, -2);
+                    case "mul" -> code.op(DMUL, -2);
+                    case "div" -> code.op(DDIV, -2);
+                    default -> throw new IllegalArgumentException("Unknown operation: " + binary.name);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown expression: " + graph.nodes.get(node).getClass().getSimpleName());
+        }
+
+        // keep a copy for later uses
+        if (cache != 0)
+            code.op(DUP2, 2).store(DSTORE, cache, 2);
+    }
+
+    private static byte[] classFile(ConstantPool pool, int thisClass, int superClass, int kernelClass, byte[] init, byte[] run) throws IOException {
+        int initName = pool.utf8("<init>"), initDescriptor = pool.utf8("()V");
+        int runName = pool.utf8("run"), runDescriptor = pool.utf8(DESCRIPTOR);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(CLASS_FILE_VERSION);
+        out.writeShort(pool.count);
+        out.write(pool.bytes.toByteArray());
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(kernelClass);
+        out.writeShort(0);                          // fields
+        out.writeShort(2);                          // methods
+
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(initName);
+        out.writeShort(initDescriptor);
+        out.writeShort(1);
+        out.write(init);
+
+        out.writeShort(ACC_PUBLIC | ACC_FINAL);
+        out.writeShort(runName);
+        out.writeShort(runDescriptor);
+        out.writeShort(1);
+        out.write(run);
+
+        out.writeShort(0);                          // attributes
+        return bytes.toByteArray();
+    }
+
+    private static class Context {
+        final Expression.Graph graph;
+        final Class<?>[] types;
+        final char[] layouts;
+        final int[] slots, indexSlots;
+        final List<Double> constants = new ArrayList<>();
+        final List<Object> functions = new ArrayList<>();
+
+        // per node: the index of its first constant and function, the local caching its value (0 if none) and whether it was described or emitted
+        final int[] constantOffsets, functionOffsets, cacheSlots;
+        final boolean[] described, emitted;
+
+        int[] constantSlots, functionSlots;
+
+        Context(Expression.Graph graph) {
+            int leaves = graph.leaves.size(), nodes = graph.nodes.size();
+            this.graph = graph;
+            this.types = new Class<?>[leaves];
+            this.layouts = new char[leaves];
+            this.slots = new int[leaves];
+            this.indexSlots = new int[leaves];
+            this.constantOffsets = new int[nodes];
+            this.functionOffsets = new int[nodes];
+            this.cacheSlots = new int[nodes];
+            this.described = new boolean[nodes];
+            this.emitted = new boolean[nodes];
+        }
+
+        /**
+         * Returns the node of the expression itself
+         */
+        int root() { return this.graph.nodes.size() - 1; }
+    }
+
+    private static class ConstantPool {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Map<String, Integer> entries = new HashMap<>();
+        int count = 1;
+
+        int utf8(String value) {
+            return this.entries.computeIfAbsent("U" + value, key -> {
+                try {
+                    DataOutputStream out = new DataOutputStream(this.bytes);
+                    out.writeByte(CONSTANT_UTF8);
+                    out.writeUTF(value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return this.count++;
+            });
+        }
+
+        int clazz(String name) {
+            int index = this.utf8(name);
+            return this.entry("C" + name, CONSTANT_CLASS, index);
+        }
+
+        int method(String owner, String name, String descriptor, boolean isInterface) {
+            int clazz = this.clazz(owner);
+            int nameIndex = this.utf8(name), descriptorIndex = this.utf8(descriptor);
+            int nameAndType = this.entry("N" + name + descriptor, CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+            return this.entry((isInterface ? "I" : "M") + owner + "." + name + descriptor, isInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF, clazz, nameAndType);
+        }
+
+        private int entry(String key, int tag, int... indices) {
+            return this.entries.computeIfAbsent(key, k -> {
+                this.bytes.write(tag);
+                for (int index : indices) {
+                    this.bytes.write(index >> 8);
+                    this.bytes.write(index);
+                }
+                return this.count++;
+            });
+        }
+    }
+
+    private static class Code {
+        final ConstantPool pool;
+        final ByteArrayOutputStream frameTypes = new ByteArrayOutputStream();
+        byte[] code = new byte[256];
+        int length, stack, maxStack, frameLocals;
+
+        Code(ConstantPool pool) { this.pool = pool; }
+
+        Code u1(int value) {
+            if (this.length == this.code.length) this.code = Arrays.copyOf(this.code, this.length * 2);
+            this.code[this.length++] = (byte) value;
+            return this;
+        }
+
+        Code u2(int value) { return this.u1(value >> 8).u1(value); }
+
+        void patch(int position, int value) {
+            this.code[position] = (byte) (value >> 8);
+            this.code[position + 1] = (byte) value;
+        }
+
+        /**
+         * Write an opcode and track the size of the operand stack
+         * @param delta The change of the stack size in slots
+         */
+        Code op(int opcode, int delta) {
+            this.stack += delta;
+            this.maxStack = Math.max(this.maxStack, this.stack);
+            return this.u1(opcode);
+        }
+
+        Code load(int opcode, int slot) { return this.op(opcode, opcode == DLOAD ? 2 : 1).u1(slot); }
+        Code store(int opcode, int slot, int size) { return this.op(opcode, -size).u1(slot); }
+
+        Code push(int value) {
+            if (value <= 5) return this.op(ICONST_0 + value, 1);
+            if (value <= Byte.MAX_VALUE) return this.op(BIPUSH, 1).u1(value);
+            return this.op(SIPUSH, 1).u2(value);
+        }
+
+        Code math(String name, String descriptor, int delta) { return this.op(INVOKESTATIC, delta).u2(this.pool.method("java/lang/Math", name, descriptor, false)); }
+
+        /**
+         * Convert a boxed element on the stack to a double
+         */
+        Code unbox(Class<?> type) {
+            String owner = type.getName().replace('.', '/');
+            this.op(CHECKCAST, 0).u2(this.pool.clazz(owner));
+
+            if (type == Double.class) return this.op(INVOKEVIRTUAL, 1).u2(this.pool.method(owner, "doubleValue", "()D", false));
+            if (type == Float.class) return this.op(INVOKEVIRTUAL, 0).u2(this.pool.method(owner, "floatValue", "()F", false)).op(F2D, 1);
+            if (type == Integer.class) return this.op(INVOKEVIRTUAL, 0).u2(this.pool.method(owner, "intValue", "()I", false)).op(I2D, 1);
+            if (type == Long.class) return this.op(INVOKEVIRTUAL, 1).u2(this.pool.method(owner, "longValue", "()J", false)).op(L2D, 0);
+            return this.op(INVOKEVIRTUAL, 0).u2(this.pool.method(owner, "floatValue", "()F", false)).op(F2D, 1);
+        }
+
+        /**
+         * Convert a double on the stack to a boxed element
+         */
+        Code box(Class<?> type) {
+            String owner = type.getName().replace('.', '/');
+
+            if (type == Double.class) return this.op(INVOKESTATIC, -1).u2(this.pool.method(owner, "valueOf", "(D)Ljava/lang/Double;", false));
+            if (type == Float.class) return this.op(D2F, -1).op(INVOKESTATIC, 0).u2(this.pool.method(owner, "valueOf", "(F)Ljava/lang/Float;", false));
+            if (type == Integer.class) return this.op(D2I, -1).op(INVOKESTATIC, 0).u2(this.pool.method(owner, "valueOf", "(I)Ljava/lang/Integer;", false));
+            if (type == Long.class) return this.op(D2L, 0).op(INVOKESTATIC, -1).u2(this.pool.method(owner, "valueOf", "(J)Ljava/lang/Long;", false));
+            return this.op(D2F, -1).op(INVOKESTATIC, 0).u2(this.pool.method(owner, "valueOf", "(F)L" + owner + ";", false));
+        }
+
+        /**
+         * Add a local to the stack map frame of the loop
+         * @param tag The verification type tag ({@link KernelCompiler#ITEM_INTEGER} or {@link KernelCompiler#ITEM_DOUBLE})
+         */
+        Code frameType(int tag) {
+            this.frameLocals++;
+            this.frameTypes.write(tag);
+            return this;
+        }
+
+        /**
+         * Add a local holding an object to the stack map frame of the loop
+         * @param clazz The constant pool index of the class of the object
+         */
+        Code frameClass(int clazz) {
+            this.frameLocals++;
+            this.frameTypes.write(ITEM_OBJECT);
+            this.frameTypes.write(clazz >> 8);
+            this.frameTypes.write(clazz);
+            return this;
+        }
+
+        /**
+         * Returns the "Code" attribute of this method
+         * @param maxLocals The amount of local slots
+         * @param stackMapTable The content of the "StackMapTable" attribute or null
+         */
+        byte[] attribute(int maxLocals, byte[] stackMapTable) throws IOException {
+            int name = this.pool.utf8("Code");
+            int tableName = stackMapTable == null ? 0 : this.pool.utf8("StackMapTable");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(this.maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(this.length);
+            out.write(this.code, 0, this.length);
+            out.writeShort(0);
+
+            if (stackMapTable == null) out.writeShort(0);
+            else {
+                out.writeShort(1);
+                out.writeShort(tableName);
+                out.writeInt(stackMapTable.length);
+                out.write(stackMapTable);
+            }
+
+            ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+            DataOutputStream result = new DataOutputStream(attribute);
+            result.writeShort(name);
+            result.writeInt(bytes.size());
+            result.write(bytes.toByteArray());
+            return attribute.toByteArray();
+        }
+    }
+}
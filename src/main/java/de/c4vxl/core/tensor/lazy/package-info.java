@@ -0,0 +1,6 @@
+/**
+ * This package contains lazily evaluated tensor expressions
+ * used for fusing chains of element wise operations,
+ * and the compiler turning them into specialized kernels at runtime.
+ */
+package de.c4vxl.core.tensor.lazy;
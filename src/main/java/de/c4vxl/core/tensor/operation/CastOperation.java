@@ -0,0 +1,42 @@
+package de.c4vxl.core.tensor.operation;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.operation.type.Operation;
+import de.c4vxl.core.type.DType;
+
+import java.lang.reflect.Array;
+
+/**
+ * Converts a tensor into another dtype while keeping it connected to the computational graph.
+ * The gradient is converted back into the dtype of the input.
+ */
+public class CastOperation<T> extends Operation<T> {
+    protected Tensor<T> a;
+    protected DType<T> target;
+
+    @SuppressWarnings("unchecked")
+    public CastOperation(Tensor<?> a, DType<T> target) {
+        super((Tensor<T>) a);
+
+        this.a = this.inputs.getFirst();
+        this.target = target;
+
+        this.saveForBackward("dtype", a.dtype);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Tensor<T> _forward() {
+        T[] data = (T[]) Array.newInstance(this.target.clazz, this.a.size());
+        for (int i = 0; i < data.length; i++)
+            data[i] = this.target.parse(this.a.data[i]);
+
+        return new Tensor<>(data, this.a.shape.dimensions.clone());
+    }
+
+    @Override
+    public void _backward(Tensor<T> gradOutput) {
+        DType<T> dtype = this.getValue("dtype");
+        this.a.accumulate_grad(gradOutput.asDType(dtype));
+    }
+}
@@ -0,0 +1,83 @@
+package de.c4vxl.core.tensor.operation;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.grad.GradContext;
+import de.c4vxl.core.tensor.grad.NoGradClosable;
+import de.c4vxl.core.tensor.operation.type.Operation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs a function without keeping its intermediate results.
+ * Only the inputs are stored; the function is re-run with gradients enabled during the backward pass.
+ */
+public class CheckpointOperation<T> extends Operation<T> {
+    protected Function<List<Tensor<T>>, Tensor<T>> function;
+
+    public CheckpointOperation(Function<Tensor<T>, Tensor<T>> function, Tensor<T> a) {
+        this(inputs -> function.apply(inputs.getFirst()), List.of(a));
+    }
+
+    /**
+     * @param function The function to checkpoint. It receives the inputs in the given order
+     * @param inputs The inputs to the function
+     */
+    @SuppressWarnings("unchecked")
+    public CheckpointOperation(Function<List<Tensor<T>>, Tensor<T>> function, List<Tensor<T>> inputs) {
+        super(inputs.toArray(Tensor[]::new));
+
+        this.function = function;
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    public Tensor<T> _forward() {
+        try (NoGradClosable ignored = GradContext.noGrad()) {
+            Tensor<T> result = this.function.apply(this.inputs.stream().map(Tensor::detach).toList());
+
+            // parameters used inside the function may require a gradient even if the inputs don't
+            this.saveForBackward("requiresGrad", result.requires_grad);
+
+            // drop the graph of the function so its intermediates can be freed
+            return result.detach();
+        }
+    }
+
+    @Override
+    public Tensor<T> forward() {
+        Tensor<T> result = super.forward();
+        result.requires_grad |= this.<Boolean>getValue("requiresGrad");
+        return result;
+    }
+
+    @Override
+    public void _backward(Tensor<T> gradOutput) {
+        boolean prev = GradContext.isNoGrad();
+        GradContext.setNoGrad(false);
+
+        try {
+            // recompute the function, this time building its graph
+            List<Tensor<T>> inputs = new ArrayList<>();
+            for (Tensor<T> input : this.inputs) {
+                Tensor<T> x = input.detach(input.requires_grad);
+                x.grad = null;
+                inputs.add(x);
+            }
+
+            Tensor<T> result = this.function.apply(inputs);
+            if (!result.requires_grad)
+                return;
+
+            result.grad = gradOutput;
+            result.backward();
+
+            for (int i = 0; i < inputs.size(); i++)
+                if (inputs.get(i).grad != null)
+                    this.inputs.get(i).accumulate_grad(inputs.get(i).grad);
+        } finally {
+            GradContext.setNoGrad(prev);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package de.c4vxl.core.tensor.operation;
 
 import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.lazy.Expression;
 import de.c4vxl.core.tensor.operation.type.Operation;
 import de.c4vxl.core.type.DType;
 import de.c4vxl.core.utils.TensorUtils;
@@ -24,35 +25,33 @@ public class GELUOperation<T> extends Operation<T> {
         });
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void _backward(Tensor<T> gradOutput) {
-        Tensor<T> x = this.a.detach();
+        Expression x = this.a.lazy();
 
         // sqrt(2 / pi)
-        Tensor<T> sqrt2OverPi = Tensor.of(2.).div(Math.PI).sqrt().asDType(x.dtype);
+        double sqrt2OverPi = Math.sqrt(2 / Math.PI);
 
         // s = sqrt(2 / pi) * (x + 0.044715 * x³)
-        Tensor<T> s = sqrt2OverPi.mul(x.add(x.pow(3.).mul(x.dtype.parse(0.044715))));
+        Expression s = x.add(x.pow(3.).mul(0.044715)).mul(sqrt2OverPi);
 
-        Tensor<T> tanhS = s.tanh();
+        Expression tanhS = s.tanh();
 
         // sech²(s) = 1 - tanh²(s)
-        Tensor<T> sech2 = Tensor.of(1.).asDType(x.dtype).sub(tanhS.pow(2.));
+        Expression sech2 = tanhS.pow(2.).neg().add(1.);
 
         // term1 = 0.5 * tanh(s)
-        Tensor<T> term1 = tanhS.mul(x.dtype.parse(0.5));
+        Expression term1 = tanhS.mul(0.5);
 
         // term2 = 0.5 * x * sech²(s) * sqrt(2/pi) * (1 + 3 * 0.044715 * x²)
-        Tensor<T> term2 = x.mul(x.dtype.parse(0.5))
+        Expression term2 = x.mul(0.5)
                 .mul(sech2)
                 .mul(sqrt2OverPi)
-                .mul(Tensor.of(x.dtype.parse(1)).add(x.pow(2.).mul(x.dtype.parse(3 * 0.044715))).asDType(x.dtype));
+                .mul(x.pow(2.).mul(3 * 0.044715).add(1.));
 
-        Tensor<T> gradInput = term1.add(term2).add(x.dtype.parse(0.5)); // term1 + term2 + 0.5
+        Expression gradInput = term1.add(term2).add(0.5); // term1 + term2 + 0.5
 
-        gradInput = gradInput.mul(gradOutput);
-
-        this.a.accumulate_grad(gradInput);
+        // evaluated in a single pass
+        this.a.accumulate_grad(gradInput.mul(gradOutput.lazy()).evaluate(this.a.dtype));
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package de.c4vxl.core.tensor.operation;
 
 import de.c4vxl.core.tensor.Tensor;
 import de.c4vxl.core.tensor.operation.type.Operation;
+import de.c4vxl.core.type.DType;
 import de.c4vxl.core.utils.BroadcastingUtils;
 import de.c4vxl.core.utils.TensorUtils;
 import de.c4vxl.jNN;
@@ -39,7 +40,17 @@ public class MatMulOperation<T> extends Operation<T> {
 
         Tensor<T> result;
 
-        if (jNN.MATMUL_TYPE == 1) { // nd4j version
+        if (jNN.MATMUL_TYPE == 1 && (a.dtype.equals(DType.FLOAT) || a.dtype.isHalfPrecision())) { // nd4j version in single precision
+            INDArray ndarray = Nd4j.matmul(Nd4j.createFromArray(a.asFloat().data).reshape(Arrays.stream(a.shape.dimensions).mapToInt(Integer::intValue).toArray()),
+                    Nd4j.createFromArray(b.asFloat().data).reshape(Arrays.stream(b.shape.dimensions).mapToInt(Integer::intValue).toArray()));
+
+            float[] data = ndarray.data().asFloat();
+            Float[] boxed = new Float[data.length];
+            for (int i = 0; i < data.length; i++)
+                boxed[i] = data[i];
+
+            result = new Tensor<>(boxed, Arrays.stream(ndarray.shape()).boxed().map(Long::intValue).toArray(Integer[]::new)).asDType(a.dtype);
+        } else if (jNN.MATMUL_TYPE == 1) { // nd4j version
             INDArray ndarray = Nd4j.matmul(Nd4j.createFromArray(a.asDouble().data).reshape(Arrays.stream(a.shape.dimensions).mapToInt(Integer::intValue).toArray()),
                     Nd4j.createFromArray(b.asDouble().data).reshape(Arrays.stream(b.shape.dimensions).mapToInt(Integer::intValue).toArray()));
 
@@ -20,7 +20,13 @@ public class SumOperation<T> extends Operation<T> {
     }
 
     @Override
-    public Tensor<T> _forward() { return TensorUtils.reduceAlongDimension(this.a, this.dim, Tensor::add, this.keepDim); }
+    public Tensor<T> _forward() {
+        // accumulate half precision values in single precision
+        if (this.a.dtype.isHalfPrecision())
+            return TensorUtils.reduceAlongDimension(this.a.asFloat(), this.dim, Tensor::add, this.keepDim).asDType(this.a.dtype);
+
+        return TensorUtils.reduceAlongDimension(this.a, this.dim, Tensor::add, this.keepDim);
+    }
 
     @Override
     public void _backward(Tensor<T> gradOutput) {
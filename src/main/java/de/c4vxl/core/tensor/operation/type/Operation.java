@@ -1,6 +1,7 @@
 package de.c4vxl.core.tensor.operation.type;
 
 import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -37,6 +38,14 @@ public abstract class Operation<T> {
         return (R) this.cache.get(key);
     }
 
+    /**
+     * Free the values stored for the backward pass and drop the references to the inputs
+     */
+    public void release() {
+        this.cache.clear();
+        this.inputs = List.of();
+    }
+
     public abstract Tensor<T> _forward();
     public abstract void _backward(Tensor<T> gradOutput);
 
@@ -44,10 +53,12 @@ public abstract class Operation<T> {
      * Invoke this operation with the parameters passed in the constructor
      */
     public Tensor<T> forward() {
-        Tensor<T> result = this._forward();
+        Tensor<?>[] inputs = this.inputs.toArray(Tensor<?>[]::new);
+
+        Tensor<T> result = Tracer.record(this.getClass().getSimpleName(), this::_forward, inputs);
         result.requires_grad = this.inputs.stream().anyMatch(inp -> inp.requires_grad);
         result.operation = this;
-        result.parents = List.of(this.inputs.toArray(Tensor<?>[]::new));
+        result.parents = List.of(inputs);
         result.is_leaf = false;
         return result;
     }
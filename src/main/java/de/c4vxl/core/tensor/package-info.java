@@ -5,7 +5,9 @@
  * <p>Subpackages:</p>
  * <ul>
  *     <li>{@link de.c4vxl.core.tensor.grad} - Tools for gradient management.</li>
+ *     <li>{@link de.c4vxl.core.tensor.lazy} - Lazily evaluated expressions for fusing element wise operations.</li>
  *     <li>{@link de.c4vxl.core.tensor.operation} - The implementations of basic tensor operations (e.g., add, matmul, reshape, ...).</li>
+ *     <li>{@link de.c4vxl.core.tensor.trace} - Tracing of forward passes into replayable inference plans.</li>
  * </ul>
  */
 package de.c4vxl.core.tensor;
\ No newline at end of file
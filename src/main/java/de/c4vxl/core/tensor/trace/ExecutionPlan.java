@@ -0,0 +1,118 @@
+package de.c4vxl.core.tensor.trace;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.grad.GradContext;
+import de.c4vxl.core.tensor.grad.NoGradClosable;
+
+import java.util.*;
+
+/**
+ * A compiled version of a {@link TracedGraph} used for inference.
+ * <p>
+ * While compiling, kernels that only depend on constants (e.g. weights converted into another dtype or the causal mask) are folded into constants,
+ * and kernels that don't contribute to the output are removed.
+ * Replaying the plan invokes the remaining kernels directly without any autograd bookkeeping or reflection,
+ * and releases every intermediate result as soon as its last consumer has run.
+ * <p>
+ * A plan captures the values of the constants at the time of tracing. Re-trace after changing the weights of the module.
+ * Plans are not meant to be shared between threads.
+ */
+public class ExecutionPlan<T, R> {
+    public final TracedGraph graph;
+    public final List<TracedGraph.Node> nodes = new ArrayList<>();
+
+    /**
+     * The slots to release after each node
+     */
+    protected final List<List<Tensor<?>>> release = new ArrayList<>();
+
+    public ExecutionPlan(TracedGraph graph) {
+        this.graph = graph;
+
+        // Mark every slot that depends on the input
+        Set<Tensor<?>> dynamic = Collections.newSetFromMap(new IdentityHashMap<>());
+        dynamic.add(graph.input);
+        for (TracedGraph.Node node : graph.nodes)
+            if (node.inputs.stream().anyMatch(dynamic::contains))
+                dynamic.add(node.output);
+
+        // Keep only dynamic nodes that contribute to the output
+        // Nodes depending only on constants have already been evaluated while tracing and are folded in
+        Set<Tensor<?>> needed = Collections.newSetFromMap(new IdentityHashMap<>());
+        needed.add(graph.output);
+        for (int i = graph.nodes.size() - 1; i >= 0; i--) {
+            TracedGraph.Node node = graph.nodes.get(i);
+            if (!dynamic.contains(node.output) || !needed.remove(node.output))
+                continue;
+
+            needed.addAll(node.inputs);
+            this.nodes.addFirst(node);
+        }
+
+        // Liveness: release every dynamic slot after its last use
+        Map<Tensor<?>, Integer> lastUse = new IdentityHashMap<>();
+        for (int i = 0; i < this.nodes.size(); i++) {
+            this.release.add(new ArrayList<>());
+            for (Tensor<?> input : this.nodes.get(i).inputs)
+                if (dynamic.contains(input))
+                    lastUse.put(input, i);
+        }
+        lastUse.forEach((slot, idx) -> {
+            if (slot != graph.output)
+                this.release.get(idx).add(slot);
+        });
+
+        // Drop the intermediate results of the trace
+        for (Tensor<?> slot : dynamic)
+            slot.data = null;
+    }
+
+    /**
+     * Replay the plan on a new input
+     * @param input The input. Must be of the same shape as the example used for tracing
+     */
+    @SuppressWarnings({"unchecked", "try"})
+    public synchronized Tensor<R> forward(Tensor<T> input) {
+        if (!input.shape.equals(graph.input.shape))
+            throw new IllegalArgumentException("Expected input of shape " + graph.input.shape + " but got " + input.shape + "!");
+
+        try (NoGradClosable ignored = GradContext.noGrad()) {
+            bind(graph.input, input.asDType(graph.input.dtype));
+
+            for (int i = 0; i < this.nodes.size(); i++) {
+                TracedGraph.Node node = this.nodes.get(i);
+                bind(node.output, node.kernel.get());
+
+                for (Tensor<?> slot : this.release.get(i))
+                    slot.data = null;
+            }
+
+            Tensor<R> output = (Tensor<R>) graph.output;
+
+            // constant outputs are copied so they can't be modified by the caller
+            if (this.nodes.isEmpty() && output != graph.input)
+                return new Tensor<>(output.data.clone(), output.shape.dimensions.clone());
+
+            Tensor<R> result = new Tensor<>(output.data, output.shape.dimensions.clone());
+            output.data = null;
+            graph.input.data = null;
+            return result;
+        }
+    }
+
+    /**
+     * Point a slot at new data
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void bind(Tensor<T> slot, Tensor<?> value) {
+        slot.data = (T[]) value.data;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ExecutionPlan{nodes=" + nodes.size() + ", traced=" + graph.nodes.size() + "}");
+        for (int i = 0; i < nodes.size(); i++)
+            builder.append("\n  ").append(i).append(": ").append(nodes.get(i));
+        return builder.toString();
+    }
+}
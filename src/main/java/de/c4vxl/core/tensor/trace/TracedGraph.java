@@ -0,0 +1,55 @@
+package de.c4vxl.core.tensor.trace;
+
+import de.c4vxl.core.tensor.Tensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The intermediate representation of a traced forward pass.
+ * It holds the recorded kernels in the order they were executed.
+ * Every tensor object that was used during tracing acts as a "slot" whose data can be rebound when replaying the graph.
+ * @see de.c4vxl.core.tensor.trace.Tracer
+ */
+public class TracedGraph {
+    /**
+     * A single recorded kernel
+     */
+    public static class Node {
+        public final String name;
+        public final Supplier<? extends Tensor<?>> kernel;
+        public final List<Tensor<?>> inputs;
+        public final Tensor<?> output;
+
+        public Node(String name, Supplier<? extends Tensor<?>> kernel, List<Tensor<?>> inputs, Tensor<?> output) {
+            this.name = name;
+            this.kernel = kernel;
+            this.inputs = inputs;
+            this.output = output;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + inputs.stream().map(x -> x.shape.toString()).toList() + ") -> " + output.shape;
+        }
+    }
+
+    public final List<Node> nodes = new ArrayList<>();
+    public Tensor<?> input, output;
+
+    /**
+     * Used for ignoring kernels that are invoked from within another kernel
+     */
+    protected int depth = 0;
+
+    public TracedGraph(Tensor<?> input) { this.input = input; }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("TracedGraph{input=" + input.shape + ", output=" + (output == null ? null : output.shape) + "}");
+        for (int i = 0; i < nodes.size(); i++)
+            builder.append("\n  %").append(i).append(" = ").append(nodes.get(i));
+        return builder.toString();
+    }
+}
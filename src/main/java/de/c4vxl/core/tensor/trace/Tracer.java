@@ -0,0 +1,97 @@
+package de.c4vxl.core.tensor.trace;
+
+import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.grad.GradContext;
+import de.c4vxl.core.tensor.grad.NoGradClosable;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Records the kernels executed during a forward pass into a {@link TracedGraph}.
+ * <p>
+ * Every tensor computed from the input has to be produced by an {@link de.c4vxl.core.tensor.operation.type.Operation}
+ * or by one of the utilities that report to {@link Tracer#record}. Any other tensor is treated as a constant.
+ * Data-dependent control flow is not captured. The graph always follows the path taken by the example input.
+ */
+public class Tracer {
+    private static final ThreadLocal<TracedGraph> current = new ThreadLocal<>();
+
+    /**
+     * Checks if a trace is being recorded in the current thread
+     */
+    public static boolean isTracing() { return current.get() != null; }
+
+    /**
+     * Run a kernel and record it if a trace is active in the current thread.
+     * Kernels invoked from within another kernel are not recorded. Deferred inputs are materialized before the kernel runs.
+     * @param name The name of the kernel
+     * @param kernel The kernel. It must only read the data of the passed inputs, so it can be replayed after their data got rebound
+     * @param inputs The tensors the kernel reads from
+     */
+    public static <R> Tensor<R> record(String name, Supplier<Tensor<R>> kernel, Tensor<?>... inputs) {
+        for (Tensor<?> input : inputs)
+            if (input != null) input.materialize();
+
+        TracedGraph graph = current.get();
+        if (graph == null)
+            return kernel.get();
+
+        graph.depth++;
+        Tensor<R> result;
+        try {
+            result = kernel.get();
+        } finally {
+            graph.depth--;
+        }
+
+        if (graph.depth == 0)
+            graph.nodes.add(new TracedGraph.Node(name, kernel, Arrays.asList(inputs), result));
+
+        return result;
+    }
+
+    /**
+     * Trace a forward function on an example input
+     * @param forward The forward function
+     * @param example An example input. Its shape will be the only shape the traced graph accepts
+     */
+    @SuppressWarnings("try")
+    public static <T, R> TracedGraph trace(Function<Tensor<T>, Tensor<R>> forward, Tensor<T> example) {
+        if (isTracing())
+            throw new IllegalStateException("Another trace is already being recorded in this thread!");
+
+        Tensor<T> input = example.detach();
+        TracedGraph graph = new TracedGraph(input);
+
+        current.set(graph);
+        try (NoGradClosable ignored = GradContext.noGrad()) {
+            graph.output = forward.apply(input);
+        } finally {
+            current.remove();
+        }
+
+        return graph;
+    }
+
+    /**
+     * Trace a forward function and compile it into an execution plan
+     * @param forward The forward function
+     * @param example An example input. Its shape will be the only shape the plan accepts
+     */
+    public static <T, R> ExecutionPlan<T, R> compile(Function<Tensor<T>, Tensor<R>> forward, Tensor<T> example) {
+        return new ExecutionPlan<>(trace(forward, example));
+    }
+
+    /**
+     * Trace the forward function of a module and compile it into an execution plan
+     * @param module The module
+     * @param example An example input. Its shape will be the only shape the plan accepts
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> ExecutionPlan<T, R> compile(Module module, Tensor<T> example) {
+        return compile(x -> (Tensor<R>) module._forward(x), example);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains tools for tracing the forward pass of a module
+ * into an inference graph and compiling it into a replayable execution plan.
+ */
+package de.c4vxl.core.tensor.trace;
@@ -0,0 +1,87 @@
+package de.c4vxl.core.type;
+
+import de.c4vxl.core.tensor.Tensor;
+
+import java.io.Serial;
+
+/**
+ * A 16-bit "brain" floating point number (BFLOAT16) with the exponent range of a float and a 7-bit mantissa.
+ * This dtype reduces the precision of values, not the memory of tensors: like with every dtype, a tensor stores one reference per element.
+ * All 2^16 instances are created up front and shared, so no object is allocated per element.
+ * Use {@link BFloat16#pack(Tensor)} and {@link BFloat16#unpack(short[], Integer...)} for a packed {@code short[]} representation.
+ */
+public final class BFloat16 extends Number implements Comparable<BFloat16> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final BFloat16[] cache = new BFloat16[1 << 16];
+
+    static {
+        for (int i = 0; i < cache.length; i++)
+            cache[i] = new BFloat16((short) i);
+    }
+
+    public final short bits;
+
+    private BFloat16(short bits) { this.bits = bits; }
+
+    // keep deserialized values interned
+    @Serial
+    private Object readResolve() { return fromBits(this.bits); }
+
+    /**
+     * Returns the (interned) bfloat16 of its raw bits
+     * @param bits The bits
+     */
+    public static BFloat16 fromBits(short bits) {
+        return cache[bits & 0xFFFF];
+    }
+
+    /**
+     * Returns the nearest bfloat16 of a float (rounding to nearest even)
+     * @param value The float
+     */
+    public static BFloat16 valueOf(float value) { return fromBits(toBits(value)); }
+
+    private static short toBits(float value) {
+        if (Float.isNaN(value))
+            return (short) 0x7FC0;
+
+        int bits = Float.floatToRawIntBits(value);
+        bits += 0x7FFF + ((bits >> 16) & 1);
+        return (short) (bits >>> 16);
+    }
+
+    /**
+     * Convert the data of a tensor into packed bfloat16 bits
+     * @param tensor The tensor
+     */
+    public static short[] pack(Tensor<?> tensor) {
+        short[] bits = new short[tensor.size()];
+        for (int i = 0; i < bits.length; i++)
+            bits[i] = tensor.data[i] instanceof BFloat16 value ? value.bits : toBits(((Number) tensor.data[i]).floatValue());
+        return bits;
+    }
+
+    /**
+     * Create a tensor from packed bfloat16 bits
+     * @param bits The bits
+     * @param shape The shape of the tensor
+     */
+    public static Tensor<BFloat16> unpack(short[] bits, Integer... shape) {
+        BFloat16[] data = new BFloat16[bits.length];
+        for (int i = 0; i < bits.length; i++)
+            data[i] = fromBits(bits[i]);
+        return new Tensor<>(data, shape);
+    }
+
+    @Override public float floatValue() { return Float.intBitsToFloat(this.bits << 16); }
+    @Override public double doubleValue() { return this.floatValue(); }
+    @Override public int intValue() { return (int) this.floatValue(); }
+    @Override public long longValue() { return (long) this.floatValue(); }
+
+    @Override public int compareTo(BFloat16 o) { return Float.compare(this.floatValue(), o.floatValue()); }
+    @Override public boolean equals(Object o) { return o instanceof BFloat16 value && value.bits == this.bits; }
+    @Override public int hashCode() { return this.bits; }
+    @Override public String toString() { return Float.toString(this.floatValue()); }
+}
@@ -1,7 +1,8 @@
 package de.c4vxl.core.type;
 
 import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleFunction;
 
 public class DType<T> {
     // truth dtypes
@@ -13,12 +14,30 @@ public class DType<T> {
     public static DType<Long> LONG = new DType<>(Long.class);
     public static DType<Double> DOUBLE = new DType<>(Double.class);
 
+    // half precision dtypes (tensors still store one reference per element, so these save precision, not memory)
+    public static DType<Half> FLOAT16 = new DType<>(Half.class);
+    public static DType<BFloat16> BFLOAT16 = new DType<>(BFloat16.class);
+
     // default dtype
     public static DType<?> DEFAULT = DType.DOUBLE;
 
     public Class<T> clazz;
     public DType(Class<T> clazz) { this.clazz = clazz; }
 
+    /**
+     * Returns the built-in dtype whose class has a specific name.
+     * Used for reading files, so no other class is ever loaded
+     * @param name The binary name of the class, as returned by {@link Class#getName()}
+     * @throws IllegalArgumentException If no built-in dtype has a class of this name
+     */
+    public static DType<?> forName(String name) {
+        for (DType<?> dtype : new DType<?>[]{ BOOLEAN, INTEGER, FLOAT, LONG, DOUBLE, FLOAT16, BFLOAT16 })
+            if (dtype.clazz.getName().equals(name))
+                return dtype;
+
+        throw new IllegalArgumentException("Unknown dtype: " + name);
+    }
+
     /**
      * Translate any kind of object into its representation in this DType
      * @param obj The object to translate
@@ -43,6 +62,8 @@ public class DType<T> {
         if (dtype.equals(BOOLEAN)) return (T) (Boolean) (number.intValue() > 0);
         if (dtype.equals(DOUBLE)) return (T) (Double) number.doubleValue();
         if (dtype.equals(FLOAT)) return (T) (Float) number.floatValue();
+        if (dtype.equals(FLOAT16)) return (T) Half.valueOf(number.floatValue());
+        if (dtype.equals(BFLOAT16)) return (T) BFloat16.valueOf(number.floatValue());
         if (obj instanceof Boolean bool) return dtype.parse(bool ? 1 : 0);
 
         // Avoid reflection unless absolutely necessary
@@ -53,17 +74,40 @@ public class DType<T> {
         }
     }
 
+    /**
+     * Returns a function converting doubles into this dtype without the type checks of {@link DType#parse}
+     */
+    @SuppressWarnings("unchecked")
+    public DoubleFunction<T> converter() {
+        if (this.equals(DOUBLE)) return v -> (T) (Double) v;
+        if (this.equals(FLOAT)) return v -> (T) (Float) (float) v;
+        if (this.equals(FLOAT16)) return v -> (T) Half.valueOf((float) v);
+        if (this.equals(BFLOAT16)) return v -> (T) BFloat16.valueOf((float) v);
+        return this::parse;
+    }
+
+    /**
+     * Returns {@code true} if this dtype represents floating point numbers
+     */
+    public boolean isFloatingPoint() { return this.equals(FLOAT) || this.equals(DOUBLE) || this.isHalfPrecision(); }
+
+    /**
+     * Returns {@code true} if this dtype is a 16-bit floating point type.
+     * Matrix multiplications and reductions of these dtypes accumulate in single precision
+     */
+    public boolean isHalfPrecision() { return this.equals(FLOAT16) || this.equals(BFLOAT16); }
+
     /**
      * Returns a random value in this Dtype in between the bounds of 0 to 1, or 0 to 100 for Integers
      */
-    public T randomValue() { return parse(new Random().nextDouble(0, this.equals(INTEGER) ? 100 : 1)); }
+    public T randomValue() { return parse(ThreadLocalRandom.current().nextDouble(0, this.equals(INTEGER) ? 100 : 1)); }
 
     /**
      * Returns a random value in this Dtype in between the bounds of `min` and `max`
      * @param min The minimal value
      * @param max The maximal value
      */
-    public T randomValue(double min, double max) { return parse(new Random().nextDouble(min, max)); }
+    public T randomValue(double min, double max) { return parse(ThreadLocalRandom.current().nextDouble(min, max)); }
 
     @Override
     public String toString() {
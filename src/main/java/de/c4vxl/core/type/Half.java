@@ -0,0 +1,78 @@
+package de.c4vxl.core.type;
+
+import de.c4vxl.core.tensor.Tensor;
+
+import java.io.Serial;
+
+/**
+ * A 16-bit IEEE 754 floating point number (FLOAT16).
+ * This dtype reduces the precision of values, not the memory of tensors: like with every dtype, a tensor stores one reference per element.
+ * All 2^16 instances are created up front and shared, so no object is allocated per element.
+ * Use {@link Half#pack(Tensor)} and {@link Half#unpack(short[], Integer...)} for a packed {@code short[]} representation.
+ */
+public final class Half extends Number implements Comparable<Half> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Half[] cache = new Half[1 << 16];
+
+    static {
+        for (int i = 0; i < cache.length; i++)
+            cache[i] = new Half((short) i);
+    }
+
+    public final short bits;
+
+    private Half(short bits) { this.bits = bits; }
+
+    // keep deserialized values interned
+    @Serial
+    private Object readResolve() { return fromBits(this.bits); }
+
+    /**
+     * Returns the (interned) half of its raw bits
+     * @param bits The bits
+     */
+    public static Half fromBits(short bits) {
+        return cache[bits & 0xFFFF];
+    }
+
+    /**
+     * Returns the nearest half of a float
+     * @param value The float
+     */
+    public static Half valueOf(float value) { return fromBits(Float.floatToFloat16(value)); }
+
+    /**
+     * Convert the data of a tensor into packed half precision bits
+     * @param tensor The tensor
+     */
+    public static short[] pack(Tensor<?> tensor) {
+        short[] bits = new short[tensor.size()];
+        for (int i = 0; i < bits.length; i++)
+            bits[i] = tensor.data[i] instanceof Half half ? half.bits : Float.floatToFloat16(((Number) tensor.data[i]).floatValue());
+        return bits;
+    }
+
+    /**
+     * Create a tensor from packed half precision bits
+     * @param bits The bits
+     * @param shape The shape of the tensor
+     */
+    public static Tensor<Half> unpack(short[] bits, Integer... shape) {
+        Half[] data = new Half[bits.length];
+        for (int i = 0; i < bits.length; i++)
+            data[i] = fromBits(bits[i]);
+        return new Tensor<>(data, shape);
+    }
+
+    @Override public float floatValue() { return Float.float16ToFloat(this.bits); }
+    @Override public double doubleValue() { return this.floatValue(); }
+    @Override public int intValue() { return (int) this.floatValue(); }
+    @Override public long longValue() { return (long) this.floatValue(); }
+
+    @Override public int compareTo(Half o) { return Float.compare(this.floatValue(), o.floatValue()); }
+    @Override public boolean equals(Object o) { return o instanceof Half half && half.bits == this.bits; }
+    @Override public int hashCode() { return this.bits; }
+    @Override public String toString() { return Float.toString(this.floatValue()); }
+}
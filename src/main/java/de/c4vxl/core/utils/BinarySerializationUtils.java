@@ -0,0 +1,278 @@
+package de.c4vxl.core.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.BFloat16;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.type.Half;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A utility class for storing module states in a binary format.
+ * <p>
+ * Layout: the magic bytes {@code JNNB}, the format version (int32), the length of the header (int32) and the header as UTF-8 JSON.
+ * The header maps every tensor to its dtype, shape and offset and holds all other values of the state.
+ * It is followed by the raw little-endian data of every tensor, each aligned to {@value #ALIGNMENT} bytes.
+ * @see de.c4vxl.core.utils.SerializationUtils
+ */
+public class BinarySerializationUtils {
+    /**
+     * The file extension of binary states. Other files are stored as json
+     */
+    public static final String EXTENSION = ".jnn";
+
+    public static final int VERSION = 1;
+    public static final int ALIGNMENT = 64;
+    private static final byte[] MAGIC = "JNNB".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The location of a tensor in a binary state
+     * @param dtype The dtype of the tensor
+     * @param shape The shape of the tensor
+     * @param offset The absolute position of the data in the file
+     */
+    public record Entry(DType<?> dtype, Integer[] shape, long offset) {
+        /**
+         * Returns the amount of elements
+         */
+        public int size() { return Arrays.stream(shape).reduce(1, (a, b) -> a * b); }
+
+        /**
+         * Returns the amount of bytes of the data
+         */
+        public long bytes() { return (long) size() * byteSize(dtype); }
+    }
+
+    /**
+     * Returns {@code true} if a file should be stored in the binary format
+     * @param path The path to the file
+     */
+    public static boolean isBinary(String path) { return path.endsWith(EXTENSION); }
+
+    /**
+     * Returns the size of a single element of a dtype in bytes
+     * @param dtype The dtype
+     */
+    public static int byteSize(DType<?> dtype) {
+        if (dtype.equals(DType.DOUBLE) || dtype.equals(DType.LONG)) return 8;
+        if (dtype.equals(DType.FLOAT) || dtype.equals(DType.INTEGER)) return 4;
+        if (dtype.isHalfPrecision()) return 2;
+        if (dtype.equals(DType.BOOLEAN)) return 1;
+
+        throw new IllegalArgumentException("Can't store tensors of dtype " + dtype + " in binary format!");
+    }
+
+    /**
+     * Export a state into a binary file. The tensors are written one at a time
+     * @param state The state to export
+     * @param path The path to the file
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public static void export(Map<String, Object> state, String path) {
+        File file = new File(path);
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+
+        // split the state into tensors and other values
+        Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+        Map<String, Object> values = new LinkedHashMap<>();
+        state.forEach((k, v) -> {
+            if (v instanceof Tensor<?> tensor) tensors.put(k, tensor);
+            else values.put(k, v);
+        });
+
+        // build the header with offsets relative to the start of the data
+        JsonObject entries = new JsonObject();
+        long position = 0;
+        for (Map.Entry<String, Tensor<?>> e : tensors.entrySet()) {
+            Tensor<?> tensor = e.getValue();
+
+            JsonArray shape = new JsonArray();
+            for (Integer dim : tensor.shape.dimensions) shape.add(dim);
+
+            JsonObject entry = new JsonObject();
+            entry.addProperty("dtype", tensor.dtype.clazz.getName());
+            entry.add("shape", shape);
+            entry.addProperty("offset", position);
+            entries.add(e.getKey(), entry);
+
+            position = align(position + (long) tensor.size() * byteSize(tensor.dtype));
+        }
+
+        JsonObject header = new JsonObject();
+        header.add("tensors", entries);
+        header.add("state", JsonParser.parseString(SerializationUtils.stateToJSON(values, false)));
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer prefix = ByteBuffer.allocate(MAGIC.length + 8 + headerBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            prefix.put(MAGIC).putInt(VERSION).putInt(headerBytes.length).put(headerBytes).flip();
+            writeFully(channel, prefix, 0);
+
+            long dataStart = align(prefix.limit());
+            for (Map.Entry<String, Tensor<?>> e : tensors.entrySet()) {
+                long offset = entries.getAsJsonObject(e.getKey()).get("offset").getAsLong();
+                writeFully(channel, encode(e.getValue()), dataStart + offset);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Load a module state from a binary file
+     * @param path The path of the file
+     */
+    public static Map<String, Object> load(String path) { return load(path, false); }
+
+    /**
+     * Load a module state from a binary file
+     * @param path The path of the file
+     * @param lazy If enabled, only the header is read. Every tensor is a placeholder that reads its data from the file the first time it is needed
+     * @see Tensor#deferred(DType, java.util.function.Supplier, Integer...)
+     */
+    public static Map<String, Object> load(String path, boolean lazy) {
+        try (FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ)) {
+            Map<String, Object> state = new HashMap<>();
+            Map<String, Entry> entries = readHeader(channel, state);
+
+            for (Map.Entry<String, Entry> e : entries.entrySet())
+                state.put(e.getKey(), lazy ? deferred(path, e.getValue(), e.getValue().dtype()) : read(channel, e.getValue()));
+
+            return state;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read the header of a binary state
+     * @param channel The channel of the file
+     * @param state A map to put all non-tensor values of the state into
+     * @return The location of every tensor
+     */
+    public static Map<String, Entry> readHeader(FileChannel channel, Map<String, Object> state) throws IOException {
+        ByteBuffer prefix = readFully(channel, MAGIC.length + 8, 0);
+
+        byte[] magic = new byte[MAGIC.length];
+        prefix.get(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IllegalArgumentException("Not a binary jNN state!");
+
+        int version = prefix.getInt();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported binary state version " + version + "!");
+
+        int headerLength = prefix.getInt();
+        ByteBuffer headerBytes = readFully(channel, headerLength, prefix.limit());
+        JsonObject header = JsonParser.parseString(StandardCharsets.UTF_8.decode(headerBytes).toString()).getAsJsonObject();
+
+        state.putAll(SerializationUtils.stateFromJSON(header.get("state").toString()));
+
+        long dataStart = align(prefix.limit() + headerLength);
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> e : header.getAsJsonObject("tensors").entrySet()) {
+            JsonObject entry = e.getValue().getAsJsonObject();
+
+            DType<?> dtype = DType.forName(entry.get("dtype").getAsString());
+
+            Integer[] shape = entry.getAsJsonArray("shape").asList().stream().map(JsonElement::getAsInt).toArray(Integer[]::new);
+            entries.put(e.getKey(), new Entry(dtype, shape, dataStart + entry.get("offset").getAsLong()));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Read a single tensor of a binary state
+     * @param channel The channel of the file
+     * @param entry The location of the tensor
+     */
+    public static Tensor<?> read(FileChannel channel, Entry entry) throws IOException {
+        return new Tensor<>(decode(readFully(channel, Math.toIntExact(entry.bytes()), entry.offset()), entry.dtype()), entry.shape());
+    }
+
+    /**
+     * Create a placeholder for a tensor of a binary state
+     */
+    private static <T> Tensor<T> deferred(String path, Entry entry, DType<T> dtype) {
+        return Tensor.deferred(dtype, () -> {
+            try (FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ)) {
+                return decode(readFully(channel, Math.toIntExact(entry.bytes()), entry.offset()), dtype);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, entry.shape());
+    }
+
+    /**
+     * Encode the data of a tensor into little-endian bytes
+     * @param tensor The tensor
+     */
+    private static ByteBuffer encode(Tensor<?> tensor) {
+        tensor.materialize();
+        DType<?> dtype = tensor.dtype;
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact((long) tensor.size() * byteSize(dtype))).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (dtype.equals(DType.DOUBLE)) for (Object v : tensor.data) buffer.putDouble((Double) v);
+        else if (dtype.equals(DType.FLOAT)) for (Object v : tensor.data) buffer.putFloat((Float) v);
+        else if (dtype.equals(DType.LONG)) for (Object v : tensor.data) buffer.putLong((Long) v);
+        else if (dtype.equals(DType.INTEGER)) for (Object v : tensor.data) buffer.putInt((Integer) v);
+        else if (dtype.equals(DType.FLOAT16)) for (Object v : tensor.data) buffer.putShort(((Half) v).bits);
+        else if (dtype.equals(DType.BFLOAT16)) for (Object v : tensor.data) buffer.putShort(((BFloat16) v).bits);
+        else for (Object v : tensor.data) buffer.put((byte) ((Boolean) v ? 1 : 0));
+
+        return buffer.flip();
+    }
+
+    /**
+     * Decode little-endian bytes into the data of a tensor
+     * @param buffer The bytes
+     * @param dtype The dtype of the tensor
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] decode(ByteBuffer buffer, DType<T> dtype) {
+        T[] data = (T[]) Array.newInstance(dtype.clazz, buffer.remaining() / byteSize(dtype));
+        Object[] out = data;
+
+        if (dtype.equals(DType.DOUBLE)) for (int i = 0; i < out.length; i++) out[i] = buffer.getDouble();
+        else if (dtype.equals(DType.FLOAT)) for (int i = 0; i < out.length; i++) out[i] = buffer.getFloat();
+        else if (dtype.equals(DType.LONG)) for (int i = 0; i < out.length; i++) out[i] = buffer.getLong();
+        else if (dtype.equals(DType.INTEGER)) for (int i = 0; i < out.length; i++) out[i] = buffer.getInt();
+        else if (dtype.equals(DType.FLOAT16)) for (int i = 0; i < out.length; i++) out[i] = Half.fromBits(buffer.getShort());
+        else if (dtype.equals(DType.BFLOAT16)) for (int i = 0; i < out.length; i++) out[i] = BFloat16.fromBits(buffer.getShort());
+        else for (int i = 0; i < out.length; i++) out[i] = buffer.get() != 0;
+
+        return data;
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of binary state!");
+
+        return buffer.flip();
+    }
+}
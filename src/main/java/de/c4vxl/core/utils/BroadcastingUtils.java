@@ -45,12 +45,27 @@ public class BroadcastingUtils {
     public static <T> T[] broadcastData(T[] data, Integer[] sourceShape, Integer[] broadcastedShape) {
         T[] broadcastedData = (T[]) Array.newInstance(data.getClass().getComponentType(), TensorUtils.shapeToSize(broadcastedShape));
 
+        int[] indices = broadcastIndices(sourceShape, broadcastedShape);
+        for (int i = 0; i < broadcastedData.length; i++)
+            broadcastedData[i] = data[indices[i]];
+
+        return broadcastedData;
+    }
+
+    /**
+     * Calculate the index into the source data for every element of the broadcasted shape
+     * @param sourceShape The source shape of the data
+     * @param broadcastedShape The new shape for the data
+     */
+    public static int[] broadcastIndices(Integer[] sourceShape, Integer[] broadcastedShape) {
+        int[] indices = new int[TensorUtils.shapeToSize(broadcastedShape)];
+
         // pad source shape to be same length
         sourceShape = TensorUtils.padShapeLeft(broadcastedShape.length, true, sourceShape);
 
         Integer[] strides = TensorUtils.calculateStrides(sourceShape);
 
-        for (int i = 0; i < broadcastedData.length; i++) {
+        for (int i = 0; i < indices.length; i++) {
             Integer[] index = TensorUtils.unravelIndex(broadcastedShape, i);
 
             int originalIndex = 0;
@@ -58,10 +73,10 @@ public class BroadcastingUtils {
                 if (sourceShape.length > j && sourceShape[j] > 1) originalIndex += index[j] * strides[j];
             }
 
-            broadcastedData[i] = data[originalIndex];
+            indices[i] = originalIndex;
         }
 
-        return broadcastedData;
+        return indices;
     }
 
     /**
@@ -0,0 +1,150 @@
+package de.c4vxl.core.utils;
+
+import de.c4vxl.core.nn.Embedding;
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.quantized.DynamicQuantizedLinear;
+import de.c4vxl.core.nn.quantized.Int4Embedding;
+import de.c4vxl.core.nn.quantized.Int4Linear;
+import de.c4vxl.core.nn.quantized.QuantizedLinear;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A collection of utilities used for quantizing modules for inference.
+ * Quantized models can't be exported, so quantize a model after loading it.
+ * @see de.c4vxl.core.nn.quantized
+ */
+public class QuantizationUtils {
+    /**
+     * Quantize the weight of every Linear-Layer in a module tree to int8 with a scale per output channel
+     * @param module The root module
+     */
+    public static <M extends Module> M quantize(M module) {
+        return replaceModules(module, m -> m.getClass() == Linear.class ? new QuantizedLinear((Linear) m) : m);
+    }
+
+    /**
+     * Quantize every Linear-Layer in a module tree dynamically: the weight is stored as int8 and the input is quantized per row at runtime,
+     * so the matrix multiplication runs in int8 with int32 accumulation
+     * @param module The root module
+     */
+    public static <M extends Module> M quantizeDynamic(M module) {
+        return replaceModules(module, m -> m.getClass() == Linear.class ? new DynamicQuantizedLinear((Linear) m) : m);
+    }
+
+    /**
+     * Quantize the weight of every Embedding and Linear-Layer in a module tree to 4 bits, grouped with a half precision scale and zero-point per group
+     * @param module The root module
+     * @param group_size The amount of values sharing a scale and zero-point (for example 32 or 64)
+     */
+    public static <M extends Module> M quantizeInt4(M module, int group_size) {
+        return quantizeInt4(module, group_size, m -> true);
+    }
+
+    /**
+     * Quantize the weight of selected Embeddings and Linear-Layers in a module tree to 4 bits, grouped with a half precision scale and zero-point per group.
+     * Example: {@code quantizeInt4(model, 32, m -> m == model.wte || m == model.lm_head)}
+     * @param module The root module
+     * @param group_size The amount of values sharing a scale and zero-point (for example 32 or 64)
+     * @param filter Selects the layers to quantize
+     */
+    public static <M extends Module> M quantizeInt4(M module, int group_size, Predicate<Module> filter) {
+        return replaceModules(module, m -> {
+            if (!filter.test(m)) return m;
+            if (m.getClass() == Embedding.class) return new Int4Embedding((Embedding) m, group_size);
+            if (m.getClass() == Linear.class) return new Int4Linear((Linear) m, group_size);
+            return m;
+        });
+    }
+
+    /**
+     * Replace modules in a module tree.
+     * Every module is passed to the {@code replacement}. If it returns another module, it takes the place of the original one.
+     * Otherwise, the children of the module are visited.
+     * @param module The root module (never replaced)
+     * @param replacement The function returning the replacement of a module
+     */
+    public static <M extends Module> M replaceModules(M module, Function<Module, Module> replacement) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        replaceModules(module, replacement, visited);
+
+        // every visited module may have had a child replaced
+        for (Object object : visited)
+            if (object instanceof Module m)
+                m.invalidate_registry();
+
+        return module;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void replaceModules(Object object, Function<Module, Module> replacement, Set<Object> visited) {
+        if (object == null || !visited.add(object))
+            return;
+
+        if (object instanceof List<?> list) {
+            for (int i = 0; i < list.size(); i++)
+                if (list.get(i) instanceof Module child)
+                    ((List<Object>) list).set(i, replace(child, replacement, visited));
+                else
+                    replaceModules(list.get(i), replacement, visited);
+            return;
+        }
+
+        if (object instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet())
+                if (entry.getValue() instanceof Module child)
+                    ((Map.Entry<?, Object>) entry).setValue(replace(child, replacement, visited));
+                else
+                    replaceModules(entry.getValue(), replacement, visited);
+            return;
+        }
+
+        if (object.getClass().isArray() && !object.getClass().getComponentType().isPrimitive()) {
+            for (int i = 0; i < Array.getLength(object); i++)
+                if (Array.get(object, i) instanceof Module child)
+                    Array.set(object, i, replace(child, replacement, visited));
+                else
+                    replaceModules(Array.get(object, i), replacement, visited);
+            return;
+        }
+
+        if (!(object instanceof Module))
+            return;
+
+        for (Field field : object.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers()))
+                continue;
+
+            try {
+                Object value = field.get(object);
+
+                // final fields can't be replaced, only their children
+                if (value instanceof Module child && !Modifier.isFinal(field.getModifiers())) {
+                    Module replaced = replacement.apply(child);
+
+                    if (replaced != child && field.getType().isInstance(replaced))
+                        field.set(object, replaced);
+                    else
+                        replaceModules(child, replacement, visited);
+                } else
+                    replaceModules(value, replacement, visited);
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static Module replace(Module module, Function<Module, Module> replacement, Set<Object> visited) {
+        Module replaced = replacement.apply(module);
+        if (replaced == module)
+            replaceModules(module, replacement, visited);
+
+        return replaced;
+    }
+}
@@ -0,0 +1,142 @@
+package de.c4vxl.core.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.BFloat16;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.type.Half;
+import de.c4vxl.core.type.Shape;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleFunction;
+
+/**
+ * A utility class for reading tensors from HuggingFace safetensors files.
+ * <p>
+ * Layout: the length of the header (uint64), the header as UTF-8 JSON mapping every tensor to its dtype, shape and data offsets,
+ * followed by the raw little-endian data. Every tensor is memory mapped and converted straight into the target dtype.
+ * @see <a href="https://github.com/huggingface/safetensors">safetensors</a>
+ */
+public class SafetensorsUtils {
+    /**
+     * Read all tensors of a safetensors file in their stored dtype
+     * @param path The path to the file
+     */
+    public static Map<String, Tensor<?>> load(Path path) { return load(path, null); }
+
+    /**
+     * Read all tensors of a safetensors file
+     * @param path The path to the file
+     * @param dtype The dtype to convert the tensors into. If null, every tensor keeps the dtype it is stored in
+     */
+    public static Map<String, Tensor<?>> load(Path path, DType<?> dtype) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer length = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while (length.hasRemaining())
+                if (channel.read(length, length.position()) < 0)
+                    throw new IOException("Unexpected end of safetensors file!");
+
+            int headerLength = Math.toIntExact(length.flip().getLong());
+            ByteBuffer headerBytes = channel.map(FileChannel.MapMode.READ_ONLY, 8, headerLength);
+            JsonObject header = JsonParser.parseString(StandardCharsets.UTF_8.decode(headerBytes).toString()).getAsJsonObject();
+
+            long dataStart = 8L + headerLength;
+            Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> e : header.entrySet()) {
+                if (e.getKey().equals("__metadata__"))
+                    continue;
+
+                JsonObject entry = e.getValue().getAsJsonObject();
+                String type = entry.get("dtype").getAsString();
+                Integer[] shape = entry.getAsJsonArray("shape").asList().stream().map(JsonElement::getAsInt).toArray(Integer[]::new);
+                long begin = entry.getAsJsonArray("data_offsets").get(0).getAsLong();
+                long end = entry.getAsJsonArray("data_offsets").get(1).getAsLong();
+
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + begin, end - begin).order(ByteOrder.LITTLE_ENDIAN);
+                DType<?> target = dtype == null ? dtypeOf(type) : dtype;
+                tensors.put(e.getKey(), read(data, type, target, shape));
+            }
+
+            return tensors;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the dtype matching a safetensors dtype
+     * @param type The name of the safetensors dtype (for example "F16")
+     */
+    public static DType<?> dtypeOf(String type) {
+        return switch (type) {
+            case "F64" -> DType.DOUBLE;
+            case "F32" -> DType.FLOAT;
+            case "F16" -> DType.FLOAT16;
+            case "BF16" -> DType.BFLOAT16;
+            case "I64" -> DType.LONG;
+            case "I32", "I16", "I8", "U8" -> DType.INTEGER;
+            case "BOOL" -> DType.BOOLEAN;
+            default -> throw new IllegalArgumentException("Unsupported safetensors dtype " + type + "!");
+        };
+    }
+
+    /**
+     * Decode the data of a tensor straight into a target dtype
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Tensor<T> read(ByteBuffer buffer, String type, DType<T> dtype, Integer[] shape) {
+        T[] data = (T[]) Array.newInstance(dtype.clazz, new Shape(shape).size());
+        Object[] out = data;
+
+        // half precision data of the same dtype keeps its bits
+        if (type.equals("F16") && dtype.equals(DType.FLOAT16)) {
+            for (int i = 0; i < out.length; i++) out[i] = Half.fromBits(buffer.getShort());
+            return new Tensor<>(data, shape);
+        }
+        if (type.equals("BF16") && dtype.equals(DType.BFLOAT16)) {
+            for (int i = 0; i < out.length; i++) out[i] = BFloat16.fromBits(buffer.getShort());
+            return new Tensor<>(data, shape);
+        }
+
+        DoubleFunction<Object> convert = converter(dtype);
+        switch (type) {
+            case "F64" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(buffer.getDouble()); }
+            case "F32" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(buffer.getFloat()); }
+            case "F16" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(Float.float16ToFloat(buffer.getShort())); }
+            case "BF16" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(Float.intBitsToFloat(buffer.getShort() << 16)); }
+            case "I64" -> { for (int i = 0; i < out.length; i++) out[i] = dtype.parse(buffer.getLong()); }
+            case "I32" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(buffer.getInt()); }
+            case "I16" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(buffer.getShort()); }
+            case "I8" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(buffer.get()); }
+            case "U8" -> { for (int i = 0; i < out.length; i++) out[i] = convert.apply(buffer.get() & 0xFF); }
+            case "BOOL" -> { for (int i = 0; i < out.length; i++) out[i] = dtype.parse(buffer.get() != 0); }
+            default -> throw new IllegalArgumentException("Unsupported safetensors dtype " + type + "!");
+        }
+
+        return new Tensor<>(data, shape);
+    }
+
+    /**
+     * Returns a function converting a double into a dtype without going through {@link DType#parse}
+     */
+    private static DoubleFunction<Object> converter(DType<?> dtype) {
+        if (dtype.equals(DType.DOUBLE)) return v -> v;
+        if (dtype.equals(DType.FLOAT)) return v -> (float) v;
+        if (dtype.equals(DType.FLOAT16)) return v -> Half.valueOf((float) v);
+        if (dtype.equals(DType.BFLOAT16)) return v -> BFloat16.valueOf((float) v);
+        if (dtype.equals(DType.INTEGER)) return v -> (int) v;
+        if (dtype.equals(DType.LONG)) return v -> (long) v;
+        return dtype::parse;
+    }
+}
@@ -3,7 +3,9 @@ package de.c4vxl.core.utils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.Strictness;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import de.c4vxl.core.nn.module.Module;
 import de.c4vxl.core.tensor.Tensor;
 import de.c4vxl.core.type.DType;
@@ -11,15 +13,23 @@ import de.c4vxl.jNN;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * A utility class for the serialization of modules.
+ * <p>
+ * The state of a module holds every public instance field, including inherited ones. Static fields aren't part of it.
+ * Submodules, list, array and map entries are stored by their path, e.g. {@code heads.0.ln_1.weight}.
+ * Loading a state sets the values at these paths. Entries of lists are replaced, never inserted, so the shape of the module doesn't change
  * @see de.c4vxl.core.nn.module.Module
+ * @see de.c4vxl.core.utils.StateAccessor
  */
 public class SerializationUtils {
     /**
@@ -29,46 +39,67 @@ public class SerializationUtils {
      * @param prefix A prefix for all paths (leave as "")
      */
     public static void generateStateRecursively(Object object, Map<String, Object> state, String prefix) {
+        Map<String, Supplier<Object>> slots = new LinkedHashMap<>();
+        generateRegistryRecursively(object, () -> object, slots, new LinkedHashMap<>(), prefix);
+        slots.forEach((k, slot) -> state.put(k, slot.get()));
+    }
+
+    /**
+     * Generate the registry of an object: a slot reading the current value of every entry of its state and all of its submodules
+     * @param object The object
+     * @param slot Reads the current value of the object
+     * @param slots A map to generate the slots into
+     * @param modules A map to collect the submodules into
+     * @param prefix A prefix for all paths (leave as "")
+     */
+    public static void generateRegistryRecursively(Object object, Supplier<Object> slot, Map<String, Supplier<Object>> slots, Map<String, Module> modules, String prefix) {
+        String trimmedPrefix = prefix.endsWith(".") ? prefix.substring(0, prefix.length() - 1) : prefix;
+
         try {
-            if (object != null && (object instanceof de.c4vxl.core.nn.module.Module ||
+            if (object != null && (object instanceof Module ||
                     object instanceof List<?> ||
                     object instanceof Map<?,?> ||
                     object.getClass().isArray())) {
 
-                for (Field field : object.getClass().getFields()) {
-                    if (Modifier.isPrivate(field.getModifiers()) || field.isSynthetic()) continue;
+                if (object instanceof Module module)
+                    modules.put(trimmedPrefix, module);
 
-                    field.setAccessible(true);
-
-                    String name = field.getName();
-                    Object value = field.get(object);
+                for (StateAccessor.Property property : StateAccessor.of(object.getClass()).properties) {
+                    String name = property.name();
+                    Class<?> type = property.type();
+                    Object value = property.get(object);
 
                     // submodules
-                    if (Module.class.isAssignableFrom(field.getType()))
-                        generateStateRecursively(value, state, prefix + name + ".");
+                    if (Module.class.isAssignableFrom(type))
+                        generateRegistryRecursively(value, () -> property.get(object), slots, modules, prefix + name + ".");
 
                     // lists
-                    else if (List.class.isAssignableFrom(field.getType())) {
-                        for (int i = 0; i < ((List<?>) value).size(); i++)
-                            generateStateRecursively(((List<?>) value).get(i), state, prefix + name + "." + i + ".");
+                    else if (List.class.isAssignableFrom(type)) {
+                        List<?> list = (List<?>) value;
+                        for (int i = 0; i < list.size(); i++) {
+                            int index = i;
+                            generateRegistryRecursively(list.get(i), () -> list.get(index), slots, modules, prefix + name + "." + i + ".");
+                        }
                     }
 
                         // maps
-                    else if (Map.class.isAssignableFrom(field.getType()))
+                    else if (Map.class.isAssignableFrom(type))
                         ((Map<?, ?>) value).forEach((key, val) ->
-                                generateStateRecursively(val, state, prefix + name + "." + key + "."));
+                                generateRegistryRecursively(val, () -> ((Map<?, ?>) value).get(key), slots, modules, prefix + name + "." + key + "."));
 
                         // arrays
-                    else if (field.getType().isArray())
-                        for (int i = 0; i < Array.getLength(value); i++)
-                            generateStateRecursively(Array.get(value, i), state, prefix + name + "." + i + ".");
+                    else if (type.isArray())
+                        for (int i = 0; i < Array.getLength(value); i++) {
+                            int index = i;
+                            generateRegistryRecursively(Array.get(value, i), () -> Array.get(value, index), slots, modules, prefix + name + "." + i + ".");
+                        }
 
                         // parameter
                     else
-                        generateStateRecursively(value, state, prefix + name);
+                        generateRegistryRecursively(value, () -> property.get(object), slots, modules, prefix + name);
                 }
             } else
-                state.put(prefix.endsWith(".") ? prefix.substring(0, prefix.length() - 1) : prefix, object);
+                slots.put(trimmedPrefix, slot);
         } catch (Exception e) {
             if (jNN.LOG_STATE_GENERATION_ERROR)
                 System.err.println("WARNING: Error while generating state. " + e);
@@ -83,40 +114,53 @@ public class SerializationUtils {
      * @param state The state to load from
      * @param prefix The prefix of the current object (set to "")
      */
-    @SuppressWarnings("unchecked")
     public static <T> void loadStateRecursively(T object, Object last, Field f, Map<String, Object> state, String prefix) {
+        // every path leading to a value of the state
+        Set<String> paths = new HashSet<>();
+        for (String key : state.keySet()) {
+            paths.add(key);
+            for (int i = key.indexOf('.'); i >= 0; i = key.indexOf('.', i + 1))
+                paths.add(key.substring(0, i));
+        }
+
+        loadStateRecursively(object, last, f == null ? null : StateAccessor.property(f), state, paths, prefix);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void loadStateRecursively(T object, Object last, StateAccessor.Property property, Map<String, Object> state, Set<String> paths, String prefix) {
         if (object == null)
             return;
 
         String trimmedPrefix = prefix.endsWith(".") ? prefix.substring(0, prefix.length() - 1) : prefix;
 
-
         if (state.containsKey(trimmedPrefix)) {
             try {
-                Object value = f.get(last);
+                Object value = property.get(last);
                 T newObject = (T) state.get(trimmedPrefix);
+                String key = trimmedPrefix.substring(trimmedPrefix.lastIndexOf('.') + 1);
 
                 // handle lists
-                if (value instanceof List<?> list) {
-                    ((List<T>) list).add(Integer.parseInt(Arrays.stream(trimmedPrefix.split("\\.")).toList().getLast()), newObject);
-                }
+                if (value instanceof List<?> list)
+                    ((List<T>) list).set(Integer.parseInt(key), newObject);
 
                 // handle arrays
                 else if (value.getClass().isArray())
-                    Array.set(value, Integer.parseInt(Arrays.stream(trimmedPrefix.split("\\.")).toList().getLast()), newObject);
+                    Array.set(value, Integer.parseInt(key), newObject);
 
                     // handle maps
                 else if (value instanceof Map<?, ?> map) {
                     HashMap<String, Object> clone = (HashMap<String, Object>) new HashMap<>(map);
-                    clone.put(Arrays.stream(trimmedPrefix.split("\\.")).toList().getLast(), state.get(trimmedPrefix));
-                    f.set(last, clone);
+                    clone.put(key, newObject);
+                    property.set(last, clone);
                 }
 
                 // handle normal values
                 else
-                    f.set(last, newObject);
+                    property.set(last, newObject);
 
-                // System.out.println(trimmedPrefix + " @ " + f.getName() + " @ " + last.getClass().getSimpleName() + " = " + newObject);
+                // the registries containing the module still point to the replaced value
+                if (last instanceof Module module)
+                    module.invalidate_registry();
             } catch (Exception e) {
                 if (jNN.LOG_STATE_GENERATION_ERROR)
                     System.err.println("Error while setting " + trimmedPrefix + ": " + e);
@@ -125,38 +169,33 @@ public class SerializationUtils {
         }
 
         // iterate over vars
-        String allKeys = String.join("\n", state.keySet());
-        for (Field field : object.getClass().getDeclaredFields()) {
+        for (StateAccessor.Property field : StateAccessor.of(object.getClass()).properties) {
             try {
-                if (Modifier.isPrivate(field.getModifiers())) continue;
-                if (Modifier.isTransient(field.getModifiers())) continue;
-                if (Modifier.isProtected(field.getModifiers())) continue;
-                field.setAccessible(true);
-
-                String name = field.getName();
-                Object value = field.get(object);
+                String name = field.name();
 
                 // return if key doesn't exist in state
-                if (!allKeys.contains(prefix + name))
+                if (!paths.contains(prefix + name))
                     continue;
 
+                Object value = field.get(object);
+
                 // lists
                 if (value instanceof List<?> list)
                     for (int i = 0; i < list.size(); i++)
-                        loadStateRecursively(list.get(i), object, field, state, prefix + name + "." + i + ".");
+                        loadStateRecursively(list.get(i), object, field, state, paths, prefix + name + "." + i + ".");
 
                 // arrays
-                if (field.getType().isArray())
+                else if (field.type().isArray())
                     for (int i = 0; i < Array.getLength(value); i++)
-                        loadStateRecursively(Array.get(value, i), object, field, state, prefix + name + "." + i + ".");
+                        loadStateRecursively(Array.get(value, i), object, field, state, paths, prefix + name + "." + i + ".");
 
                 // maps
-                if (value instanceof Map<?, ?> map)
+                else if (value instanceof Map<?, ?> map)
                     map.forEach((key, val) ->
-                            loadStateRecursively(val, object, field, state, prefix + name + "." + key + "."));
+                            loadStateRecursively(val, object, field, state, paths, prefix + name + "." + key + "."));
 
                 else
-                    loadStateRecursively(value, object, field, state, prefix + name + ".");
+                    loadStateRecursively(value, object, field, state, paths, prefix + name + ".");
             } catch (Exception e) {
                 if (jNN.LOG_STATE_GENERATION_ERROR) {
                     System.err.println("WARNING: Error while loading state. " + e);
@@ -190,11 +229,12 @@ public class SerializationUtils {
 
         state.forEach((k, v) -> {
             // manually overwrite Tensor
+            // the dtype and shape come first, so readers can parse the data straight into its dtype
             if (state.get(k) instanceof Tensor<?> tensor)
-                stateCopy.put(k, new HashMap<>(){{
+                stateCopy.put(k, new LinkedHashMap<>(){{
                     put("dtype", tensor.dtype.clazz.getName());
                     put("shape", tensor.shape.dimensions);
-                    put("data", tensor.data);
+                    put("data", tensor.dtype.isHalfPrecision() ? tensor.asFloat().data : tensor.materialize().data);
                 }});
 
             // manually overwrite DType
@@ -209,45 +249,121 @@ public class SerializationUtils {
      * Construct a model state from it's json representation
      * @param json The json string
      */
-    @SuppressWarnings("unchecked")
     public static Map<String, Object> stateFromJSON(String json) {
-        Gson gson = new GsonBuilder().setStrictness(Strictness.STRICT).create();
-
-        Map<String, Object> raw = gson.fromJson(json, new TypeToken<Map<?, ?>>(){}.getType());
-        Map<String, Object> state = new HashMap<>(raw);
+        return stateFromJSON(new StringReader(json));
+    }
 
-        raw.forEach((k, v) -> {
-            if (v instanceof Map<?,?> m && m.containsKey("shape") && m.containsKey("data") && m.containsKey("dtype")) {
-                DType<?> dtype;
-                try {
-                    dtype = new DType<>(Class.forName(m.get("dtype").toString()));
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+    /**
+     * Construct a model state from it's json representation without building a json tree.
+     * The data of every tensor is parsed straight into an array of its dtype
+     * @param json The reader of the json
+     */
+    public static Map<String, Object> stateFromJSON(Reader json) {
+        TypeAdapter<Object> values = new Gson().getAdapter(Object.class);
+        Map<String, Object> state = new HashMap<>();
 
-                Tensor<?> tensor = Tensor.of(((ArrayList<?>) m.get("data")).toArray())
-                        .reshape(((ArrayList<Double>) m.get("shape")).stream().map(Double::intValue).toArray(Integer[]::new))
-                        .asDType(dtype);
+        try (JsonReader reader = new JsonReader(json)) {
+            reader.setStrictness(Strictness.STRICT);
 
-                state.put(k, tensor);
-            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                Object value = reader.peek() == JsonToken.BEGIN_OBJECT ? readTensor(reader, values) : values.read(reader);
 
-            if (v instanceof String str) {
-                if (str.startsWith("DType:")) {
+                if (value instanceof String str && str.startsWith("DType:")) {
                     try {
-                        state.put(k, new DType<>(Class.forName(str.split("DType:")[1])));
-                    } catch (ClassNotFoundException e) {
-                        state.put(k, DType.DEFAULT);
+                        value = DType.forName(str.split("DType:")[1]);
+                    } catch (IllegalArgumentException e) {
+                        value = DType.DEFAULT;
                     }
                 }
+
+                state.put(key, value);
             }
-        });
+            reader.endObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
 
         return state;
     }
 
     /**
-     * Export a state into a file with pretty print turned off
+     * Read a json object. Returns a tensor if it has a dtype, shape and data; otherwise a map of its values
+     */
+    private static Object readTensor(JsonReader reader, TypeAdapter<Object> values) throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        DType<?> dtype = null;
+        Integer[] shape = null;
+        Object[] data = null;
+        double[] buffer = null; // data read before the dtype and shape are known
+        int length = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+
+            if (name.equals("dtype") && reader.peek() == JsonToken.STRING) {
+                String clazz = reader.nextString();
+                dtype = DType.forName(clazz);
+                fields.put(name, clazz);
+            } else if (name.equals("shape") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                List<Integer> dims = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) dims.add((int) reader.nextDouble());
+                reader.endArray();
+
+                shape = dims.toArray(Integer[]::new);
+                fields.put(name, dims);
+            } else if (name.equals("data") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (dtype != null && shape != null) {
+                    data = (Object[]) Array.newInstance(dtype.clazz, Arrays.stream(shape).reduce(1, (a, b) -> a * b));
+                    while (reader.hasNext()) data[length++] = readValue(reader, dtype);
+                } else {
+                    buffer = new double[1024];
+                    while (reader.hasNext()) {
+                        if (length == buffer.length) buffer = Arrays.copyOf(buffer, length * 2);
+                        buffer[length++] = reader.peek() == JsonToken.BOOLEAN ? (reader.nextBoolean() ? 1 : 0) : reader.nextDouble();
+                    }
+                }
+                reader.endArray();
+                fields.put(name, null);
+            } else
+                fields.put(name, values.read(reader));
+        }
+        reader.endObject();
+
+        if (dtype != null && shape != null && fields.containsKey("data")) {
+            if (data == null) {
+                data = (Object[]) Array.newInstance(dtype.clazz, length);
+                for (int i = 0; i < length; i++) data[i] = dtype.parse(buffer[i]);
+            }
+
+            return new Tensor<>(data, shape);
+        }
+
+        // not a tensor
+        if (buffer != null)
+            fields.put("data", Arrays.stream(buffer, 0, length).boxed().toList());
+        return fields;
+    }
+
+    /**
+     * Read a single element of a tensor in a specific dtype
+     */
+    private static Object readValue(JsonReader reader, DType<?> dtype) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) return dtype.parse(reader.nextBoolean());
+        if (dtype.equals(DType.DOUBLE)) return reader.nextDouble();
+        if (dtype.equals(DType.FLOAT)) return (float) reader.nextDouble();
+        if (dtype.equals(DType.INTEGER)) return (int) reader.nextDouble();
+        if (dtype.equals(DType.LONG)) return new BigDecimal(reader.nextString()).longValue();
+        return dtype.parse(reader.nextDouble());
+    }
+
+    /**
+     * Export a state into a file with pretty print turned off.
+     * Files ending with {@link BinarySerializationUtils#EXTENSION} are stored in the binary format, all others as json
      * @param state The state to export
      * @param path The path to the file
      */
@@ -256,13 +372,19 @@ public class SerializationUtils {
     }
 
     /**
-     * Export a state into a file
+     * Export a state into a file.
+     * Files ending with {@link BinarySerializationUtils#EXTENSION} are stored in the binary format, all others as json
      * @param state The state to export
      * @param path The path to the file
-     * @param pretty Enable pretty print
+     * @param pretty Enable pretty print (ignored for binary files)
      */
     @SuppressWarnings("ResultOfMethodCallIgnored")
     public static void export(Map<String, Object> state, String path, boolean pretty) {
+        if (BinarySerializationUtils.isBinary(path)) {
+            BinarySerializationUtils.export(state, path);
+            return;
+        }
+
         try {
             // create file
             File file = new File(path);
@@ -283,10 +405,19 @@ public class SerializationUtils {
     }
 
     /**
-     * Load a module state from a file
+     * Load a module state from a file.
+     * Files ending with {@link BinarySerializationUtils#EXTENSION} are read in the binary format, all others as json
      * @param path The path of the file
      */
-    public static Map<String, Object> load(String path) {
+    public static Map<String, Object> load(String path) { return load(path, false); }
+
+    /**
+     * Load a module state from a file.
+     * Files ending with {@link BinarySerializationUtils#EXTENSION} are read in the binary format, all others as json
+     * @param path The path of the file
+     * @param lazy If enabled, the tensors of binary files are read the first time they are needed. Json files are always read completely
+     */
+    public static Map<String, Object> load(String path, boolean lazy) {
         File file = new File(path);
 
         if (!file.exists()) {
@@ -294,9 +425,12 @@ public class SerializationUtils {
             return null;
         }
 
+        if (BinarySerializationUtils.isBinary(path))
+            return BinarySerializationUtils.load(path, lazy);
+
         // load state
-        try {
-            return stateFromJSON(Files.readString(file.toPath()));
+        try (Reader reader = Files.newBufferedReader(file.toPath())) {
+            return stateFromJSON(reader);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,101 @@
+package de.c4vxl.core.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the state fields of a class through method handles.
+ * The fields of every class are looked up once and cached, so walking a module tree doesn't use reflection.
+ * Fields that can't be accessed through a method handle fall back to reflection.
+ * <p>
+ * The accessors are created at runtime instead of being generated by an annotation processor in the build,
+ * since modules defined outside of jNN would need to run the processor in their own build as well.
+ * @see de.c4vxl.core.utils.SerializationUtils
+ */
+public final class StateAccessor {
+    /**
+     * A public instance field of a class
+     * @param name The name of the field
+     * @param type The declared type of the field
+     * @param getter Handle of type (Object)Object
+     * @param setter Handle of type (Object, Object)void. Null if the field is final
+     */
+    public record Property(String name, Class<?> type, MethodHandle getter, MethodHandle setter) {
+        public Object get(Object owner) {
+            try {
+                return this.getter.invokeExact(owner);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void set(Object owner, Object value) {
+            if (this.setter == null)
+                throw new IllegalStateException("Field " + this.name + " is final!");
+
+            try {
+                this.setter.invokeExact(owner, value);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static final ClassValue<StateAccessor> accessors = new ClassValue<>() {
+        @Override
+        protected StateAccessor computeValue(Class<?> type) { return new StateAccessor(type); }
+    };
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * The public instance fields of the class, including inherited ones
+     */
+    public final List<Property> properties;
+
+    private StateAccessor(Class<?> type) {
+        List<Property> properties = new ArrayList<>();
+        for (Field field : type.getFields())
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic())
+                properties.add(property(field));
+
+        this.properties = List.copyOf(properties);
+    }
+
+    /**
+     * Returns the (cached) accessor of a class
+     * @param type The class
+     */
+    public static StateAccessor of(Class<?> type) { return accessors.get(type); }
+
+    /**
+     * Create a property for a field
+     * @param field The field
+     */
+    public static Property property(Field field) {
+        boolean isFinal = Modifier.isFinal(field.getModifiers());
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            return new Property(field.getName(), field.getType(),
+                    lookup.unreflectGetter(field).asType(GETTER),
+                    isFinal ? null : lookup.unreflectSetter(field).asType(SETTER));
+        } catch (IllegalAccessException ignored) { }
+
+        // fallback for fields of inaccessible classes
+        try {
+            field.setAccessible(true);
+            return new Property(field.getName(), field.getType(),
+                    MethodHandles.lookup().findVirtual(Field.class, "get", GETTER).bindTo(field),
+                    isFinal ? null : MethodHandles.lookup().findVirtual(Field.class, "set", SETTER).bindTo(field));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new RuntimeException("Can't access field " + field + "!", e);
+        }
+    }
+}
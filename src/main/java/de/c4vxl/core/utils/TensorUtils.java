@@ -1,6 +1,7 @@
 package de.c4vxl.core.utils;
 
 import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.trace.Tracer;
 import de.c4vxl.core.type.DType;
 import de.c4vxl.core.type.Shape;
 
@@ -80,9 +81,11 @@ public class TensorUtils {
      * @param obj The object to fill the tensors data with
      */
     public static <T> Tensor<T> filled(Tensor<T> tensor, Object obj) {
-        Tensor<T> result = tensor.clone();
-        Arrays.fill(result.data, result.dtype.parse(obj));
-        return result;
+        return Tracer.record("filled", () -> {
+            Tensor<T> result = tensor.clone();
+            Arrays.fill(result.data, result.dtype.parse(obj));
+            return result;
+        }, tensor);
     }
 
     /**
@@ -92,20 +95,19 @@ public class TensorUtils {
      * @param operation The operation to perform. Format: (elementA, elementB) -> result
      */
     public static <T> Tensor<T> elementWise(Tensor<T> a, Tensor<?> b, BiFunction<Double, Double, Double> operation) {
-        if (!a.shape.equals(b.shape)) {
-            b = b.broadcastTo(a);
-        }
-
-//        if (!a.shape.equals(b.shape))
-//            throw new IllegalArgumentException("Tensors a and b must be the same shape for element wise operations!");
-
-        Tensor<?> finalB = b;
-        return TensorUtils.elementWise(a.clone(), (elementA, index) ->
-                operation.apply(
-                        DType.DOUBLE.parse(elementA),
-                        DType.DOUBLE.parse(finalB.data[index])
-                )
-        );
+        return Tracer.record("elementWise", () -> {
+            Tensor<?> finalB = a.shape.equals(b.shape) ? b : b.broadcastTo(a);
+
+//            if (!a.shape.equals(b.shape))
+//                throw new IllegalArgumentException("Tensors a and b must be the same shape for element wise operations!");
+
+            return TensorUtils.elementWise(a.clone(), (elementA, index) ->
+                    operation.apply(
+                            DType.DOUBLE.parse(elementA),
+                            DType.DOUBLE.parse(finalB.data[index])
+                    )
+            );
+        }, a, b);
     }
 
     /**
@@ -114,12 +116,14 @@ public class TensorUtils {
      * @param operation The operation to perform. Format: (element, flatIndex) -> result
      */
     public static <T> Tensor<T> elementWise(Tensor<T> tensor, BiFunction<T, Integer, Object> operation) {
-        Tensor<T> result = tensor.clone();
+        return Tracer.record("elementWise", () -> {
+            Tensor<T> result = tensor.clone();
 
-        for (int i = 0; i < result.data.length; i++)
-            result.data[i] = result.dtype.parse(operation.apply(result.data[i], i));
+            for (int i = 0; i < result.data.length; i++)
+                result.data[i] = result.dtype.parse(operation.apply(result.data[i], i));
 
-        return result;
+            return result;
+        }, tensor);
     }
 
     /**
@@ -227,24 +231,26 @@ public class TensorUtils {
      * @param length The length of the narrowed window
      */
     public static <T> Tensor<T> narrow(Tensor<T> tensor, Integer dim, int start, int length) {
-        dim = DataUtils.handleNegativeIndexing(tensor.shape.dimensions, dim);
+        int d = DataUtils.handleNegativeIndexing(tensor.shape.dimensions, dim);
 
-        if (dim < 0 || dim >= tensor.shape.rank())
+        if (d < 0 || d >= tensor.shape.rank())
             throw new IndexOutOfBoundsException("Invalid dimension!");
 
-        if (tensor.size(dim) < start + length || start < 0)
+        if (tensor.size(d) < start + length || start < 0)
             throw new IndexOutOfBoundsException("Start index and length are out of bounds.");
 
-        Integer[] newShape = tensor.shape.dimensions.clone();
-        newShape[dim] = length;
+        return Tracer.record("narrow", () -> {
+            Integer[] newShape = tensor.shape.dimensions.clone();
+            newShape[d] = length;
 
-        Tensor<T> result = new Tensor<>(tensor.dtype, newShape);
-        for (int i = 0; i < result.size(); i++) {
-            Integer[] idx = unravelIndex(result.shape.dimensions, i);
-            idx[dim] += start;
-            result.data[i] = tensor.data[flatIndex(tensor.shape.dimensions, idx)];
-        }
-        return result;
+            Tensor<T> result = new Tensor<>(tensor.dtype, newShape);
+            for (int i = 0; i < result.size(); i++) {
+                Integer[] idx = unravelIndex(result.shape.dimensions, i);
+                idx[d] += start;
+                result.data[i] = tensor.data[flatIndex(tensor.shape.dimensions, idx)];
+            }
+            return result;
+        }, tensor);
     }
 
     /**
@@ -255,25 +261,27 @@ public class TensorUtils {
      * @param slice The narrowed version to put in
      */
     public static <T> Tensor<T> narrow_set(Tensor<T> tensor, Tensor<T> slice, int dim, int start) {
-        dim = DataUtils.handleNegativeIndexing(tensor.shape.dimensions, dim);
+        int d = DataUtils.handleNegativeIndexing(tensor.shape.dimensions, dim);
 
-        if (dim < 0 || dim >= tensor.shape.rank())
+        if (d < 0 || d >= tensor.shape.rank())
             throw new IndexOutOfBoundsException("Invalid dimension!");
-        if (start < 0 || tensor.size(dim) <= start)
+        if (start < 0 || tensor.size(d) <= start)
             throw new IndexOutOfBoundsException("Start index is out of bounds.");
 
-        if (slice.size(dim) != tensor.size(dim) - start)
+        if (slice.size(d) != tensor.size(d) - start)
             throw new IllegalArgumentException("Invalid slice length!");
 
-        Tensor<T> result = tensor.clone();
+        return Tracer.record("narrow_set", () -> {
+            Tensor<T> result = tensor.clone();
 
-        for (int i = 0; i < slice.data.length; i++) {
-            Integer[] targetIdx = unravelIndex(slice.shape.dimensions, i);
-            targetIdx[dim] += start;
-            result = result.set(slice.data[i], targetIdx);
-        }
+            for (int i = 0; i < slice.data.length; i++) {
+                Integer[] targetIdx = unravelIndex(slice.shape.dimensions, i);
+                targetIdx[d] += start;
+                result = result.set(slice.data[i], targetIdx);
+            }
 
-        return result;
+            return result;
+        }, tensor, slice);
     }
 
     /**
@@ -328,25 +336,27 @@ public class TensorUtils {
             throw new IllegalArgumentException("Must have at least one tensor.");
 
         Shape shape = tensors[0].shape;
-        dim = DataUtils.handleNegativeIndexing(Arrays.copyOfRange(shape.dimensions, 0, shape.rank() + 1), dim);
+        int d = DataUtils.handleNegativeIndexing(Arrays.copyOfRange(shape.dimensions, 0, shape.rank() + 1), dim);
 
-        if (shape.rank() < dim)
+        if (shape.rank() < d)
             throw new IllegalArgumentException("Invalid dimension!");
 
         if (!Arrays.stream(tensors).allMatch(a -> a.shape.equals(shape)))
             throw new IllegalArgumentException("All tensors must be of the same shape!");
 
-        List<Integer> newShape = new ArrayList<>(Arrays.stream(shape.dimensions).toList());
-        newShape.add(dim, tensors.length);
+        return Tracer.record("stack", () -> {
+            List<Integer> newShape = new ArrayList<>(Arrays.stream(shape.dimensions).toList());
+            newShape.add(d, tensors.length);
 
-        Tensor<T> result = new Tensor<>(tensors[0].dtype, newShape.toArray(Integer[]::new));
-        Integer[] index = new Integer[result.dim()];
-        for (int i = 0; i < tensors.length; i++) {
-            index[dim] = i;
-            TensorUtils.setSlice(result, tensors[i].unsqueeze(0), index);
-        }
+            Tensor<T> result = new Tensor<>(tensors[0].dtype, newShape.toArray(Integer[]::new));
+            Integer[] index = new Integer[result.dim()];
+            for (int i = 0; i < tensors.length; i++) {
+                index[d] = i;
+                TensorUtils.setSlice(result, tensors[i].unsqueeze(0), index);
+            }
 
-        return result;
+            return result;
+        }, tensors);
     }
 
     /**
@@ -360,27 +370,29 @@ public class TensorUtils {
         if (dimensions.length > tensor.shape.rank())
             throw new IndexOutOfBoundsException("Number of dimensions exceeds the tensor rank. (" + dimensions.length + " > " + tensor.shape.rank() + ")");
 
-        dimensions = DataUtils.handleNegativeIndexing(tensor.shape.dimensions,
+        Integer[] idx = DataUtils.handleNegativeIndexing(tensor.shape.dimensions,
                 DataUtils.padRight(dimensions, null, tensor.shape.dimensions.length, false));
 
-        Tensor<T> result = Tensor.empty(TensorUtils.calculateSliceShape(tensor, dimensions))
-                .asDType(tensor.dtype);
+        return Tracer.record("getSlice", () -> {
+            Tensor<T> result = Tensor.empty(TensorUtils.calculateSliceShape(tensor, idx))
+                    .asDType(tensor.dtype);
 
-        // populate result tensor
-        for (int resultFlatIndex = 0; resultFlatIndex < result.data.length; resultFlatIndex++) {
-            Integer[] resultIdx = unravelIndex(result.shape.dimensions, resultFlatIndex);
+            // populate result tensor
+            for (int resultFlatIndex = 0; resultFlatIndex < result.data.length; resultFlatIndex++) {
+                Integer[] resultIdx = unravelIndex(result.shape.dimensions, resultFlatIndex);
 
-            Integer[] inputIdx = new Integer[tensor.shape.rank()];
-            for (int i = 0; i < inputIdx.length; i++)
-                inputIdx[i] = dimensions[i] == null ? resultIdx[i] : dimensions[i];
+                Integer[] inputIdx = new Integer[tensor.shape.rank()];
+                for (int i = 0; i < inputIdx.length; i++)
+                    inputIdx[i] = idx[i] == null ? resultIdx[i] : idx[i];
 
-            result.data[resultFlatIndex] = tensor.data[flatIndex(tensor.shape.dimensions, inputIdx)];
-        }
+                result.data[resultFlatIndex] = tensor.data[flatIndex(tensor.shape.dimensions, inputIdx)];
+            }
 
-        if (!keepDims)
-            result = result.squeeze();
+            if (!keepDims)
+                result = result.squeeze();
 
-        return result;
+            return result;
+        }, tensor);
     }
 
     /**
@@ -427,24 +439,26 @@ public class TensorUtils {
      *                If `keepDim` is true, this dimension will be kept.
      */
     public static <T> Tensor<T> reduceAlongDimension(Tensor<T> input, int dim, BiFunction<Tensor<T>, Tensor<T>, Tensor<T>> operation, boolean keepDim) {
-        dim = DataUtils.handleNegativeIndexing(input.shape.dimensions, dim);
-
-        Integer[] outputShape = input.shape.dimensions.clone();
-        outputShape[dim] = 1;
-        Tensor<T> result = TensorUtils.filled(input.reshapeUnsafe(outputShape), 0).squeeze(dim);
-
-        // perform operation
-        // for i in 0...dimSize: operation( result, input[:, :, ..., i, :, :, ...] )
-        Integer[] sliceIndex = new Integer[input.shape.rank()];
-        for (int i = 0; i < input.size(dim); i++) {
-            sliceIndex[dim] = i;
-            result = operation.apply(result, input.get(sliceIndex));
-        }
+        int d = DataUtils.handleNegativeIndexing(input.shape.dimensions, dim);
+
+        return Tracer.record("reduceAlongDimension", () -> {
+            Integer[] outputShape = input.shape.dimensions.clone();
+            outputShape[d] = 1;
+            Tensor<T> result = TensorUtils.filled(input.reshapeUnsafe(outputShape), 0).squeeze(d);
+
+            // perform operation
+            // for i in 0...dimSize: operation( result, input[:, :, ..., i, :, :, ...] )
+            Integer[] sliceIndex = new Integer[input.shape.rank()];
+            for (int i = 0; i < input.size(d); i++) {
+                sliceIndex[d] = i;
+                result = operation.apply(result, input.get(sliceIndex));
+            }
 
-        if (keepDim)
-            result = result.unsqueeze(dim);
+            if (keepDim)
+                result = result.unsqueeze(d);
 
-        return result;
+            return result;
+        }, input);
     }
 
     /**
@@ -17,6 +17,18 @@ public class jNN {
      */
     public static int MATMUL_TYPE = 1;
 
+    /**
+     * If set to true, lazy expressions will be compiled into specialized kernels at runtime.
+     * If set to false, or if an expression can't be compiled, expressions will be interpreted.
+     */
+    public static boolean COMPILE_KERNELS = true;
+
+    /**
+     * If set to true, lazy expressions that can't be compiled into a kernel will throw instead of being interpreted.
+     * Only has an effect if COMPILE_KERNELS is enabled.
+     */
+    public static boolean FORCE_KERNEL_COMPILATION = false;
+
     /**
      * Weather a newly created tensor should require a gradient if not specified
      */
@@ -1,35 +1,52 @@
 package de.c4vxl.models;
 
+import de.c4vxl.core.nn.Checkpoint;
 import de.c4vxl.core.nn.Embedding;
 import de.c4vxl.core.nn.LayerNorm;
 import de.c4vxl.core.nn.Linear;
 import de.c4vxl.core.nn.Sequence;
 import de.c4vxl.core.nn.activation.type.Activation;
 import de.c4vxl.core.nn.activation.type.ActivationFunction;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.c4vxl.core.nn.module.InitContext;
 import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
 import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.utils.SafetensorsUtils;
 import de.c4vxl.core.utils.TensorUtils;
 import de.c4vxl.models.type.TextGenerationModel;
 
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A NLP-Model build after the "Decoder-only-Transformer" architecture as seen with gpt2.
  * @see <a href="https://github.com/huggingface/transformers/blob/main/src/transformers/models/gpt2/modeling_gpt2.py">HuggingFace</a>
  */
 public class DecoderTransformer extends TextGenerationModel {
-    public static class CausalSelfAttention extends Module {
+    public static class CausalSelfAttention extends Module implements TensorModule {
         public int n_embd, n_head;
         public Linear c_attn, c_proj;
 
-        public CausalSelfAttention(int n_embd, int n_head, int block_size, boolean bias) {
+        /** Whether the reassembled heads are projected by {@code c_proj}, as in GPT-2 */
+        public boolean project_output = false;
+
+        public CausalSelfAttention(int n_embd, int n_head, int block_size, boolean bias) { this(n_embd, n_head, block_size, bias, DType.DEFAULT); }
+        public CausalSelfAttention(int n_embd, int n_head, int block_size, boolean bias, DType<?> dtype) {
             this.n_head = n_head;
             this.n_embd = n_embd;
 
             assert n_embd % n_head == 0;
 
-            this.c_attn = new Linear(n_embd, 3 * n_embd, bias);
-            this.c_proj = new Linear(n_embd, n_embd, bias);
+            this.c_attn = new Linear(n_embd, 3 * n_embd, bias, dtype);
+            this.c_proj = new Linear(n_embd, n_embd, bias, dtype);
         }
 
         public <T> Tensor<T> forward(Tensor<T> x) {
@@ -55,32 +72,41 @@ public class DecoderTransformer extends TextGenerationModel {
             Tensor<T> qkv = ActivationFunction.Softmax(qk).matmul(v);
 
             // reassemble heads
-            return qkv.transpose(1, 2).reshape(B, T, C);
+            Tensor<T> y = qkv.transpose(1, 2).reshape(B, T, C);
+
+            return this.project_output ? this.c_proj.forward(y) : y;
         }
     }
 
-    public static class Block extends Module {
+    public static class Block extends Module implements TensorModule {
         public CausalSelfAttention attn;
         public Sequence mlp;
         public LayerNorm ln_1, ln_2;
 
-        public Block(int n_embd, int n_head, int block_size, boolean bias) {
-            this.ln_1 = new LayerNorm(n_embd);
-            this.attn = new CausalSelfAttention(n_embd, n_head, block_size, bias);
-            this.ln_2 = new LayerNorm(n_embd);
+        /** Whether the residual branches are divided by sqrt(2). GPT-2 adds them unscaled */
+        public boolean scale_residuals = true;
+
+        public Block(int n_embd, int n_head, int block_size, boolean bias) { this(n_embd, n_head, block_size, bias, DType.DEFAULT); }
+        public Block(int n_embd, int n_head, int block_size, boolean bias, DType<?> dtype) {
+            this.ln_1 = new LayerNorm(1e-05, true, dtype, n_embd);
+            this.attn = new CausalSelfAttention(n_embd, n_head, block_size, bias, dtype);
+            this.ln_2 = new LayerNorm(1e-05, true, dtype, n_embd);
             this.mlp = new Sequence(
-                    new Linear(n_embd, n_embd * 4, bias),
+                    new Linear(n_embd, n_embd * 4, bias, dtype),
                     Activation.GELU(),
-                    new Linear(4 * n_embd, n_embd)
+                    new Linear(4 * n_embd, n_embd, true, dtype)
             );
         }
 
         @SuppressWarnings("unchecked")
         public <T> Tensor<T> forward(Tensor<T> x) {
-            T scale = x.dtype.parse(Math.pow(2, 0.5));
-            x = x.add(this.attn.forward(this.ln_1.forward(x)).div(scale));
-            x = x.add(((Tensor<T>) this.mlp.forward(this.ln_2.forward(x))).div(scale));
-            return x;
+            Tensor<T> attn = this.attn.forward(this.ln_1.forward(x));
+            if (this.scale_residuals) attn = attn.div(x.dtype.parse(Math.pow(2, 0.5)));
+            x = x.add(attn);
+
+            Tensor<T> mlp = (Tensor<T>) this.mlp.forward(this.ln_2.forward(x));
+            if (this.scale_residuals) mlp = mlp.div(x.dtype.parse(Math.pow(2, 0.5)));
+            return x.add(mlp);
         }
     }
 
@@ -89,45 +115,163 @@ public class DecoderTransformer extends TextGenerationModel {
     public LayerNorm ln_f;
     public Linear lm_head;
     public ArrayList<Block> heads = new ArrayList<>();
+    protected boolean gradient_checkpointing = false;
 
     public DecoderTransformer(int n_embd, int n_head, int n_layer, int block_size, int vocab_size, boolean bias) {
+        this(n_embd, n_head, n_layer, block_size, vocab_size, bias, DType.DEFAULT);
+    }
+
+    public DecoderTransformer(int n_embd, int n_head, int n_layer, int block_size, int vocab_size, boolean bias, DType<?> dtype) {
         this.block_size = block_size;
+        this.dtype = dtype;
 
         // embeddings
-        this.wte = new Embedding(vocab_size, n_embd);
-        this.wpe = new Embedding(block_size, n_embd);
+        this.wte = new Embedding(vocab_size, n_embd, dtype);
+        this.wpe = new Embedding(block_size, n_embd, dtype);
 
         // layer norm
-        this.ln_f = new LayerNorm(n_embd);
+        this.ln_f = new LayerNorm(1e-05, true, dtype, n_embd);
 
         // blocks
         for (int i = 0; i < n_layer; i++)
-            this.heads.add(new Block(n_embd, n_head, block_size, bias));
+            this.heads.add(new Block(n_embd, n_head, block_size, bias, dtype));
 
         // output projection
-        this.lm_head = new Linear(n_embd, vocab_size, false);
+        this.lm_head = new Linear(n_embd, vocab_size, false, dtype);
+    }
+
+    /**
+     * Load a pretrained HuggingFace GPT-2 model from its data dir
+     * @param dataDir The path to the dir containing the config.json and model.safetensors
+     */
+    public static DecoderTransformer from_pretrained(String dataDir) { return from_pretrained(dataDir, DType.DEFAULT); }
+
+    /**
+     * Load a pretrained HuggingFace GPT-2 model from its data dir
+     * @param dataDir The path to the dir containing the config.json and model.safetensors
+     * @param dtype The dtype of the parameters
+     */
+    public static DecoderTransformer from_pretrained(String dataDir, DType<?> dtype) {
+        return from_pretrained(Path.of(dataDir, "config.json"), Path.of(dataDir, "model.safetensors"), dtype);
+    }
+
+    /**
+     * Load a pretrained HuggingFace GPT-2 model from its config and weights.
+     * The blocks of the returned model use the GPT-2 architecture (see {@link #gpt2_architecture(boolean)}).
+     * Its {@code lm_head} is an untied copy of {@code wte}, so fine-tuning updates the two independently
+     * @param config_file The path to the config file
+     * @param weights_file The path to the safetensors file
+     * @param dtype The dtype of the parameters
+     */
+    public static DecoderTransformer from_pretrained(Path config_file, Path weights_file, DType<?> dtype) {
+        JsonObject config;
+        try {
+            config = JsonParser.parseString(Files.readString(config_file)).getAsJsonObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        int n_embd = config.get("n_embd").getAsInt(), n_head = config.get("n_head").getAsInt(), n_layer = config.get("n_layer").getAsInt();
+        int block_size = config.get("n_positions").getAsInt(), vocab_size = config.get("vocab_size").getAsInt();
+
+        DecoderTransformer model = InitContext.deferred(() -> new DecoderTransformer(n_embd, n_head, n_layer, block_size, vocab_size, true, dtype));
+        model.load_state(gpt2State(SafetensorsUtils.load(weights_file, dtype)));
+        return model.gpt2_architecture(true);
+    }
+
+    /**
+     * Map the tensors of a HuggingFace GPT-2 checkpoint onto the state of this model
+     * @param weights The tensors of the checkpoint
+     */
+    public static Map<String, Object> gpt2State(Map<String, Tensor<?>> weights) {
+        Map<String, Object> state = new HashMap<>();
+
+        weights.forEach((name, tensor) -> {
+            name = name.replaceFirst("^transformer\\.", "");
+
+            // causal masks are buffers
+            if (name.endsWith(".attn.bias") || name.endsWith(".attn.masked_bias"))
+                return;
+
+            // the lm_head of the checkpoint is stored as [vocab_size, n_embd]
+            if (name.equals("lm_head.weight")) {
+                state.put(name, transpose(tensor));
+                return;
+            }
+
+            state.put(name.replaceFirst("^h\\.", "heads.")
+                    .replace(".mlp.c_fc.", ".mlp.modules.0.")
+                    .replace(".mlp.c_proj.", ".mlp.modules.2."), tensor);
+        });
+
+        // gpt2 ties the lm_head to the token embedding; here it becomes an untied copy
+        if (!state.containsKey("lm_head.weight") && state.get("wte.weight") instanceof Tensor<?> wte)
+            state.put("lm_head.weight", transpose(wte));
+
+        return state;
+    }
+
+    /**
+     * Transpose a matrix by copying its data
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Tensor<T> transpose(Tensor<T> matrix) {
+        int rows = matrix.size(0), cols = matrix.size(1);
+
+        T[] data = (T[]) Array.newInstance(matrix.dtype.clazz, matrix.size());
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++)
+                data[c * rows + r] = matrix.data[r * cols + c];
+
+        return new Tensor<>(data, cols, rows);
+    }
+
+    /**
+     * Switch the blocks of this model to the exact GPT-2 architecture.
+     * When enabled, the attention output is projected by {@code c_proj} and the residual branches are added unscaled.
+     * Models built with the constructor keep the original architecture, so existing checkpoints produce the same outputs.
+     * @param value {@code true} if the blocks should follow GPT-2
+     */
+    public DecoderTransformer gpt2_architecture(boolean value) {
+        for (Block block : this.heads) {
+            block.attn.project_output = value;
+            block.scale_residuals = !value;
+        }
+        return this;
+    }
+
+    /**
+     * Enable or disable activation checkpointing for the blocks of this model.
+     * When enabled, only the input of every block is kept during the forward pass and its internals are recomputed during backpropagation.
+     * @param value {@code true} if blocks should be checkpointed
+     * @see de.c4vxl.core.nn.Checkpoint
+     */
+    public DecoderTransformer gradient_checkpointing(boolean value) {
+        this.gradient_checkpointing = value;
+        return this;
     }
 
     @Override
-    public <T extends Number> Tensor<Double> forward(Tensor<T> idx) {
+    public <T extends Number> Tensor<Double> forward(Tensor<T> idx) { return this.forward(idx, this.dtype); }
+
+    private <D> Tensor<Double> forward(Tensor<?> idx, DType<D> dtype) {
         int T = idx.size(1); // sequence length
 
         assert T <= this.block_size: "Sequence too long!";
 
-        Tensor<Double> x = idx.asDouble();
-
         // embedded tokens
+        // the indices stay DOUBLE for the lookup, since FLOAT16 and BFLOAT16 can't represent every token id
         // shape: b, t, n_embd
-        x = this.wte.forward(x)
-                .add(this.wpe.forward(Tensor.range(T).asDouble()));
+        Tensor<D> x = this.wte.forward(idx.asDouble()).asDType(dtype)
+                .add(this.wpe.forward(Tensor.range(T).asDouble()).asDType(dtype));
 
         for (Block block : this.heads)
-            x = block.forward(x);
+            x = this.gradient_checkpointing ? Checkpoint.apply(block::forward, x) : block.forward(x);
 
         x = this.ln_f.forward(x);
 
-        Tensor<Double> logits = this.lm_head.forward(x); // b, t, voc_size
+        Tensor<D> logits = this.lm_head.forward(x); // b, t, voc_size
 
-        return logits;
+        return logits.to(DType.DOUBLE);
     }
 }
\ No newline at end of file
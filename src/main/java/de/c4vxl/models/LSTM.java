@@ -1,20 +1,23 @@
 package de.c4vxl.models;
 
+import de.c4vxl.core.nn.Checkpoint;
 import de.c4vxl.core.nn.Linear;
 import de.c4vxl.core.nn.activation.type.ActivationFunction;
 import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
 import de.c4vxl.core.tensor.Tensor;
 import de.c4vxl.core.type.DType;
 import de.c4vxl.core.utils.TensorUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Apply a multi-layer short-term memory (LSTM) RNN to an input sequence.
  * <a href="https://pytorch.org/docs/stable/generated/torch.nn.LSTM.html">More information</a>
  */
-public class LSTM extends Module {
+public class LSTM extends Module implements TensorModule {
     /**
      * A single LSTM Cell
      * <a href="https://pytorch.org/docs/stable/generated/torch.nn.LSTMCell.html">More information</a>
@@ -69,9 +72,9 @@ public class LSTM extends Module {
 
     public static class LSTMOutput<T> {
         public Tensor<T> result;
-        public List<Tensor<Double>> hx;
+        public List<Tensor<T>> hx;
 
-        public LSTMOutput(Tensor<T> result, Tensor<Double> h, Tensor<Double> c) {
+        public LSTMOutput(Tensor<T> result, Tensor<T> h, Tensor<T> c) {
             this.result = result;
             this.hx = List.of(h, c);
         }
@@ -87,7 +90,8 @@ public class LSTM extends Module {
 
     public ArrayList<LSTMCell> cells;
     public int num_layers, hidden_size, input_size;
-    protected ArrayList<Tensor<Double>> last_hx = null;
+    protected ArrayList<Tensor<?>> last_hx = null;
+    protected boolean gradient_checkpointing = false;
 
     public LSTM(int input_size, int hidden_size, int num_layers, boolean bias, DType<?> dtype) {
         this.num_layers = num_layers;
@@ -100,15 +104,36 @@ public class LSTM extends Module {
         }
     }
 
+    /**
+     * Enable or disable activation checkpointing for the layers of this LSTM.
+     * When enabled, only the input sequence of every layer is kept during the forward pass and the layer is recomputed during backpropagation.
+     * The final hidden and cell state are part of the checkpointed output.
+     * @param value {@code true} if layers should be checkpointed
+     * @see de.c4vxl.core.nn.Checkpoint
+     */
+    public LSTM gradient_checkpointing(boolean value) {
+        this.gradient_checkpointing = value;
+        return this;
+    }
+
     public <T> Tensor<T> forward(Tensor<T> input) {
         LSTMOutput<T> out = this.forward(input, null);
         this.last_hx = new ArrayList<>(out.hx);
         return out.result;
     }
-    @SuppressWarnings("unchecked")
-    public <T> LSTMOutput<T> forward(Tensor<T> input, List<Tensor<Double>> hidden) {
-        Tensor<Double> x = input.asDouble();
+    public <T> LSTMOutput<T> forward(Tensor<T> input, List<Tensor<T>> hidden) {
+        // floating point inputs are processed in their own precision, everything else in double precision
+        if (input.dtype.isFloatingPoint())
+            return this.run(input, hidden);
+
+        LSTMOutput<Double> output = this.run(input.asDouble(), hidden == null ? null : hidden.stream().map(Tensor::asDouble).toList());
+        return new LSTMOutput<>(output.result.asDType(input.dtype),
+                output.hx.get(0).asDType(input.dtype),
+                output.hx.get(1).asDType(input.dtype));
+    }
 
+    @SuppressWarnings("unchecked")
+    private <T> LSTMOutput<T> run(Tensor<T> x, List<Tensor<T>> hidden) {
         // batch x if necessary
         boolean is_batched = x.dim() == 3;
         if (!is_batched)
@@ -116,13 +141,12 @@ public class LSTM extends Module {
 
         // extract dimension sizes
         int B = x.size(0); // batch
-        int T = x.size(1); // seq_length
 
         // generate/load h and c states
-        ArrayList<Tensor<Double>> h_t = new ArrayList<>(), c_t = new ArrayList<>();
+        ArrayList<Tensor<T>> h_t = new ArrayList<>(), c_t = new ArrayList<>();
         if (hidden == null) {
             for (int i = 0; i < this.num_layers; i++) {
-                Tensor<Double> zeros = Tensor.zeros(B, this.hidden_size).asDouble();
+                Tensor<T> zeros = Tensor.zeros(B, this.hidden_size).asDType(x.dtype);
                 h_t.add(zeros.clone());
                 c_t.add(zeros.clone());
             }
@@ -133,23 +157,51 @@ public class LSTM extends Module {
             }
         }
 
-        Tensor<T>[] outputs = new Tensor[T];
-        for (int t = 0; t < T; t++) {
-            Tensor<Double> x_t = x.get(null, t, null); // extract the t-th time step
+        // pass "x" through every layer
+        int S = x.size(1);
+        for (int i = 0; i < this.num_layers; i++) {
+            LSTMCell cell = this.cells.get(i);
 
-            // pass "x_t" through cell
-            for (int i = 0; i < this.num_layers; i++) {
-                List<Tensor<Double>> output = this.cells.get(i).forward(x_t, h_t.get(i), c_t.get(i));
-                h_t.set(i, output.get(0));
-                c_t.set(i, output.get(1));
-                x_t = h_t.get(i);
-            }
+            // the final cell state is returned as an extra time step, so it is part of the checkpointed output as well
+            // the initial states are inputs of the checkpoint, so their gradients are recomputed along with the one of the sequence
+            Function<List<Tensor<T>>, Tensor<T>> layer = in -> this.forwardLayer(cell, in.get(0), in.get(1), in.get(2));
+            List<Tensor<T>> inputs = List.of(x, h_t.get(i), c_t.get(i));
+            Tensor<T> out = this.gradient_checkpointing ? Checkpoint.apply(layer, inputs) : layer.apply(inputs);
 
-            outputs[t] = h_t.getLast().asDType(input.dtype);
+            x = out.narrow(1, 0, S);
+            h_t.set(i, out.narrow(1, S - 1, 1).reshape(B, this.hidden_size));
+            c_t.set(i, out.narrow(1, S, 1).reshape(B, this.hidden_size));
         }
 
-        return new LSTMOutput<>(TensorUtils.stack(1, outputs),
+        return new LSTMOutput<>(x,
                 TensorUtils.stack(0, h_t.toArray(Tensor[]::new)), // concatenate h back to tensor
                 TensorUtils.stack(0, c_t.toArray(Tensor[]::new))); // concatenate c back to tensor
     }
+
+    /**
+     * Pass a whole sequence through a single layer
+     * @param cell The cell of the layer
+     * @param x The input sequence (batch, seq_length, n_embd)
+     * @param h The initial hidden state
+     * @param c The initial cell state
+     * @return The hidden states of every time step followed by the final cell state (batch, seq_length + 1, hidden_size)
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> Tensor<T> forwardLayer(LSTMCell cell, Tensor<T> x, Tensor<T> h, Tensor<T> c) {
+        Tensor<T>[] outputs = (Tensor<T>[]) new Tensor<?>[x.size(1) + 1];
+        for (int t = 0; t < outputs.length - 1; t++) {
+            Tensor<T> x_t = x.get(null, t, null); // extract the t-th time step
+
+            // pass "x_t" through cell
+            List<Tensor<T>> output = cell.forward(x_t, h, c);
+            h = output.get(0);
+            c = output.get(1);
+
+            outputs[t] = h;
+        }
+
+        outputs[outputs.length - 1] = c;
+
+        return TensorUtils.stack(1, outputs);
+    }
 }
\ No newline at end of file
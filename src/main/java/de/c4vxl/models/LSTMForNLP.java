@@ -20,16 +20,19 @@ public class LSTMForNLP extends TextGenerationModel {
     public Linear out_proj;
 
     public LSTMForNLP(int vocab_size, int n_embd, int hidden_size, int num_layers, boolean bias, DType<?> dtype) {
-        this.embedding = new Embedding(vocab_size, n_embd);
+        this.dtype = dtype;
+        this.embedding = new Embedding(vocab_size, n_embd, dtype);
         this.lstm = new LSTM(n_embd, hidden_size, num_layers, bias, dtype);
-        this.out_proj = new Linear(hidden_size, vocab_size);
+        this.out_proj = new Linear(hidden_size, vocab_size, true, dtype);
     }
 
     @Override
-    public <T extends Number> Tensor<Double> forward(Tensor<T> input) {
-        Tensor<Double> x = this.embedding.forward(input).asDouble();
+    public <T extends Number> Tensor<Double> forward(Tensor<T> input) { return this.forward(input, this.dtype); }
+
+    private <D> Tensor<Double> forward(Tensor<?> input, DType<D> dtype) {
+        Tensor<D> x = this.embedding.forward(input.asDType(dtype));
         x = this.lstm.forward(x);
         x = this.out_proj.forward(x);
-        return x;
+        return x.to(DType.DOUBLE);
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package de.c4vxl.models;
 import de.c4vxl.core.nn.Linear;
 import de.c4vxl.core.nn.activation.type.Activation;
 import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.nn.module.TensorModule;
 import de.c4vxl.core.tensor.Tensor;
 import de.c4vxl.core.type.DType;
 
@@ -11,7 +12,7 @@ import java.util.ArrayList;
 /**
  * This class is a multilayer perceptron (MLP). Utilizing multiple linear transformation and activations to transform an input into a new output.
  */
-public class MLP extends Module {
+public class MLP extends Module implements TensorModule {
     public ArrayList<Linear> layers = new ArrayList<>();
     public Activation activation;
 
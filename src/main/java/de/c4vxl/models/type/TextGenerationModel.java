@@ -3,6 +3,7 @@ package de.c4vxl.models.type;
 import de.c4vxl.core.nn.activation.type.ActivationFunction;
 import de.c4vxl.core.nn.module.Module;
 import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
 import de.c4vxl.core.utils.TensorUtils;
 
 import java.util.Objects;
@@ -15,8 +16,21 @@ public abstract class TextGenerationModel extends Module {
     @FunctionalInterface
     public interface GenerationStream { void apply(int next_token, int idx); }
 
+    protected DType<?> dtype = DType.DEFAULT;
+
     public abstract <T extends Number> Tensor<Double> forward(Tensor<T> input);
 
+    /**
+     * Set the dtype the activations of this model are computed in.
+     * Parameters stored in another dtype are cast on the fly and keep receiving their gradients in their own dtype.
+     * @param dtype The dtype to compute in
+     */
+    @SuppressWarnings("unchecked")
+    public <M extends TextGenerationModel> M dtype(DType<?> dtype) {
+        this.dtype = dtype;
+        return (M) this;
+    }
+
 
     public <T extends Number> Tensor<T> generate(Tensor<T> input_ids, int max_new_tokens, int block_size) {
         return generate(input_ids, 1.0, max_new_tokens, block_size, null, null);
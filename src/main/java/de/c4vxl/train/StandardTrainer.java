@@ -1,6 +1,7 @@
 package de.c4vxl.train;
 
 import de.c4vxl.core.nn.loss.type.LossFunction;
+import de.c4vxl.core.optim.MixedPrecisionOptimizer;
 import de.c4vxl.core.optim.type.AbstractOptimizer;
 import de.c4vxl.core.optim.type.Optimizer;
 import de.c4vxl.core.tensor.Tensor;
@@ -14,6 +15,8 @@ import java.util.function.BiConsumer;
 
 /**
  * This trainer allows for training on most preprocessed datasets with a train and an optional test split.
+ * If the optimizer is a {@link MixedPrecisionOptimizer}, the loss is scaled dynamically before backpropagation.
+ * Optimizers can update the parameters while backpropagating, see {@link AbstractOptimizer#step_during_backward(boolean)}.
  */
 public class StandardTrainer<T> extends Trainer {
     private final HashMap<Tensor<T>, Tensor<T>> trainSplit, testSplit;
@@ -22,7 +25,7 @@ public class StandardTrainer<T> extends Trainer {
     private final Optimizer optimizer;
     private final LossFunction criterion;
     private final BiConsumer<Integer, Double> trainLogger, testLogger;
-    private final Double clip_grads_min, clip_grads_max;
+    private final Double clip_grads_min, clip_grads_max, max_grad_norm;
 
     /**
      * Create a new trainer instance without a testing dataset split
@@ -47,7 +50,35 @@ public class StandardTrainer<T> extends Trainer {
             Double clip_grads_min,
             Double clip_grads_max
     ) {
-        this(model, optimizer, criterion, trainSplit, null, num_epochs, logging_rate, -1, trainLogger, null, clip_grads_min, clip_grads_max);
+        this(model, optimizer, criterion, trainSplit, num_epochs, logging_rate, trainLogger, clip_grads_min, clip_grads_max, null);
+    }
+
+    /**
+     * Create a new trainer instance without a testing dataset split
+     * @param model The model to train
+     * @param optimizer The optimizer connected to the models parameters
+     * @param criterion The loss function to evaluate model performance
+     * @param trainSplit The train split of the dataset
+     * @param num_epochs The amount of epochs of training
+     * @param logging_rate The frequency of calling the {@code trainLogger}
+     * @param trainLogger A function for handling the loss in an epoch that is a multiple of {@code logging_rate}
+     * @param clip_grads_min The minimum value gradients can be. (Set to null to ignore)
+     * @param clip_grads_max The maximum value gradients can be. (Set to null to ignore)
+     * @param max_grad_norm The maximum global L2 norm of the gradients. (Set to null to ignore)
+     */
+    public StandardTrainer(
+            Model<T> model,
+            Optimizer optimizer,
+            LossFunction criterion,
+            HashMap<Tensor<T>, Tensor<T>> trainSplit,
+            int num_epochs,
+            int logging_rate,
+            BiConsumer<Integer, Double> trainLogger,
+            Double clip_grads_min,
+            Double clip_grads_max,
+            Double max_grad_norm
+    ) {
+        this(model, optimizer, criterion, trainSplit, null, num_epochs, logging_rate, -1, trainLogger, null, clip_grads_min, clip_grads_max, max_grad_norm);
     }
 
     /**
@@ -78,6 +109,40 @@ public class StandardTrainer<T> extends Trainer {
             BiConsumer<Integer, Double> testLogger,
             Double clip_grads_min,
             Double clip_grads_max
+    ) {
+        this(model, optimizer, criterion, trainSplit, testSplit, num_epochs, logging_rate, testing_rate, trainLogger, testLogger, clip_grads_min, clip_grads_max, null);
+    }
+
+    /**
+     * Create a new trainer instance
+     * @param model The model to train
+     * @param optimizer The optimizer connected to the models parameters
+     * @param criterion The loss function to evaluate model performance
+     * @param trainSplit The train split of the dataset
+     * @param testSplit The test split of the dataset
+     * @param num_epochs The amount of epochs of training
+     * @param logging_rate The frequency of calling the {@code trainLogger}
+     * @param testing_rate The frequency of calling the {@code testLogger}
+     * @param trainLogger A function for handling the loss in an epoch that is a multiple of {@code logging_rate}
+     * @param testLogger A function for handling the loss in an epoch that is a multiple of {@code testing_rate}
+     * @param clip_grads_min The minimum value gradients can be. (Set to null to ignore)
+     * @param clip_grads_max The maximum value gradients can be. (Set to null to ignore)
+     * @param max_grad_norm The maximum global L2 norm of the gradients. (Set to null to ignore)
+     */
+    public StandardTrainer(
+            Model<T> model,
+            Optimizer optimizer,
+            LossFunction criterion,
+            HashMap<Tensor<T>, Tensor<T>> trainSplit,
+            HashMap<Tensor<T>, Tensor<T>> testSplit,
+            int num_epochs,
+            int logging_rate,
+            int testing_rate,
+            BiConsumer<Integer, Double> trainLogger,
+            BiConsumer<Integer, Double> testLogger,
+            Double clip_grads_min,
+            Double clip_grads_max,
+            Double max_grad_norm
     ) {
         this.model = model;
         this.optimizer = optimizer;
@@ -91,9 +156,13 @@ public class StandardTrainer<T> extends Trainer {
         this.testLogger = testLogger;
         this.clip_grads_min = clip_grads_min;
         this.clip_grads_max = clip_grads_max;
+        this.max_grad_norm = max_grad_norm;
 
-        if (clip_grads_min != null && clip_grads_max != null && !(optimizer instanceof AbstractOptimizer))
+        if (((clip_grads_min != null && clip_grads_max != null) || max_grad_norm != null) && !(optimizer instanceof AbstractOptimizer))
             System.err.println("[WARNING]: Gradients won't be clipped due to missing support by optimizer. Please use an 'AbstractOptimizer'.");
+
+        if (((clip_grads_min != null && clip_grads_max != null) || max_grad_norm != null) && optimizer instanceof AbstractOptimizer ao && ao.steps_during_backward())
+            System.err.println("[WARNING]: Gradients won't be clipped since they are applied during backpropagation.");
     }
 
     @Override
@@ -129,10 +198,21 @@ public class StandardTrainer<T> extends Trainer {
             // Optimize weights
             if (isTrain) {
                 optimizer.zeroGrad();
-                loss.backward();
 
-                if (clip_grads_min != null && clip_grads_max != null && optimizer instanceof AbstractOptimizer ao)
-                    ao.clip_gradients(clip_grads_min, clip_grads_max);
+                if (optimizer instanceof MixedPrecisionOptimizer mixed) {
+                    mixed.scale(loss).backward();
+                    mixed.unscale(); // clip the real gradients, not the scaled ones
+                } else
+                    loss.backward();
+
+                // optimizers updating during backpropagation have already applied the gradients
+                if (optimizer instanceof AbstractOptimizer ao && !ao.steps_during_backward()) {
+                    if (clip_grads_min != null && clip_grads_max != null)
+                        ao.clip_gradients(clip_grads_min, clip_grads_max);
+
+                    if (max_grad_norm != null)
+                        ao.clip_grad_norm(max_grad_norm);
+                }
 
                 optimizer.step();
             }
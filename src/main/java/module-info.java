@@ -13,6 +13,7 @@ module jNN.main {
     exports de.c4vxl.core.nn.loss;
     exports de.c4vxl.core.nn.loss.type;
     exports de.c4vxl.core.nn.module;
+    exports de.c4vxl.core.nn.quantized;
 
     // core.optim
     exports de.c4vxl.core.optim;
@@ -21,8 +22,10 @@ module jNN.main {
     // core.tensor
     exports de.c4vxl.core.tensor;
     exports de.c4vxl.core.tensor.grad;
+    exports de.c4vxl.core.tensor.lazy;
     exports de.c4vxl.core.tensor.operation;
     exports de.c4vxl.core.tensor.operation.type;
+    exports de.c4vxl.core.tensor.trace;
 
     // core.type
     exports de.c4vxl.core.type;
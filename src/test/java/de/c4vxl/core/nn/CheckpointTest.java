@@ -0,0 +1,82 @@
+package de.c4vxl.core.nn;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.operation.CheckpointOperation;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.models.LSTM;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckpointTest {
+    private static Tensor<Double> leaf(Integer[] shape, Double... data) {
+        Tensor<Double> tensor = Tensor.of(data).reshape(shape).detach(true);
+        tensor.grad = null;
+        return tensor;
+    }
+
+    @Test
+    public void moduleGradientsMatchUncheckpointedPass() {
+        MLP mlp = new MLP(3, 2, 1, 4);
+        Tensor<Double> input = leaf(new Integer[]{2, 3}, 1., 2., 3., 0., 1., -1.);
+
+        Tensor<Double> expected = mlp.forward(input);
+        expected.backward();
+        Object[] weightGrad = mlp.layers.getFirst().weight.grad.data;
+        Object[] inputGrad = input.grad.data;
+
+        mlp.parameters().forEach(p -> p.grad = null);
+        input.grad = null;
+
+        Tensor<Double> actual = new Checkpoint(mlp).forward(input);
+        assertInstanceOf(CheckpointOperation.class, actual.operation);
+        assertEquals(expected, actual);
+
+        actual.backward();
+        assertArrayEquals(weightGrad, mlp.layers.getFirst().weight.grad.data);
+        assertArrayEquals(inputGrad, input.grad.data);
+    }
+
+    @Test
+    public void everyInputReceivesItsGradient() {
+        Linear linear = new Linear(3, 3, true, DType.DOUBLE);
+        Tensor<Double> x = leaf(new Integer[]{2, 3}, 1., 2., 3., 0., 1., -1.);
+        Tensor<Double> h = leaf(new Integer[]{2, 3}, .5, -.2, .1, .3, .3, .9);
+        Tensor<Double> c = Tensor.of(.1, .2, .3, .4, .5, .6).reshape(2, 3).detach(false);
+
+        Function<List<Tensor<Double>>, Tensor<Double>> function =
+                in -> linear.forward(in.get(0).mul(in.get(1))).tanh().mul(in.get(2)).add(in.get(1));
+
+        function.apply(List.of(x, h, c)).backward();
+        Object[] xGrad = x.grad.data, hGrad = h.grad.data, weightGrad = linear.weight.grad.data;
+
+        x.grad = null;
+        h.grad = null;
+        linear.parameters().forEach(p -> p.grad = null);
+
+        Checkpoint.apply(function, List.of(x, h, c)).backward();
+        assertArrayEquals(xGrad, x.grad.data);
+        assertArrayEquals(hGrad, h.grad.data);
+        assertArrayEquals(weightGrad, linear.weight.grad.data);
+        assertNull(c.grad);
+    }
+
+    @Test
+    public void lstmAcceptsInitialStatesRequiringGradient() {
+        LSTM lstm = new LSTM(3, 4, 2, true, DType.DOUBLE);
+        Tensor<Double> input = Tensor.of(1., 2., 3., 4., 5., 6.).reshape(1, 2, 3);
+        Tensor<Double> h = Tensor.filled(.1, 2, 1, 4).detach(true);
+        Tensor<Double> c = Tensor.filled(-.2, 2, 1, 4).detach(true);
+
+        LSTM.LSTMOutput<Double> expected = lstm.forward(input, List.of(h, c));
+        LSTM.LSTMOutput<Double> actual = lstm.gradient_checkpointing(true).forward(input, List.of(h, c));
+
+        assertEquals(expected.result, actual.result);
+        assertEquals(expected.hx.get(0), actual.hx.get(0));
+        assertEquals(expected.hx.get(1), actual.hx.get(1));
+    }
+}
@@ -0,0 +1,56 @@
+package de.c4vxl.core.nn.module;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InitContextTest {
+    @Test
+    public void deferredModulesOnlyKnowTheShapeOfTheirParameters() {
+        Linear linear = InitContext.deferred(() -> new Linear(4, 3, true, DType.FLOAT));
+
+        assertFalse(InitContext.isDeferred());
+        assertFalse(linear.weight.isMaterialized());
+        assertArrayEquals(new Integer[]{4, 3}, linear.weight.shape.dimensions);
+        assertEquals(DType.FLOAT, linear.weight.dtype);
+
+        linear.initialize();
+        assertTrue(linear.parameters().stream().allMatch(Tensor::isMaterialized));
+        assertEquals(Float.class, linear.weight.data.getClass().getComponentType());
+    }
+
+    @Test
+    public void loadedParametersAreNeverInitialized() {
+        MLP mlp = new MLP(4, 3, 1, 8);
+        MLP loaded = InitContext.deferred(() -> new MLP(4, 3, 1, 8));
+        List<Tensor<?>> initial = loaded.parameters();
+        loaded.load_state(mlp.state());
+
+        assertTrue(initial.stream().noneMatch(Tensor::isMaterialized));
+        assertTrue(loaded.parameters().stream().allMatch(Tensor::isMaterialized));
+
+        Tensor<Double> input = Tensor.of(1., -2., 0.5, 3.).reshape(1, 4);
+        assertEquals(mlp.forward(input), loaded.forward(input));
+    }
+
+    @Test
+    public void deferredParametersInitializeOnFirstUse() {
+        MLP mlp = InitContext.deferred(() -> new MLP(4, 3, 1, 8));
+
+        Tensor<Double> output = mlp.forward(Tensor.of(1., -2., 0.5, 3.).reshape(1, 4));
+        assertArrayEquals(new Integer[]{1, 3}, output.shape.dimensions);
+        assertTrue(mlp.parameters().stream().allMatch(Tensor::isMaterialized));
+    }
+
+    @Test
+    public void contextIsRestoredAfterFailures() {
+        assertThrows(IllegalStateException.class, () -> InitContext.deferred(() -> { throw new IllegalStateException(); }));
+        assertFalse(InitContext.isDeferred());
+    }
+}
@@ -0,0 +1,66 @@
+package de.c4vxl.core.nn.module;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.nn.Sequence;
+import de.c4vxl.core.tensor.Tensor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModuleForwardTest {
+    public static class Scale extends Module {
+        public Tensor<Double> forward(Tensor<Double> input, Double factor) { return input.mul(factor); }
+        public int forward(int a, int b) { return a + b; }
+        public String forward(String text) { return text == null ? "null" : text.toUpperCase(); }
+    }
+
+    public static class Failing extends Module {
+        public Object forward(Object input) { throw new IllegalStateException("forward failed"); }
+    }
+
+    // not accessible through a public lookup
+    private static class Hidden extends Module {
+        public String forward(String text) { return text + "!"; }
+    }
+
+    @Test
+    public void tensorModulesAreCalledDirectly() {
+        Linear linear = new Linear(3, 2);
+        Tensor<Double> input = Tensor.of(1., 2., 3., 4., 5., 6.).reshape(2, 3);
+
+        assertEquals(linear.forward(input), linear._forward(input));
+
+        Linear first = new Linear(3, 3);
+        Tensor<Double> output = new Sequence(first, linear).forward(input);
+        assertEquals(linear.forward(first.forward(input)), output);
+    }
+
+    @Test
+    public void forwardIsFoundByTheArgumentClasses() {
+        Scale scale = new Scale();
+        Tensor<Double> input = Tensor.of(1., 2., 3.);
+
+        assertEquals(input.mul(2.), scale._forward(input, 2.));
+        assertEquals(5, scale._forward(2, 3));
+        assertEquals("AB", scale._forward("ab"));
+        assertEquals("null", scale._forward((Object) null));
+        assertEquals("x!", new Hidden()._forward("x"));
+
+        // the cached handle is reused
+        assertEquals(7, scale._forward(3, 4));
+    }
+
+    @Test
+    public void missingForwardThrows() {
+        Scale scale = new Scale();
+        assertThrows(IllegalArgumentException.class, () -> scale._forward(1.5));
+        assertThrows(IllegalArgumentException.class, () -> scale._forward(1, 2, 3));
+    }
+
+    @Test
+    public void exceptionsOfTheForwardArePropagated() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new Failing()._forward("x"));
+        assertEquals("forward failed", e.getMessage());
+        assertThrows(IllegalStateException.class, () -> new Sequence(new Linear(1, 1), new Failing()).forward(Tensor.of(1.).reshape(1, 1)));
+    }
+}
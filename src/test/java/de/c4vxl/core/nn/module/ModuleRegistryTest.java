@@ -0,0 +1,93 @@
+package de.c4vxl.core.nn.module;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.nn.Sequence;
+import de.c4vxl.core.nn.quantized.QuantizedLinear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.utils.QuantizationUtils;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModuleRegistryTest {
+    public static class Wrapper extends Module {
+        public Sequence sequence = new Sequence(new Linear(2, 2));
+        public Linear head = new Linear(2, 1);
+    }
+
+    @Test
+    public void registryMatchesTheState() {
+        MLP mlp = new MLP(4, 3, 2, 8);
+        Map<String, Object> state = mlp.state();
+
+        assertSame(mlp.parameters(), mlp.parameters());
+        assertEquals(mlp.named_parameters().size(), mlp.parameters().size());
+        mlp.named_parameters().forEach((name, parameter) -> assertSame(parameter, state.get(name)));
+
+        assertSame(mlp, mlp.named_modules().get(""));
+        assertSame(mlp.layers.get(1), mlp.named_modules().get("layers.1"));
+        assertThrows(UnsupportedOperationException.class, () -> mlp.named_modules().put("x", mlp));
+    }
+
+    @Test
+    public void changingASequenceUpdatesItsContainers() {
+        Wrapper wrapper = new Wrapper();
+        int before = wrapper.parameters().size();
+        int sequenceBefore = wrapper.sequence.parameters().size();
+
+        Linear added = new Linear(2, 2);
+        wrapper.sequence.append(added);
+        assertEquals(before + 2, wrapper.parameters().size());
+        assertEquals(sequenceBefore + 2, wrapper.sequence.parameters().size());
+        assertSame(added.weight, wrapper.named_parameters().get("sequence.modules.1.weight"));
+
+        wrapper.sequence.remove(added);
+        assertEquals(before, wrapper.parameters().size());
+        assertFalse(wrapper.parameters().contains(added.weight));
+    }
+
+    @Test
+    public void loadingAStateUpdatesTheRegistries() {
+        Wrapper wrapper = new Wrapper();
+        Linear inner = (Linear) wrapper.sequence.modules.getFirst();
+        wrapper.parameters();
+        inner.parameters();
+
+        Map<String, Object> state = new Wrapper().state();
+        wrapper.load_state(state);
+
+        assertSame(inner.weight, wrapper.named_parameters().get("sequence.modules.0.weight"));
+        assertSame(inner.weight, inner.named_parameters().get("weight"));
+        assertSame(wrapper.head.bias, wrapper.named_parameters().get("head.bias"));
+        assertEquals(state.get("head.bias"), wrapper.head.bias);
+    }
+
+    @Test
+    public void quantizingUpdatesTheRegistries() {
+        Wrapper wrapper = new Wrapper();
+        wrapper.named_modules();
+        wrapper.sequence.named_modules();
+
+        QuantizationUtils.quantize(wrapper);
+
+        assertInstanceOf(QuantizedLinear.class, wrapper.named_modules().get("head"));
+        assertInstanceOf(QuantizedLinear.class, wrapper.named_modules().get("sequence.modules.0"));
+        assertInstanceOf(QuantizedLinear.class, wrapper.sequence.named_modules().get("modules.0"));
+    }
+
+    @Test
+    public void invalidatingAModuleRebuildsItsRegistry() {
+        Wrapper wrapper = new Wrapper();
+        Tensor<?> old = wrapper.head.weight;
+        assertTrue(wrapper.parameters().contains(old));
+
+        wrapper.head.weight = Tensor.of(1., 2.).reshape(1, 2);
+        wrapper.head.invalidate_registry();
+
+        assertFalse(wrapper.parameters().contains(old));
+        assertSame(wrapper.head.weight, wrapper.named_parameters().get("head.weight"));
+    }
+}
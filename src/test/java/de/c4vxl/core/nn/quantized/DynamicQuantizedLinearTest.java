@@ -0,0 +1,72 @@
+package de.c4vxl.core.nn.quantized;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.utils.QuantizationUtils;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DynamicQuantizedLinearTest {
+    @Test
+    public void dotProductsAccumulateExactly() {
+        Random random = new Random(0);
+        byte[] a = new byte[37], b = new byte[37];
+        random.nextBytes(a);
+        random.nextBytes(b);
+
+        // every length hits another remainder of the unrolled loop
+        for (int n = 0; n <= 35; n++) {
+            int expected = 0;
+            for (int k = 0; k < n; k++)
+                expected += a[k + 1] * b[k + 2];
+
+            assertEquals(expected, Int8Kernels.dot(a, 1, b, 2, n));
+        }
+    }
+
+    @Test
+    public void rowsAreQuantizedSymmetrically() {
+        double[] x = { 1., -2., 0.5, 0., 0., 0. };
+        byte[] q = new byte[6];
+        float[] scales = new float[2];
+        Int8Kernels.quantizeRows(x, 2, 3, q, scales);
+
+        assertEquals(2f / 127, scales[0]);
+        assertEquals(-127, q[1]);
+        assertEquals(64, q[0]);
+
+        // rows of zeros keep a scale of 1
+        assertEquals(1f, scales[1]);
+        assertEquals(0, q[4]);
+    }
+
+    @Test
+    public void forwardIsCloseToTheOriginalLayer() {
+        Linear linear = new Linear(32, 5, true, DType.DOUBLE);
+        Random random = new Random(0);
+        Double[] data = new Double[3 * 32];
+        for (int i = 0; i < data.length; i++)
+            data[i] = random.nextGaussian();
+        Tensor<Double> input = Tensor.of(data).reshape(3, 32);
+
+        Tensor<Double> expected = linear.forward(input);
+        Tensor<Double> actual = new DynamicQuantizedLinear(linear).forward(input);
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.data[i], actual.data[i], 0.05);
+
+        Tensor<Float> single = new DynamicQuantizedLinear(linear).forward(input.asFloat());
+        assertEquals(DType.FLOAT, single.dtype);
+    }
+
+    @Test
+    public void quantizeDynamicReplacesLinearLayers() {
+        MLP mlp = new MLP(4, 2, 1, 8);
+        QuantizationUtils.quantizeDynamic(mlp);
+        mlp.layers.forEach(layer -> assertInstanceOf(DynamicQuantizedLinear.class, layer));
+    }
+}
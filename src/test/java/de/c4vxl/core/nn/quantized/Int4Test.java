@@ -0,0 +1,106 @@
+package de.c4vxl.core.nn.quantized;
+
+import de.c4vxl.core.nn.Embedding;
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.utils.QuantizationUtils;
+import de.c4vxl.models.DecoderTransformer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Int4Test {
+    private static double[][] matrix(int rows, int cols) {
+        Random random = new Random(0);
+        double[][] values = new double[rows][cols];
+        for (double[] row : values)
+            for (int c = 0; c < cols; c++)
+                row[c] = random.nextGaussian();
+        return values;
+    }
+
+    @Test
+    public void valuesAreWithinHalfAStepOfTheirGroup() {
+        // an odd amount of values and a partial last group
+        int rows = 3, cols = 13, group_size = 4;
+        double[][] values = matrix(rows, cols);
+        Int4Matrix matrix = new Int4Matrix(rows, cols, group_size, (r, c) -> values[r][c]);
+
+        double[] row = new double[cols];
+        for (int r = 0; r < rows; r++) {
+            matrix.row(r, row, 0);
+
+            for (int c = 0; c < cols; c++) {
+                int group = r * matrix.groups + c / group_size;
+                assertEquals(values[r][c], row[c], matrix.scale(group) / 2 + 1e-2, "row " + r + ", column " + c);
+            }
+        }
+    }
+
+    @Test
+    public void dotMatchesTheDequantizedRow() {
+        int rows = 4, cols = 10;
+        double[][] values = matrix(rows, cols);
+        Int4Matrix matrix = new Int4Matrix(rows, cols, 3, (r, c) -> values[r][c]);
+
+        double[] x = matrix(1, cols)[0];
+        double[] sums = matrix.groupSums(x, 0), row = new double[cols];
+        for (int r = 0; r < rows; r++) {
+            matrix.row(r, row, 0);
+
+            double expected = 0;
+            for (int c = 0; c < cols; c++)
+                expected += row[c] * x[c];
+
+            assertEquals(expected, matrix.dot(r, x, 0, sums), 1e-9);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new Int4Matrix(rows, cols, 0, (r, c) -> 0));
+    }
+
+    @Test
+    public void layersUseTheQuantizedWeight() {
+        Linear linear = new Linear(8, 3, true, DType.DOUBLE);
+        Int4Linear quantizedLinear = new Int4Linear(linear, 4);
+
+        Tensor<Double> input = Tensor.of(1., -2., 0.5, 3., 0., 1., -1., 2.).reshape(1, 8);
+        double[] row = new double[8];
+        Tensor<Double> output = quantizedLinear.forward(input);
+        for (int o = 0; o < 3; o++) {
+            quantizedLinear.qweight.row(o, row, 0);
+
+            double expected = ((Number) linear.bias.data[o]).doubleValue();
+            for (int k = 0; k < 8; k++)
+                expected += row[k] * input.data[k];
+
+            assertEquals(expected, output.data[o], 1e-9);
+        }
+
+        Embedding embedding = new Embedding(5, 6, DType.DOUBLE);
+        Int4Embedding quantizedEmbedding = new Int4Embedding(embedding, 4);
+        Tensor<Double> embedded = quantizedEmbedding.forward(Tensor.of(3., 1.).reshape(1, 2));
+        assertArrayEquals(new Integer[]{1, 2, 6}, embedded.shape.dimensions);
+
+        row = new double[6];
+        quantizedEmbedding.qweight.row(3, row, 0);
+        for (int c = 0; c < 6; c++)
+            assertEquals(row[c], embedded.data[c].doubleValue());
+    }
+
+    @Test
+    public void filterSelectsTheLayersToQuantize() {
+        DecoderTransformer model = new DecoderTransformer(8, 2, 1, 4, 11, true);
+        QuantizationUtils.quantizeInt4(model, 4, m -> m == model.wte || m == model.lm_head);
+
+        assertInstanceOf(Int4Embedding.class, model.wte);
+        assertInstanceOf(Int4Linear.class, model.lm_head);
+        assertFalse(model.wpe instanceof QuantizedModule);
+        assertFalse(model.heads.getFirst().attn.c_attn instanceof QuantizedModule);
+
+        Tensor<Double> logits = model.forward(Tensor.of(1, 2, 3).reshape(1, 3));
+        assertArrayEquals(new Integer[]{1, 3, 11}, logits.shape.dimensions);
+    }
+}
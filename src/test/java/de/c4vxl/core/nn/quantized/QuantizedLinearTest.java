@@ -0,0 +1,76 @@
+package de.c4vxl.core.nn.quantized;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.utils.QuantizationUtils;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuantizedLinearTest {
+    private static Tensor<Double> input(int rows, int cols) {
+        Random random = new Random(0);
+        Double[] data = new Double[rows * cols];
+        for (int i = 0; i < data.length; i++)
+            data[i] = random.nextGaussian();
+        return Tensor.of(data).reshape(rows, cols);
+    }
+
+    @Test
+    public void dequantizedWeightIsWithinHalfAStep() {
+        Linear linear = new Linear(16, 6, true, DType.DOUBLE);
+        Tensor<?> weight = linear.weight.materialize().clone();
+        QuantizedLinear quantized = new QuantizedLinear(linear);
+
+        Tensor<Double> dequantized = quantized.dequantize();
+        for (int o = 0; o < 6; o++) {
+            double max = 0;
+            for (int k = 0; k < 16; k++)
+                max = Math.max(max, Math.abs(((Number) weight.data[k * 6 + o]).doubleValue()));
+
+            for (int k = 0; k < 16; k++)
+                assertEquals(((Number) weight.data[k * 6 + o]).doubleValue(), dequantized.data[k * 6 + o], max / 254 + 1e-7);
+        }
+    }
+
+    @Test
+    public void forwardMatchesTheDequantizedWeight() {
+        Linear linear = new Linear(16, 6, true, DType.DOUBLE);
+        QuantizedLinear quantized = new QuantizedLinear(linear);
+        Tensor<Double> input = input(3, 16);
+
+        Tensor<Double> dequantized = quantized.dequantize();
+        Tensor<Double> actual = quantized.forward(input);
+        for (int r = 0; r < 3; r++)
+            for (int o = 0; o < 6; o++) {
+                double expected = ((Number) quantized.bias.data[o]).doubleValue();
+                for (int k = 0; k < 16; k++)
+                    expected += input.data[r * 16 + k] * dequantized.data[k * 6 + o];
+
+                assertEquals(expected, actual.data[r * 6 + o], 1e-9);
+            }
+
+        assertThrows(IllegalArgumentException.class, () -> quantized.forward(input(3, 8)));
+    }
+
+    @Test
+    public void quantizeReplacesLinearLayers() {
+        MLP mlp = new MLP(16, 6, 1, 8);
+        Tensor<Double> input = input(2, 16);
+        Tensor<Double> expected = mlp.forward(input);
+
+        QuantizationUtils.quantize(mlp);
+        mlp.layers.forEach(layer -> assertInstanceOf(QuantizedLinear.class, layer));
+        assertTrue(mlp.parameters().stream().noneMatch(p -> p.size() == 16 * 8));
+
+        Tensor<Double> actual = mlp.forward(input);
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.data[i], actual.data[i], 0.05 * (1 + Math.abs(expected.data[i])));
+
+        assertThrows(UnsupportedOperationException.class, mlp::asJSON);
+    }
+}
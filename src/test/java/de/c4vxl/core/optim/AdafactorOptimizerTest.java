@@ -0,0 +1,122 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.tensor.Tensor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdafactorOptimizerTest {
+    private static Tensor<Double> parameter(Integer[] shape, Double... data) {
+        Tensor<Double> parameter = Tensor.of(data).reshape(shape).detach(true);
+        parameter.grad = null;
+        return parameter;
+    }
+
+    private static double[] values(Tensor<Double> tensor) {
+        return Arrays.stream(tensor.data).mapToDouble(Double::doubleValue).toArray();
+    }
+
+    @Test
+    public void matricesKeepFactoredMoments() {
+        Tensor<Double> matrix = Tensor.filled(0., 3, 4).detach(true);
+        Tensor<Double> stacked = Tensor.filled(0., 2, 3, 4).detach(true);
+        Tensor<Double> vector = parameter(new Integer[]{ 5 }, 1., 2., 3., 4., 5.);
+
+        AdafactorOptimizer optimizer = new AdafactorOptimizer(List.of(matrix, stacked, vector), 0.01);
+
+        AdafactorOptimizer.Slot slot = optimizer.slots.get(matrix);
+        assertEquals(3, slot.row.length);
+        assertEquals(4, slot.col.length);
+        assertNull(slot.v);
+        assertNull(slot.m);
+
+        // leading dimensions are rows
+        assertEquals(6, optimizer.slots.get(stacked).row.length);
+        assertEquals(4, optimizer.slots.get(stacked).col.length);
+
+        assertNull(optimizer.slots.get(vector).row);
+        assertEquals(5, optimizer.slots.get(vector).v.length);
+
+        assertNotNull(new AdafactorOptimizer(List.of(matrix), 0.01, 0.9, -0.8, 1e-30, 1e-3, 1.0, 0).slots.get(matrix).m);
+    }
+
+    @Test
+    public void firstStepMatchesTheReference() {
+        // the squared gradient has rank one, so the factored moment is exact and every update is the sign of the gradient
+        Tensor<Double> matrix = parameter(new Integer[]{ 2, 2 }, 1., -1., 1., -1.);
+        matrix.grad = Tensor.of(1., -2., 3., 6.).reshape(2, 2);
+
+        new AdafactorOptimizer(List.of(matrix), 0.01, 0, -0.8, 0, 1e-3, 1.0, 0).step();
+
+        // alpha = rms(p) * min(lr, 1 / sqrt(t)) = 0.01
+        assertArrayEquals(new double[]{ 0.99, -0.99, 0.99, -1.01 }, values(matrix), 1e-12);
+    }
+
+    @Test
+    public void secondStepMatchesTheReference() {
+        double[][] p = { { 0.5, -1., 2. }, { 1.5, 0.25, -0.5 } };
+        double[][][] grads = {
+                { { 0.1, -0.2, 0.3 }, { 0.4, 0.5, -0.6 } },
+                { { -0.3, 0.1, 0.2 }, { 0.2, -0.4, 0.1 } }
+        };
+        double lr = 0.05, eps1 = 1e-30, eps2 = 1e-3, d = 1.0;
+
+        Tensor<Double> matrix = parameter(new Integer[]{ 2, 3 }, 0.5, -1., 2., 1.5, 0.25, -0.5);
+        AdafactorOptimizer optimizer = new AdafactorOptimizer(List.of(matrix), lr, 0, -0.8, eps1, eps2, d, 0);
+
+        // Algorithm 4 of the Adafactor paper
+        double[] r = new double[2], c = new double[3];
+        for (int t = 1; t <= 2; t++) {
+            double[][] g = grads[t - 1];
+            matrix.grad = Tensor.of(Arrays.stream(g).flatMapToDouble(Arrays::stream).boxed().toArray(Double[]::new)).reshape(2, 3);
+            optimizer.step();
+
+            double beta2 = 1 - Math.pow(t, -0.8), rho = Math.min(lr, 1 / Math.sqrt(t));
+            double alpha = Math.max(eps2, rms(p)) * rho;
+
+            double[] rowSums = new double[2], colSums = new double[3];
+            for (int i = 0; i < 2; i++)
+                for (int j = 0; j < 3; j++) {
+                    rowSums[i] += g[i][j] * g[i][j] + eps1;
+                    colSums[j] += g[i][j] * g[i][j] + eps1;
+                }
+            for (int i = 0; i < 2; i++) r[i] = beta2 * r[i] + (1 - beta2) * rowSums[i] / 3;
+            for (int j = 0; j < 3; j++) c[j] = beta2 * c[j] + (1 - beta2) * colSums[j] / 2;
+
+            double[][] u = new double[2][3];
+            for (int i = 0; i < 2; i++)
+                for (int j = 0; j < 3; j++)
+                    u[i][j] = g[i][j] / Math.sqrt(r[i] * c[j] / ((r[0] + r[1]) / 2));
+
+            double clip = Math.max(1, rms(u) / d);
+            for (int i = 0; i < 2; i++)
+                for (int j = 0; j < 3; j++)
+                    p[i][j] -= alpha * u[i][j] / clip;
+        }
+
+        assertArrayEquals(Arrays.stream(p).flatMapToDouble(Arrays::stream).toArray(), values(matrix), 1e-12);
+    }
+
+    private static double rms(double[][] x) {
+        return Math.sqrt(Arrays.stream(x).flatMapToDouble(Arrays::stream).map(v -> v * v).average().orElse(0));
+    }
+
+    @Test
+    public void minimizesAQuadratic() {
+        Double[] target = { 1., -2., 0.5, 3., -1., 2. };
+        Tensor<Double> matrix = parameter(new Integer[]{ 2, 3 }, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1);
+        AdafactorOptimizer optimizer = new AdafactorOptimizer(List.of(matrix), 0.1, 0.9, -0.8, 1e-30, 1e-3, 1.0, 0);
+
+        for (int step = 0; step < 300; step++) {
+            Double[] grad = new Double[6];
+            for (int i = 0; i < 6; i++) grad[i] = 2 * (matrix.data[i] - target[i]);
+            matrix.grad = Tensor.of(grad).reshape(2, 3);
+            optimizer.step();
+        }
+
+        assertArrayEquals(Arrays.stream(target).mapToDouble(Double::doubleValue).toArray(), values(matrix), 0.1);
+    }
+}
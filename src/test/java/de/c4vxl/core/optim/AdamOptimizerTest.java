@@ -0,0 +1,122 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdamOptimizerTest {
+    private static final int CHUNK_SIZE = AbstractOptimizer.CHUNK_SIZE;
+
+    @AfterEach
+    public void restoreChunkSize() { AbstractOptimizer.CHUNK_SIZE = CHUNK_SIZE; }
+
+    private static Tensor<Double> parameter(Double... data) {
+        Tensor<Double> parameter = Tensor.of(data).detach(true);
+        parameter.grad = null;
+        return parameter;
+    }
+
+    private static Tensor<Double> tensor(double[] data) {
+        return Tensor.of(Arrays.stream(data).boxed().toArray(Double[]::new));
+    }
+
+    private static double[] values(Tensor<Double> tensor) {
+        return Arrays.stream(tensor.data).mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Run the textbook Adam update on plain arrays
+     */
+    private static double[] reference(double[] p, double[][] grads, double lr, double beta1, double beta2, double epsilon, double weight_decay) {
+        p = p.clone();
+        double[] m = new double[p.length], v = new double[p.length];
+        for (int t = 1; t <= grads.length; t++) {
+            for (int i = 0; i < p.length; i++) {
+                double g = grads[t - 1][i];
+                m[i] = beta1 * m[i] + (1 - beta1) * g;
+                v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+                double m_hat = m[i] / (1 - Math.pow(beta1, t));
+                double v_hat = v[i] / (1 - Math.pow(beta2, t));
+                p[i] = p[i] * (1 - lr * weight_decay) - lr * m_hat / (Math.sqrt(v_hat) + epsilon);
+            }
+        }
+        return p;
+    }
+
+    private static void run(AbstractOptimizer optimizer, Tensor<Double> parameter, double[][] grads) {
+        for (double[] grad : grads) {
+            parameter.grad = tensor(grad);
+            optimizer.step();
+            optimizer.zeroGrad();
+        }
+    }
+
+    private static final double[][] GRADS = {
+            { 0.5, -1., 2., 0., 0.1 },
+            { 0.4, -0.5, 1.5, 0.3, -0.2 },
+            { -0.1, 0.2, 1., -0.3, 0.05 }
+    };
+
+    @Test
+    public void adamMatchesTheReference() {
+        Tensor<Double> parameter = parameter(1., 2., -3., 0.5, 0.);
+        double[] expected = reference(values(parameter), GRADS, 0.01, 0.9, 0.999, 1e-8, 0);
+
+        run(new AdamOptimizer(List.of(parameter), 0.01), parameter, GRADS);
+        assertArrayEquals(expected, values(parameter), 1e-12);
+    }
+
+    @Test
+    public void adamWMatchesTheReference() {
+        Tensor<Double> parameter = parameter(1., 2., -3., 0.5, 0.);
+        double[] expected = reference(values(parameter), GRADS, 0.01, 0.8, 0.99, 1e-6, 0.1);
+
+        run(new AdamWOptimizer(List.of(parameter), 0.01, 0.8, 0.99, 1e-6, 0.1), parameter, GRADS);
+        assertArrayEquals(expected, values(parameter), 1e-12);
+    }
+
+    @Test
+    public void chunkedStepsMatchTheReference() {
+        AbstractOptimizer.CHUNK_SIZE = 2;
+
+        Tensor<Double> parameter = parameter(1., 2., -3., 0.5, 0.);
+        double[] expected = reference(values(parameter), GRADS, 0.01, 0.9, 0.999, 1e-8, 0);
+
+        run(new AdamOptimizer(List.of(parameter), 0.01), parameter, GRADS);
+        assertArrayEquals(expected, values(parameter), 1e-12);
+    }
+
+    @Test
+    public void equalParametersKeepTheirOwnMoments() {
+        Tensor<Double> a = parameter(1., 1.), b = parameter(1., 1.);
+        AdamOptimizer optimizer = new AdamOptimizer(List.of(a, b), 0.1);
+
+        double[][] gradsA = { { 1., 1. }, { 1., 1. } }, gradsB = { { -1., 2. }, { 0.5, 0.5 } };
+        for (int t = 0; t < 2; t++) {
+            a.grad = tensor(gradsA[t]);
+            b.grad = tensor(gradsB[t]);
+            optimizer.step();
+        }
+
+        assertArrayEquals(reference(new double[]{ 1., 1. }, gradsA, 0.1, 0.9, 0.999, 1e-8, 0), values(a), 1e-12);
+        assertArrayEquals(reference(new double[]{ 1., 1. }, gradsB, 0.1, 0.9, 0.999, 1e-8, 0), values(b), 1e-12);
+    }
+
+    @Test
+    public void parametersWithoutGradientsAreSkipped() {
+        Tensor<Double> a = parameter(1., 2.), b = parameter(3., 4.);
+        AdamOptimizer optimizer = new AdamOptimizer(List.of(a, b), 0.1);
+
+        a.grad = Tensor.of(1., -1.);
+        optimizer.step();
+
+        assertArrayEquals(new double[]{ 3., 4. }, values(b), 0);
+        assertArrayEquals(new double[]{ 0.9, 2.1 }, values(a), 1e-6);
+    }
+}
@@ -0,0 +1,104 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LAMBOptimizerTest {
+    private static final int CHUNK_SIZE = AbstractOptimizer.CHUNK_SIZE;
+
+    @AfterEach
+    public void restoreChunkSize() { AbstractOptimizer.CHUNK_SIZE = CHUNK_SIZE; }
+
+    private static Tensor<Double> tensor(double[] data) {
+        return Tensor.of(Arrays.stream(data).boxed().toArray(Double[]::new));
+    }
+
+    private static Tensor<Double> parameter(double... data) {
+        Tensor<Double> parameter = tensor(data).detach(true);
+        parameter.grad = null;
+        return parameter;
+    }
+
+    private static double[] values(Tensor<Double> tensor) {
+        return Arrays.stream(tensor.data).mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static double norm(double[] x) {
+        return Math.sqrt(Arrays.stream(x).map(v -> v * v).sum());
+    }
+
+    /**
+     * Run the LAMB update of the paper on a single parameter
+     */
+    private static double[] reference(double[] p, double[][] grads, double lr, double beta1, double beta2, double epsilon, double weight_decay) {
+        p = p.clone();
+        double[] m = new double[p.length], v = new double[p.length];
+        for (int t = 1; t <= grads.length; t++) {
+            double[] r = new double[p.length];
+            for (int i = 0; i < p.length; i++) {
+                double g = grads[t - 1][i];
+                m[i] = beta1 * m[i] + (1 - beta1) * g;
+                v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+                r[i] = m[i] / (1 - Math.pow(beta1, t)) / (Math.sqrt(v[i] / (1 - Math.pow(beta2, t))) + epsilon) + weight_decay * p[i];
+            }
+
+            double trust = norm(p) / norm(r);
+            for (int i = 0; i < p.length; i++)
+                p[i] -= lr * trust * r[i];
+        }
+        return p;
+    }
+
+    @Test
+    public void stepsMatchTheReference() {
+        // a small chunk size reduces the norms in parallel
+        AbstractOptimizer.CHUNK_SIZE = 2;
+
+        double[] a0 = { 1., -2., 0.5, 3., 0.25 }, b0 = { 10., 20. };
+        double[][] gradsA = { { 0.5, -1., 2., 0., 0.1 }, { 0.4, -0.5, 1.5, 0.3, -0.2 }, { -0.1, 0.2, 1., -0.3, 0.05 } };
+        double[][] gradsB = { { 1., 1. }, { -2., 0.5 }, { 0.1, 0.3 } };
+
+        Tensor<Double> a = parameter(a0), b = parameter(b0);
+        LAMBOptimizer optimizer = new LAMBOptimizer(List.of(a, b), 0.01, 0.9, 0.999, 1e-6, 0.01);
+        for (int t = 0; t < 3; t++) {
+            a.grad = tensor(gradsA[t]);
+            b.grad = tensor(gradsB[t]);
+            optimizer.step();
+        }
+
+        assertArrayEquals(reference(a0, gradsA, 0.01, 0.9, 0.999, 1e-6, 0.01), values(a), 1e-12);
+        assertArrayEquals(reference(b0, gradsB, 0.01, 0.9, 0.999, 1e-6, 0.01), values(b), 1e-12);
+    }
+
+    @Test
+    public void updatesAreRelativeToTheParameterNorm() {
+        double[] small = { 0.3, -0.4 }, large = { 300., -400. };
+        Tensor<Double> a = parameter(small), b = parameter(large);
+        a.grad = Tensor.of(1., 2.);
+        b.grad = Tensor.of(1., 2.);
+        new LAMBOptimizer(List.of(a, b), 0.1, 0.9, 0.999, 1e-6, 0).step();
+
+        // every parameter moves by lr * ||p||
+        double[] stepA = { values(a)[0] - small[0], values(a)[1] - small[1] };
+        double[] stepB = { values(b)[0] - large[0], values(b)[1] - large[1] };
+        assertEquals(0.1 * 0.5, norm(stepA), 1e-9);
+        assertEquals(0.1 * 500, norm(stepB), 1e-6);
+    }
+
+    @Test
+    public void zeroParametersUseTheLearningRate() {
+        Tensor<Double> parameter = parameter(0., 0.);
+        parameter.grad = Tensor.of(3., -4.);
+        new LAMBOptimizer(List.of(parameter), 0.1, 0.9, 0.999, 0, 0).step();
+
+        // the first Adam update is the sign of the gradient
+        assertArrayEquals(new double[]{ -0.1, 0.1 }, values(parameter), 1e-12);
+    }
+}
@@ -0,0 +1,94 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LARSOptimizerTest {
+    private static final int CHUNK_SIZE = AbstractOptimizer.CHUNK_SIZE;
+
+    @AfterEach
+    public void restoreChunkSize() { AbstractOptimizer.CHUNK_SIZE = CHUNK_SIZE; }
+
+    private static Tensor<Double> tensor(double[] data) {
+        return Tensor.of(Arrays.stream(data).boxed().toArray(Double[]::new));
+    }
+
+    private static Tensor<Double> parameter(double... data) {
+        Tensor<Double> parameter = tensor(data).detach(true);
+        parameter.grad = null;
+        return parameter;
+    }
+
+    private static double[] values(Tensor<Double> tensor) {
+        return Arrays.stream(tensor.data).mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static double norm(double[] x) {
+        return Math.sqrt(Arrays.stream(x).map(v -> v * v).sum());
+    }
+
+    /**
+     * Run the LARS update of the paper on a single parameter
+     */
+    private static double[] reference(double[] p, double[][] grads, double lr, double momentum, double weight_decay, double eta, double epsilon) {
+        p = p.clone();
+        double[] v = new double[p.length];
+        for (double[] g : grads) {
+            double local_lr = eta * norm(p) / (norm(g) + weight_decay * norm(p) + epsilon);
+            for (int i = 0; i < p.length; i++) {
+                v[i] = momentum * v[i] + lr * local_lr * (g[i] + weight_decay * p[i]);
+                p[i] -= v[i];
+            }
+        }
+        return p;
+    }
+
+    @Test
+    public void stepsMatchTheReference() {
+        // a small chunk size reduces the norms in parallel
+        AbstractOptimizer.CHUNK_SIZE = 2;
+
+        double[] a0 = { 1., -2., 0.5, 3., 0.25 }, b0 = { 10., 20. };
+        double[][] gradsA = { { 0.5, -1., 2., 0., 0.1 }, { 0.4, -0.5, 1.5, 0.3, -0.2 }, { -0.1, 0.2, 1., -0.3, 0.05 } };
+        double[][] gradsB = { { 1., 1. }, { -2., 0.5 }, { 0.1, 0.3 } };
+
+        Tensor<Double> a = parameter(a0), b = parameter(b0);
+        LARSOptimizer optimizer = new LARSOptimizer(List.of(a, b), 0.5, 0.9, 0.0005, 0.001, 1e-8);
+        for (int t = 0; t < 3; t++) {
+            a.grad = tensor(gradsA[t]);
+            b.grad = tensor(gradsB[t]);
+            optimizer.step();
+        }
+
+        assertArrayEquals(reference(a0, gradsA, 0.5, 0.9, 0.0005, 0.001, 1e-8), values(a), 1e-12);
+        assertArrayEquals(reference(b0, gradsB, 0.5, 0.9, 0.0005, 0.001, 1e-8), values(b), 1e-12);
+    }
+
+    @Test
+    public void updatesDontDependOnTheGradientScale() {
+        Tensor<Double> a = parameter(3., 4.), b = parameter(3., 4.);
+        a.grad = Tensor.of(1., 2.);
+        b.grad = Tensor.of(1000., 2000.);
+        new LARSOptimizer(List.of(a, b), 1, 0, 0, 0.01, 0).step();
+
+        // every parameter moves by trust_coefficient * lr * ||p||
+        assertArrayEquals(values(a), values(b), 1e-12);
+        assertEquals(0.01 * 5, norm(new double[]{ values(a)[0] - 3., values(a)[1] - 4. }), 1e-12);
+    }
+
+    @Test
+    public void zeroGradientsLeaveParametersUnchanged() {
+        Tensor<Double> parameter = parameter(1., 2.);
+        parameter.grad = Tensor.of(0., 0.);
+        new LARSOptimizer(List.of(parameter), 0.1).step();
+
+        assertArrayEquals(new double[]{ 1., 2. }, values(parameter), 0);
+    }
+}
@@ -0,0 +1,92 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.type.Half;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MixedPrecisionOptimizerTest {
+    private static Tensor<Half> parameter(Double... data) {
+        Tensor<Half> parameter = Tensor.of(data).asDType(DType.FLOAT16).detach(true);
+        parameter.grad = null;
+        return parameter;
+    }
+
+    private static double[] values(Tensor<?> tensor) {
+        double[] values = new double[tensor.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = ((Number) tensor.data[i]).doubleValue();
+        return values;
+    }
+
+    @Test
+    public void castsPassGradientsBackInTheSourceDtype() {
+        Tensor<Double> x = Tensor.of(1., 2., 3.).detach(true);
+        x.grad = null;
+
+        Tensor<Float> y = x.to(DType.FLOAT);
+        y.mul(y).backward();
+
+        assertEquals(DType.DOUBLE, x.grad.dtype);
+        assertArrayEquals(new Double[]{2., 4., 6.}, x.grad.data);
+    }
+
+    @Test
+    public void stepsTheMasterWeightsAndCopiesThemBack() {
+        Tensor<Half> parameter = parameter(1., 2.);
+        MixedPrecisionOptimizer optimizer = new MixedPrecisionOptimizer(List.of(parameter), DType.DOUBLE,
+                masters -> new SGDOptimizer(masters, 0.5), new LossScaler(1024., 2., 0.5, 2000));
+
+        // the gradient of the scaled loss
+        parameter.grad = Tensor.of(512., 1024.).asDType(DType.FLOAT16);
+        optimizer.step();
+
+        assertFalse(optimizer.found_inf());
+        assertArrayEquals(new double[]{0.75, 1.5}, values(parameter), 0);
+        assertEquals(DType.FLOAT16, parameter.dtype);
+    }
+
+    @Test
+    public void skipsStepsWithNonFiniteGradients() {
+        Tensor<Half> parameter = parameter(1., 2.);
+        LossScaler scaler = new LossScaler(1024., 2., 0.5, 2000);
+        MixedPrecisionOptimizer optimizer = new MixedPrecisionOptimizer(List.of(parameter), DType.DOUBLE, masters -> new SGDOptimizer(masters, 0.5), scaler);
+
+        parameter.grad = Tensor.of(Double.POSITIVE_INFINITY, 1.).asDType(DType.FLOAT16);
+        assertTrue(optimizer.found_inf());
+        optimizer.step();
+
+        assertArrayEquals(new double[]{1., 2.}, values(parameter), 0);
+        assertEquals(512., scaler.scale);
+    }
+
+    @Test
+    public void scalerGrowsAfterItsInterval() {
+        LossScaler scaler = new LossScaler(8., 2., 0.5, 2);
+
+        scaler.update(false);
+        assertEquals(8., scaler.scale);
+        scaler.update(false);
+        assertEquals(16., scaler.scale);
+        scaler.update(true);
+        assertEquals(8., scaler.scale);
+    }
+
+    @Test
+    public void rejectsOptimizersSteppingDuringBackward() {
+        Tensor<Half> parameter = parameter(1., 2.);
+
+        assertThrows(IllegalArgumentException.class, () -> new MixedPrecisionOptimizer(List.of(parameter), DType.DOUBLE, masters -> {
+            SGDOptimizer optimizer = new SGDOptimizer(masters, 0.1);
+            optimizer.step_during_backward(true);
+            return optimizer;
+        }));
+
+        MixedPrecisionOptimizer optimizer = new MixedPrecisionOptimizer(List.of(parameter), DType.DOUBLE, masters -> new SGDOptimizer(masters, 0.1));
+        assertThrows(IllegalStateException.class, () -> optimizer.step_during_backward(true));
+    }
+}
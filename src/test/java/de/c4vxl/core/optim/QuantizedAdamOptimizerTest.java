@@ -0,0 +1,132 @@
+package de.c4vxl.core.optim;
+
+import de.c4vxl.core.optim.type.AbstractOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuantizedAdamOptimizerTest {
+    private static final int CHUNK_SIZE = AbstractOptimizer.CHUNK_SIZE;
+
+    @AfterEach
+    public void restoreChunkSize() { AbstractOptimizer.CHUNK_SIZE = CHUNK_SIZE; }
+
+    private static Tensor<Double> parameter(long seed, int size) {
+        Random random = new Random(seed);
+        Tensor<Double> parameter = Tensor.of(random.doubles(size, -1, 1).boxed().toArray(Double[]::new)).detach(true);
+        parameter.grad = null;
+        return parameter;
+    }
+
+    private static double[] values(Tensor<Double> tensor) {
+        return Arrays.stream(tensor.data).mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Run the same steps with random gradients on every optimizer
+     */
+    private static void run(int steps, int size, List<Tensor<Double>> parameters, List<AbstractOptimizer> optimizers) {
+        Random random = new Random(42);
+        for (int step = 0; step < steps; step++) {
+            // gradients spanning several orders of magnitude
+            Double[] grad = random.doubles(size, -1, 1).map(g -> g * Math.pow(10, -random.nextInt(4))).boxed().toArray(Double[]::new);
+            for (int i = 0; i < parameters.size(); i++) {
+                parameters.get(i).grad = Tensor.of(grad.clone());
+                optimizers.get(i).step();
+            }
+        }
+    }
+
+    /**
+     * Compare how far the parameters moved. The codes are about 14% apart, so single moments may be off by up to 7%
+     */
+    private static void assertClose(Tensor<Double> start, Tensor<Double> quantized, Tensor<Double> reference) {
+        double[] s = values(start), q = values(quantized), r = values(reference);
+        double error = 0, distance = 0;
+        for (int i = 0; i < s.length; i++) {
+            error += Math.pow(q[i] - r[i], 2);
+            distance += Math.pow(r[i] - s[i], 2);
+        }
+        assertTrue(Math.sqrt(error / distance) < 0.1, "relative error " + Math.sqrt(error / distance));
+    }
+
+    @Test
+    public void momentsAreStoredInBlocksOfBytes() {
+        QuantizedAdamOptimizer optimizer = new QuantizedAdamOptimizer(List.of(parameter(0, 600)), 0.01);
+        QuantizedAdamOptimizer.Slot slot = optimizer.slots.values().iterator().next();
+
+        assertEquals(600, slot.m.length);
+        assertEquals(600, slot.v.length);
+        assertEquals(3, slot.m_scale.length);
+        assertEquals(3, slot.v_scale.length);
+    }
+
+    @Test
+    public void firstStepMatchesAdam() {
+        Tensor<Double> quantized = parameter(1, 600), reference = parameter(1, 600);
+        run(1, 600, List.of(quantized, reference), List.of(
+                new QuantizedAdamOptimizer(List.of(quantized), 0.01),
+                new AdamOptimizer(List.of(reference), 0.01)));
+
+        assertArrayEquals(values(reference), values(quantized), 1e-12);
+    }
+
+    @Test
+    public void stepsStayCloseToAdam() {
+        Tensor<Double> start = parameter(2, 600);
+        Tensor<Double> quantized = parameter(2, 600), reference = parameter(2, 600);
+        run(30, 600, List.of(quantized, reference), List.of(
+                new QuantizedAdamOptimizer(List.of(quantized), 0.01),
+                new AdamOptimizer(List.of(reference), 0.01)));
+
+        assertClose(start, quantized, reference);
+    }
+
+    @Test
+    public void adamWStaysCloseToAdamW() {
+        Tensor<Double> start = parameter(3, 300);
+        Tensor<Double> quantized = parameter(3, 300), reference = parameter(3, 300);
+        run(30, 300, List.of(quantized, reference), List.of(
+                new QuantizedAdamWOptimizer(List.of(quantized), 0.01, 0.9, 0.999, 1e-8, 0.1),
+                new AdamWOptimizer(List.of(reference), 0.01, 0.9, 0.999, 1e-8, 0.1)));
+
+        assertClose(start, quantized, reference);
+    }
+
+    @Test
+    public void chunksStartAtBlocks() {
+        Tensor<Double> small = parameter(4, 700), large = parameter(4, 700);
+
+        AbstractOptimizer.CHUNK_SIZE = 100;
+        QuantizedAdamOptimizer chunked = new QuantizedAdamOptimizer(List.of(small), 0.01);
+        AbstractOptimizer.CHUNK_SIZE = CHUNK_SIZE;
+        QuantizedAdamOptimizer whole = new QuantizedAdamOptimizer(List.of(large), 0.01);
+
+        AbstractOptimizer.CHUNK_SIZE = 100;
+        run(5, 700, List.of(small, large), List.of(chunked, whole));
+
+        assertArrayEquals(values(large), values(small), 0);
+    }
+
+    @Test
+    public void minimizesAQuadratic() {
+        Tensor<Double> parameter = parameter(5, 300);
+        QuantizedAdamOptimizer optimizer = new QuantizedAdamOptimizer(List.of(parameter), 0.05);
+
+        for (int step = 0; step < 300; step++) {
+            Double[] grad = new Double[300];
+            for (int i = 0; i < grad.length; i++) grad[i] = 2 * (parameter.data[i] - 0.5);
+            parameter.grad = Tensor.of(grad);
+            optimizer.step();
+        }
+
+        for (double value : values(parameter))
+            assertEquals(0.5, value, 0.05);
+    }
+}
@@ -0,0 +1,213 @@
+package de.c4vxl.core.optim.type;
+
+import de.c4vxl.core.nn.Checkpoint;
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.optim.AdamOptimizer;
+import de.c4vxl.core.optim.SGDOptimizer;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AbstractOptimizerTest {
+    private static final int CHUNK_SIZE = AbstractOptimizer.CHUNK_SIZE;
+
+    @AfterEach
+    public void restoreChunkSize() { AbstractOptimizer.CHUNK_SIZE = CHUNK_SIZE; }
+
+    /**
+     * Records every chunk it is given and writes the position of every element into it
+     */
+    private static class Recording extends AbstractOptimizer {
+        public final List<Chunk> chunks = Collections.synchronizedList(new ArrayList<>());
+
+        public Recording(List<Tensor<?>> parameters) { super(parameters, 1); }
+
+        @Override
+        protected void update(Chunk chunk) {
+            this.chunks.add(chunk);
+            for (int i = chunk.from(); i < chunk.to(); i++)
+                chunk.data()[i] = i - chunk.offset();
+        }
+    }
+
+    private static Tensor<Double> parameter(int size) {
+        Double[] data = new Double[size];
+        Arrays.fill(data, -1.);
+        Tensor<Double> parameter = Tensor.of(data).detach(true);
+        parameter.grad = Tensor.filled(1., size);
+        return parameter;
+    }
+
+    private static double[] values(Tensor<?> tensor) {
+        return Arrays.stream(tensor.data).mapToDouble(v -> ((Number) v).doubleValue()).toArray();
+    }
+
+    @Test
+    public void chunksCoverEveryElementOnce() {
+        AbstractOptimizer.CHUNK_SIZE = 3;
+
+        Tensor<Double> a = parameter(7), b = parameter(2), c = parameter(4);
+        c.grad = null;
+        Recording optimizer = new Recording(List.of(a, b, c));
+        optimizer.step();
+
+        assertArrayEquals(new double[]{ 0, 1, 2, 3, 4, 5, 6 }, values(a), 0);
+        assertArrayEquals(new double[]{ 0, 1 }, values(b), 0);
+        assertArrayEquals(new double[]{ -1, -1, -1, -1 }, values(c), 0);
+
+        // 7 elements in chunks of 3, and a single chunk of 2
+        assertEquals(4, optimizer.chunks.size());
+        optimizer.chunks.forEach(chunk -> assertTrue(chunk.to() - chunk.from() <= 3));
+    }
+
+    @Test
+    public void chunkedStepsMatchASingleStep() {
+        Tensor<Double> chunked = Tensor.of(1., 2., 3., 4., 5.).detach(true), whole = Tensor.of(1., 2., 3., 4., 5.).detach(true);
+        chunked.grad = Tensor.of(0.5, -1., 2., 0., 3.);
+        whole.grad = chunked.grad.clone();
+
+        new SGDOptimizer(List.of(whole), 0.1).step();
+        AbstractOptimizer.CHUNK_SIZE = 2;
+        new SGDOptimizer(List.of(chunked), 0.1).step();
+
+        assertArrayEquals(new double[]{ 0.95, 2.1, 2.8, 4., 4.7 }, values(whole), 1e-12);
+        assertArrayEquals(values(whole), values(chunked), 0);
+    }
+
+    @Test
+    public void stepsKeepTheDtypeOfTheParameters() {
+        AbstractOptimizer.CHUNK_SIZE = 2;
+
+        Tensor<Float> parameter = Tensor.of(1f, 2f, 3f).detach(true);
+        parameter.grad = Tensor.of(1f, 1f, 1f);
+        new SGDOptimizer(List.of(parameter), 0.5).step();
+
+        assertEquals(DType.FLOAT, parameter.dtype);
+        assertArrayEquals(new Float[]{ 0.5f, 1.5f, 2.5f }, parameter.data);
+    }
+
+    @Test
+    public void zeroGradClearsEveryGradient() {
+        Tensor<Double> a = parameter(3), b = parameter(2);
+        SGDOptimizer optimizer = new SGDOptimizer(List.of(a, b), 0.1);
+        optimizer.zeroGrad();
+
+        assertNull(a.grad);
+        assertNull(b.grad);
+
+        // a step without gradients changes nothing
+        optimizer.step();
+        assertArrayEquals(new double[]{ -1, -1, -1 }, values(a), 0);
+    }
+
+    @Test
+    public void clipGradNormScalesToTheMaximum() {
+        Tensor<Double> a = parameter(2), b = parameter(1);
+        a.grad = Tensor.of(3., 0.);
+        b.grad = Tensor.of(4.);
+        SGDOptimizer optimizer = new SGDOptimizer(List.of(a, b), 0.1);
+
+        assertEquals(5., optimizer.grad_norm(), 1e-12);
+        assertEquals(5., optimizer.clip_grad_norm(1.), 1e-12);
+
+        // the direction is kept
+        assertArrayEquals(new double[]{ 0.6, 0 }, values(a.grad), 1e-6);
+        assertArrayEquals(new double[]{ 0.8 }, values(b.grad), 1e-6);
+        assertEquals(1., optimizer.grad_norm(), 1e-6);
+    }
+
+    @Test
+    public void clipGradNormKeepsSmallGradients() {
+        Tensor<Double> a = parameter(2), b = parameter(2);
+        a.grad = Tensor.of(0.3, -0.4);
+        b.grad = null;
+        SGDOptimizer optimizer = new SGDOptimizer(List.of(a, b), 0.1);
+
+        assertEquals(0.5, optimizer.clip_grad_norm(1.), 1e-12);
+        assertArrayEquals(new double[]{ 0.3, -0.4 }, values(a.grad), 0);
+    }
+
+    @Test
+    public void sharedGradientsAreScaledOnce() {
+        Tensor<Double> a = parameter(2), b = parameter(2);
+        a.grad = Tensor.of(2., 4.);
+        b.grad = a.grad;
+        SGDOptimizer optimizer = new SGDOptimizer(List.of(a, b), 0.1);
+
+        optimizer.scale_gradients(0.5);
+        assertArrayEquals(new double[]{ 1., 2. }, values(a.grad), 0);
+    }
+
+    private static Tensor<Double> input() {
+        return Tensor.of(1., 2., 3., 0., 1., -1.).reshape(2, 3).detach(false);
+    }
+
+    /**
+     * Run a step of a fresh Adam optimizer on a copy of a layer and return the new state
+     */
+    private static Map<String, Object> step(Linear source, Function<Linear, Tensor<Double>> loss, boolean during_backward) {
+        Linear linear = new Linear(3, 3).load_state(source.state());
+        AdamOptimizer optimizer = new AdamOptimizer(linear.parameters(), 0.1);
+        optimizer.step_during_backward(during_backward);
+
+        for (int i = 0; i < 2; i++) {
+            loss.apply(linear).backward();
+            optimizer.step();
+
+            if (during_backward)
+                linear.parameters().forEach(parameter -> assertNull(parameter.grad));
+            optimizer.zeroGrad();
+        }
+
+        return linear.state();
+    }
+
+    @Test
+    public void stepsDuringBackwardMatchRegularSteps() {
+        Linear linear = new Linear(3, 3);
+        Function<Linear, Tensor<Double>> loss = l -> l.forward(l.forward(input())).mul(l.forward(input()));
+
+        assertEquals(step(linear, loss, false), step(linear, loss, true));
+    }
+
+    @Test
+    public void stepsDuringBackwardWaitForCheckpoints() {
+        Linear linear = new Linear(3, 3);
+        // the layer is used inside and outside the checkpoint, so its gradient is complete only after the checkpoint was recomputed
+        Function<Linear, Tensor<Double>> loss = l -> l.forward(Checkpoint.apply((Tensor<Double> x) -> l.forward(x), input()));
+
+        assertEquals(step(linear, loss, false), step(linear, loss, true));
+    }
+
+    @Test
+    public void disablingStepsDuringBackwardRemovesTheHooks() {
+        Linear linear = new Linear(3, 3);
+        SGDOptimizer optimizer = new SGDOptimizer(linear.parameters(), 0.1);
+        optimizer.step_during_backward(true);
+        assertTrue(optimizer.steps_during_backward());
+        optimizer.step_during_backward(false);
+        assertFalse(optimizer.steps_during_backward());
+
+        Map<String, Object> before = linear.state();
+        linear.<Double>forward(input()).backward();
+        assertEquals(before, linear.state());
+        assertNotNull(linear.weight.grad);
+    }
+
+    @Test
+    public void optimizersNeedingAllGradientsRejectStepsDuringBackward() {
+        AbstractOptimizer optimizer = new AbstractOptimizer(List.of(parameter(2)), 0.1, false) {
+            @Override
+            protected void update(Chunk chunk) { }
+        };
+
+        assertThrows(IllegalStateException.class, () -> optimizer.step_during_backward(true));
+        assertFalse(optimizer.steps_during_backward());
+    }
+}
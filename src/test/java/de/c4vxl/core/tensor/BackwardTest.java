@@ -0,0 +1,62 @@
+package de.c4vxl.core.tensor;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.optim.SGDOptimizer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackwardTest {
+    private static Tensor<Double> leaf(Double... data) {
+        Tensor<Double> tensor = Tensor.of(data).detach(true);
+        tensor.grad = null;
+        return tensor;
+    }
+
+    @Test
+    public void backwardReleasesTheGraph() {
+        Tensor<Double> a = leaf(1., 2., 3.), b = leaf(4., 5., 6.);
+        Tensor<Double> product = a.mul(b);
+        Tensor<Double> result = product.add(a);
+
+        result.backward();
+
+        assertArrayEquals(new Double[]{5., 6., 7.}, a.grad.data);
+        assertArrayEquals(new Double[]{1., 2., 3.}, b.grad.data);
+
+        // intermediates are unlinked and lose their gradient
+        assertNull(result.operation);
+        assertTrue(result.parents.isEmpty());
+        assertNull(product.operation);
+        assertNull(product.grad);
+
+        // accumulated gradients don't keep a graph alive
+        assertFalse(a.grad.requires_grad);
+        assertNull(a.grad.operation);
+    }
+
+    @Test
+    public void retainedGraphCanBeBackpropagatedTwice() {
+        Tensor<Double> a = leaf(1., 2., 3.), b = leaf(4., 5., 6.);
+        Tensor<Double> result = a.mul(b);
+
+        result.backward(true);
+        assertNotNull(result.operation);
+
+        result.grad = null;
+        result.backward(true);
+        assertArrayEquals(new Double[]{8., 10., 12.}, a.grad.data);
+    }
+
+    @Test
+    public void zeroGradClearsEveryParameter() {
+        Linear linear = new Linear(3, 2);
+        SGDOptimizer optimizer = new SGDOptimizer(linear.parameters(), 0.1);
+
+        linear.forward(Tensor.of(1., 2., 3., 0., 1., -1.).reshape(2, 3)).backward();
+        linear.parameters().forEach(p -> assertNotNull(p.grad));
+
+        optimizer.zeroGrad();
+        linear.parameters().forEach(p -> assertNull(p.grad));
+    }
+}
@@ -0,0 +1,59 @@
+package de.c4vxl.core.tensor;
+
+import de.c4vxl.core.type.DType;
+import de.c4vxl.core.utils.BinarySerializationUtils;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeferredTensorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void dataIsReadOnceWhenFirstNeeded() {
+        AtomicInteger reads = new AtomicInteger();
+        Tensor<Double> tensor = Tensor.deferred(DType.DOUBLE, () -> {
+            reads.incrementAndGet();
+            return new Double[]{ 1., 2., 3., 4. };
+        }, 2, 2);
+
+        assertFalse(tensor.isMaterialized());
+        assertEquals(4, tensor.size());
+        assertEquals(0, reads.get());
+
+        // operations materialize their inputs
+        Tensor<Double> doubled = tensor.mul(2.);
+        assertTrue(tensor.isMaterialized());
+        assertArrayEquals(new Double[]{ 2., 4., 6., 8. }, doubled.data);
+
+        tensor.materialize();
+        assertEquals(3., tensor.item(1, 0).doubleValue());
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void lazilyLoadedModulesReadParametersOnUse() {
+        MLP mlp = new MLP(4, 3, 1, 8);
+        String path = this.dir.resolve("mlp" + BinarySerializationUtils.EXTENSION).toString();
+        mlp.export(path);
+
+        MLP loaded = new MLP(4, 3, 1, 8).load(path, true);
+        assertTrue(loaded.parameters().stream().noneMatch(Tensor::isMaterialized));
+
+        Tensor<Double> input = Tensor.of(1., -2., 0.5, 3.).reshape(1, 4);
+        assertEquals(mlp.forward(input), loaded.forward(input));
+        assertTrue(loaded.parameters().stream().allMatch(Tensor::isMaterialized));
+
+        // lazily loaded modules can be exported again
+        String copy = this.dir.resolve("copy" + BinarySerializationUtils.EXTENSION).toString();
+        new MLP(4, 3, 1, 8).load(path, true).export(copy);
+        MLP reloaded = new MLP(4, 3, 1, 8).load(copy);
+        assertEquals(mlp.forward(input), reloaded.forward(input));
+    }
+}
@@ -0,0 +1,109 @@
+package de.c4vxl.core.tensor.lazy;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.jNN;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionTest {
+    private boolean compileKernels;
+
+    @BeforeEach
+    public void interpret() {
+        this.compileKernels = jNN.COMPILE_KERNELS;
+        jNN.COMPILE_KERNELS = false;
+    }
+
+    @AfterEach
+    public void restore() { jNN.COMPILE_KERNELS = this.compileKernels; }
+
+    @Test
+    public void evaluatesInASinglePassWithBroadcasting() {
+        Tensor<Double> x = Tensor.of(0.3, -1.2, 2.0, 0.7, 1.1, -0.4).reshape(2, 3);
+        Tensor<Float> y = Tensor.of(0.5f, 1.5f, -2f).reshape(1, 3);
+
+        Tensor<Double> result = x.lazy().mul(y.lazy()).add(1.).tanh().evaluate(DType.DOUBLE);
+
+        assertArrayEquals(new Integer[]{2, 3}, result.shape.dimensions);
+        for (int i = 0; i < 6; i++)
+            assertEquals(Math.tanh(x.data[i] * y.data[i % 3] + 1.), result.data[i], 1e-12);
+
+        assertFalse(result.requires_grad);
+    }
+
+    @Test
+    public void sumMatchesEvaluation() {
+        Tensor<Double> x = Tensor.of(0.3, -1.2, 2.0, 0.7, 1.1, -0.4);
+        Expression expression = x.lazy().pow(2.).sub(x.lazy().mul(0.5));
+
+        double expected = 0;
+        for (Double value : expression.evaluate(DType.DOUBLE).data)
+            expected += value;
+
+        assertEquals(expected, expression.sum(), 1e-12);
+    }
+
+    @Test
+    public void identicalSubexpressionsAreMerged() {
+        Tensor<Double> x = Tensor.of(1., 2., 3.), y = Tensor.of(4., 5., 6.);
+
+        // both products and both leaves of x are the same node
+        Expression.Graph graph = new Expression.Graph(x.lazy().mul(y.lazy()).add(x.lazy().mul(y.lazy())));
+        assertEquals(4, graph.nodes.size());
+        assertEquals(2, graph.leaves.size());
+        assertEquals(2, graph.uses[2]);
+        assertEquals(2, graph.a[3]);
+        assertEquals(2, graph.b[3]);
+
+        assertArrayEquals(new Double[]{8., 20., 36.}, x.lazy().mul(y.lazy()).add(x.lazy().mul(y.lazy())).evaluate(DType.DOUBLE).data);
+    }
+
+    @Test
+    public void constantsAndFunctionsAreOnlyMergedWithThemselves() {
+        Tensor<Double> x = Tensor.of(1., 2., 3.);
+
+        // two constants of the same value are two nodes, so both additions are kept
+        Expression.Graph constants = new Expression.Graph(x.lazy().add(1.).mul(x.lazy().add(1.)));
+        assertEquals(6, constants.nodes.size());
+
+        DoubleUnaryOperator square = v -> v * v;
+        Expression.Graph same = new Expression.Graph(x.lazy().map(square).add(x.lazy().map(square)));
+        Expression.Graph different = new Expression.Graph(x.lazy().map(v -> v * v).add(x.lazy().map(v -> v * v)));
+        assertEquals(3, same.nodes.size());
+        assertEquals(4, different.nodes.size());
+    }
+
+    @Test
+    public void concurrentEvaluationsUseTheirOwnBuffers() throws Exception {
+        int size = 10000;
+        Double[] data = new Double[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (double) i;
+
+        Tensor<Double> x = Tensor.of(data);
+        Expression expression = x.lazy().mul(2.).add(x.lazy());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Double>> sums = new ArrayList<>();
+            for (int k = 0; k < 32; k++)
+                sums.add(executor.submit(expression::sum));
+
+            for (Future<Double> sum : sums)
+                assertEquals(3. * (size - 1) * size / 2, sum.get().doubleValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package de.c4vxl.core.tensor.lazy;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.jNN;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every generated kernel is verified by the JVM when its class is defined.
+ * These tests generate kernels for many combinations of operations, leaf dtypes, leaf layouts and output dtypes
+ * with compilation forced, so a kernel failing verification fails the test, and compare them against the interpreter.
+ */
+public class KernelCompilerTest {
+    private static final List<DType<?>> DTYPES = List.of(DType.DOUBLE, DType.FLOAT, DType.INTEGER, DType.LONG, DType.FLOAT16, DType.BFLOAT16);
+
+    private boolean compileKernels, forceCompilation;
+
+    @BeforeEach
+    public void save() {
+        this.compileKernels = jNN.COMPILE_KERNELS;
+        this.forceCompilation = jNN.FORCE_KERNEL_COMPILATION;
+    }
+
+    @AfterEach
+    public void restore() {
+        jNN.COMPILE_KERNELS = this.compileKernels;
+        jNN.FORCE_KERNEL_COMPILATION = this.forceCompilation;
+    }
+
+    private static <T> Tensor<T> evaluate(Expression expression, DType<T> dtype, boolean compile) {
+        jNN.COMPILE_KERNELS = compile;
+        jNN.FORCE_KERNEL_COMPILATION = compile;
+        return expression.evaluate(dtype);
+    }
+
+    private static double sum(Expression expression, boolean compile) {
+        jNN.COMPILE_KERNELS = compile;
+        jNN.FORCE_KERNEL_COMPILATION = compile;
+        return expression.sum();
+    }
+
+    /**
+     * A leaf in every layout a kernel reads: contiguous (2, 3), broadcast (1, 3) and scalar
+     */
+    private static List<Expression> leaves(DType<?> dtype) {
+        return List.of(
+                Tensor.of(0.5, -1., 2., 1.5, 3., -0.25).reshape(2, 3).asDType(dtype).lazy(),
+                Tensor.of(2., -0.5, 1.).reshape(1, 3).asDType(dtype).lazy(),
+                Tensor.of(3.).asDType(dtype).lazy()
+        );
+    }
+
+    private static Expression randomExpression(Random random, List<Expression> pool) {
+        pool = new ArrayList<>(pool);
+
+        for (int k = 0; k < 10; k++) {
+            Expression a = pool.get(random.nextInt(pool.size())), b = pool.get(random.nextInt(pool.size()));
+            double c = random.nextInt(3) * 0.5 + 0.5;
+
+            pool.add(switch (random.nextInt(12)) {
+                case 0 -> a.add(b);
+                case 1 -> a.sub(b);
+                case 2 -> a.mul(b);
+                case 3 -> a.div(b.pow(2.).add(1.));
+                case 4 -> a.add(c);
+                case 5 -> a.tanh();
+                case 6 -> a.clip(-c, c);
+                case 7 -> a.neg();
+                case 8 -> a.pow(2.);
+                case 9 -> a.mul(a).add(1.).sqrt().log();
+                case 10 -> a.clip(-2., 2.).exp();
+                default -> random.nextBoolean() ? a.map(v -> v * c - 1) : a.combine(b, (p, q) -> p - 2 * q);
+            });
+        }
+
+        return pool.getLast();
+    }
+
+    @Test
+    public void compiledKernelsMatchTheInterpreter() {
+        Random random = new Random(42);
+
+        for (DType<?> input : DTYPES) {
+            List<Expression> pool = new ArrayList<>(leaves(input));
+            pool.addAll(leaves(DType.DOUBLE));
+
+            for (int t = 0; t < 20; t++) {
+                Expression expression = randomExpression(random, pool);
+
+                for (DType<?> output : DTYPES) {
+                    Tensor<?> expected = evaluate(expression, output, false);
+                    Tensor<?> actual = evaluate(expression, output, true);
+
+                    assertArrayEquals(expected.shape.dimensions, actual.shape.dimensions);
+                    for (int i = 0; i < expected.size(); i++) {
+                        double e = ((Number) expected.data[i]).doubleValue(), a = ((Number) actual.data[i]).doubleValue();
+                        assertEquals(e, a, 1e-9 * (1 + Math.abs(e)), input + " -> " + output + " at " + i);
+                    }
+                }
+
+                double expected = sum(expression, false);
+                assertEquals(expected, sum(expression, true), 1e-9 * (1 + Math.abs(expected)));
+            }
+        }
+    }
+
+    @Test
+    public void sharedSubexpressionsCompile() {
+        Tensor<Double> x = Tensor.of(0.3, -1.2, 2.0, 0.7, 1.1, -0.4).reshape(2, 3);
+
+        Expression shared = x.lazy().mul(2.).tanh();
+        Expression expression = shared.mul(shared).add(shared).sub(x.lazy().mul(x.lazy()));
+
+        assertArrayEquals(evaluate(expression, DType.DOUBLE, false).data, evaluate(expression, DType.DOUBLE, true).data);
+    }
+
+    @Test
+    public void kernelsAreCachedBySignature() {
+        KernelCompiler.clearCache();
+
+        Tensor<Double> x = Tensor.of(1., 2., 3.), y = Tensor.of(4., 5., 6.);
+        evaluate(x.lazy().mul(y.lazy()).add(1.), DType.DOUBLE, true);
+        evaluate(y.lazy().mul(x.lazy()).add(2.), DType.DOUBLE, true);
+        assertEquals(1, KernelCompiler.cacheSize());
+
+        // the same operands in another structure need their own kernel
+        evaluate(x.lazy().mul(x.lazy()).add(1.), DType.DOUBLE, true);
+        assertEquals(2, KernelCompiler.cacheSize());
+    }
+
+    @Test
+    public void forcedCompilationRejectsUnsupportedDtypes() {
+        Tensor<Double> x = Tensor.of(1., 2., 3.);
+        assertThrows(IllegalStateException.class, () -> evaluate(x.lazy().add(1.), DType.BOOLEAN, true));
+    }
+}
@@ -0,0 +1,65 @@
+package de.c4vxl.core.tensor.trace;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.tensor.grad.GradContext;
+import de.c4vxl.models.DecoderTransformer;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionPlanTest {
+    @Test
+    public void planMatchesEagerExecution() {
+        MLP mlp = new MLP(3, 2, 1, 4);
+        ExecutionPlan<Double, Double> plan = Tracer.compile(mlp::forward, Tensor.of(1., 2., 3., 0., 1., -1.).reshape(2, 3));
+
+        Tensor<Double> input = Tensor.of(5., -2., 3., 1., 1., 7.).reshape(2, 3);
+        assertEquals(mlp.forward(input), plan.forward(input));
+
+        // the plan can be replayed
+        assertEquals(mlp.forward(input), plan.forward(input));
+    }
+
+    @Test
+    public void compiledModuleMatchesEagerExecution() {
+        DecoderTransformer model = new DecoderTransformer(8, 2, 2, 8, 11, true);
+        ExecutionPlan<Integer, Double> plan = Tracer.compile(model, Tensor.of(1, 2, 3, 4).reshape(1, 4));
+
+        Tensor<Integer> input = Tensor.of(7, 0, 3, 9).reshape(1, 4);
+        assertEquals(model.forward(input), plan.forward(input));
+        assertTrue(plan.nodes.size() <= plan.graph.nodes.size());
+    }
+
+    @Test
+    public void planRejectsOtherShapes() {
+        MLP mlp = new MLP(3, 2, 1, 4);
+        ExecutionPlan<Double, Double> plan = Tracer.compile(mlp::forward, Tensor.of(1., 2., 3.).reshape(1, 3));
+
+        assertThrows(IllegalArgumentException.class, () -> plan.forward(Tensor.of(1., 2., 3., 4., 5., 6.).reshape(2, 3)));
+    }
+
+    @Test
+    public void tracingRestoresGradMode() {
+        boolean prev = GradContext.isNoGrad();
+        GradContext.setNoGrad(false);
+
+        try {
+            MLP mlp = new MLP(3, 2, 1, 4);
+            TracedGraph graph = Tracer.trace(mlp::forward, Tensor.of(1., 2., 3.).reshape(1, 3));
+
+            assertFalse(graph.nodes.isEmpty());
+            assertFalse(GradContext.isNoGrad());
+            assertFalse(Tracer.isTracing());
+        } finally {
+            GradContext.setNoGrad(prev);
+        }
+    }
+
+    @Test
+    public void tracesCantBeNested() {
+        Tensor<Double> example = Tensor.of(1., 2.);
+        assertThrows(IllegalStateException.class, () -> Tracer.trace(x -> Tracer.trace(y -> y, x).input.asDouble(), example));
+        assertFalse(Tracer.isTracing());
+    }
+}
@@ -0,0 +1,78 @@
+package de.c4vxl.core.type;
+
+import de.c4vxl.core.tensor.Tensor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HalfPrecisionTest {
+    @Test
+    public void halfRoundsToNearest() {
+        assertEquals(1f / 3, Half.valueOf(1f / 3).floatValue(), 1f / 2048);
+        assertEquals(65504f, Half.valueOf(65504f).floatValue());
+        assertEquals(Float.POSITIVE_INFINITY, Half.valueOf(65520f).floatValue());
+        assertTrue(Float.isNaN(Half.valueOf(Float.NaN).floatValue()));
+
+        // 2049 lies between 2048 and 2050 and rounds to the even one
+        assertEquals(2048f, Half.valueOf(2049f).floatValue());
+    }
+
+    @Test
+    public void bfloat16RoundsToNearestEven() {
+        assertEquals(1f, BFloat16.valueOf(1 + 0x1p-8f).floatValue());
+        assertEquals(1 + 0x1p-6f, BFloat16.valueOf(1 + 3 * 0x1p-8f).floatValue());
+        assertEquals(3.0e38f, BFloat16.valueOf(3.0e38f).floatValue(), 3.0e38f / 128);
+        assertTrue(Float.isNaN(BFloat16.valueOf(Float.NaN).floatValue()));
+    }
+
+    @Test
+    public void valuesAreInterned() throws Exception {
+        assertSame(Half.valueOf(0.1f), Half.valueOf(0.1f));
+        assertSame(BFloat16.valueOf(0.1f), BFloat16.valueOf(0.1f));
+        assertSame(Half.fromBits((short) 0xFFFF), Half.fromBits((short) -1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(Half.valueOf(1.5f));
+            out.writeObject(BFloat16.valueOf(1.5f));
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSame(Half.valueOf(1.5f), in.readObject());
+            assertSame(BFloat16.valueOf(1.5f), in.readObject());
+        }
+    }
+
+    @Test
+    public void packedBitsRoundTrip() {
+        Tensor<Double> tensor = Tensor.of(0.5, -2., 1e-3, 100.).reshape(2, 2);
+
+        Tensor<Half> half = Half.unpack(Half.pack(tensor), 2, 2);
+        assertEquals(tensor.asDType(DType.FLOAT16), half);
+        assertArrayEquals(Half.pack(tensor), Half.pack(half));
+
+        Tensor<BFloat16> bfloat = BFloat16.unpack(BFloat16.pack(tensor), 2, 2);
+        assertEquals(tensor.asDType(DType.BFLOAT16), bfloat);
+    }
+
+    @Test
+    public void reductionsAccumulateInSinglePrecision() {
+        // a half precision accumulator gets stuck at 2048
+        Tensor<Half> ones = Tensor.ones(4096).asDType(DType.FLOAT16);
+        assertEquals(4096f, ones.sum(0, false).data[0].floatValue());
+    }
+
+    @Test
+    public void dtypesAreFloatingPoint() {
+        assertTrue(DType.FLOAT16.isFloatingPoint());
+        assertTrue(DType.BFLOAT16.isHalfPrecision());
+        assertFalse(DType.FLOAT.isHalfPrecision());
+        assertSame(Half.valueOf(0.25f), DType.FLOAT16.parse(0.25));
+        assertSame(BFloat16.valueOf(0.25f), DType.BFLOAT16.converter().apply(0.25));
+    }
+}
@@ -0,0 +1,78 @@
+package de.c4vxl.core.utils;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinarySerializationUtilsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void everyDtypeRoundTrips() {
+        Tensor<Double> values = Tensor.of(1.5, -2., 0., 3.25, 100., -0.125).reshape(2, 3);
+
+        Map<String, Object> state = new LinkedHashMap<>();
+        for (DType<?> dtype : List.of(DType.DOUBLE, DType.FLOAT, DType.LONG, DType.INTEGER, DType.FLOAT16, DType.BFLOAT16, DType.BOOLEAN))
+            state.put("tensor." + dtype, values.asDType(dtype));
+        state.put("n_embd", 16);
+
+        String path = this.dir.resolve("state" + BinarySerializationUtils.EXTENSION).toString();
+        BinarySerializationUtils.export(state, path);
+        Map<String, Object> loaded = BinarySerializationUtils.load(path);
+
+        assertEquals(state.keySet(), loaded.keySet());
+        state.forEach((key, value) -> {
+            if (value instanceof Tensor<?> tensor) {
+                Tensor<?> result = (Tensor<?>) loaded.get(key);
+                assertEquals(tensor.dtype, result.dtype, key);
+                assertEquals(tensor, result, key);
+            }
+        });
+        assertEquals(16, ((Number) loaded.get("n_embd")).intValue());
+    }
+
+    @Test
+    public void modulesRoundTrip() {
+        MLP mlp = new MLP(4, 3, 1, 8);
+        String path = this.dir.resolve("mlp" + BinarySerializationUtils.EXTENSION).toString();
+        mlp.export(path);
+
+        MLP loaded = new MLP(4, 3, 1, 8).load(path);
+        Tensor<Double> input = Tensor.of(1., -2., 0.5, 3.).reshape(1, 4);
+        assertEquals(mlp.forward(input), loaded.forward(input));
+    }
+
+    @Test
+    public void unknownDtypesAreRejected() throws Exception {
+        Path path = this.dir.resolve("state" + BinarySerializationUtils.EXTENSION);
+        BinarySerializationUtils.export(Map.of("weight", Tensor.of(1., 2.)), path.toString());
+
+        // replace the dtype with another class of the same name length, so the header stays valid
+        String content = new String(Files.readAllBytes(path), StandardCharsets.ISO_8859_1);
+        Files.write(path, content.replace("java.lang.Double", "java.lang.Thread").getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThrows(IllegalArgumentException.class, () -> BinarySerializationUtils.load(path.toString()));
+        assertThrows(IllegalArgumentException.class, () -> DType.forName("java.lang.Thread"));
+        assertSame(DType.FLOAT16, DType.forName(DType.FLOAT16.clazz.getName()));
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws Exception {
+        Path path = this.dir.resolve("state" + BinarySerializationUtils.EXTENSION);
+        Files.writeString(path, "{\"weight\": 1}, padding for the prefix");
+
+        assertThrows(IllegalArgumentException.class, () -> BinarySerializationUtils.load(path.toString()));
+    }
+}
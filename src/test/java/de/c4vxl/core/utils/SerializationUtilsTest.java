@@ -0,0 +1,71 @@
+package de.c4vxl.core.utils;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerializationUtilsTest {
+    @Test
+    public void stateRoundTripsThroughJson() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        for (DType<?> dtype : List.of(DType.DOUBLE, DType.FLOAT, DType.INTEGER, DType.FLOAT16, DType.BFLOAT16))
+            state.put("tensor." + dtype, Tensor.of(1.5, -2., 0., 3.25).reshape(2, 2).asDType(dtype));
+        state.put("dtype", DType.FLOAT);
+        state.put("name", "mlp");
+
+        Map<String, Object> loaded = SerializationUtils.stateFromJSON(SerializationUtils.stateToJSON(state, false));
+
+        state.forEach((key, value) -> {
+            if (value instanceof Tensor<?> tensor) {
+                assertEquals(tensor.dtype, ((Tensor<?>) loaded.get(key)).dtype, key);
+                assertEquals(tensor, loaded.get(key), key);
+            } else
+                assertEquals(value, loaded.get(key), key);
+        });
+    }
+
+    @Test
+    public void tensorFieldsMayComeInAnyOrder() {
+        Map<String, Object> state = SerializationUtils.stateFromJSON("""
+                {"weight": {"data": [1, 2, 3, 4], "shape": [2, 2], "dtype": "java.lang.Float"},
+                 "other": {"data": [1, 2], "name": "not a tensor"}}""");
+
+        Tensor<?> weight = (Tensor<?>) state.get("weight");
+        assertEquals(DType.FLOAT, weight.dtype);
+        assertArrayEquals(new Integer[]{2, 2}, weight.shape.dimensions);
+        assertArrayEquals(new Float[]{1f, 2f, 3f, 4f}, weight.data);
+
+        Map<?, ?> other = (Map<?, ?>) state.get("other");
+        assertEquals("not a tensor", other.get("name"));
+        assertEquals(List.of(1., 2.), other.get("data"));
+    }
+
+    @Test
+    public void longsKeepTheirPrecision() {
+        Tensor<Long> tensor = Tensor.of(9007199254740993L, -1L);
+        Map<String, Object> loaded = SerializationUtils.stateFromJSON(SerializationUtils.stateToJSON(Map.of("ids", tensor), false));
+        assertEquals(tensor, loaded.get("ids"));
+    }
+
+    @Test
+    public void unknownDtypesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SerializationUtils.stateFromJSON(
+                "{\"weight\": {\"dtype\": \"java.lang.Thread\", \"shape\": [1], \"data\": [1]}}"));
+    }
+
+    @Test
+    public void modulesRoundTripThroughJson() {
+        MLP mlp = new MLP(4, 3, 1, 8);
+        MLP loaded = (MLP) new MLP(4, 3, 1, 8).fromJSON(mlp.asJSON(true));
+
+        Tensor<Double> input = Tensor.of(1., -2., 0.5, 3.).reshape(1, 4);
+        assertEquals(mlp.forward(input), loaded.forward(input));
+    }
+}
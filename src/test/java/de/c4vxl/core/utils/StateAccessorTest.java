@@ -0,0 +1,90 @@
+package de.c4vxl.core.utils;
+
+import de.c4vxl.core.nn.Linear;
+import de.c4vxl.core.nn.module.Module;
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.models.MLP;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateAccessorTest {
+    public static class Base extends Module {
+        public int hidden_size = 3;
+        public Linear linear = new Linear(2, 2);
+    }
+
+    public static class Child extends Base {
+        public static int instances = 0;
+        public final int version = 1;
+        public ArrayList<Linear> layers = new ArrayList<>(List.of(new Linear(2, 2), new Linear(2, 2)));
+    }
+
+    // not accessible through a public lookup
+    private static class Hidden {
+        public int value = 2;
+    }
+
+    private static StateAccessor.Property property(Class<?> type, String name) {
+        return StateAccessor.of(type).properties.stream().filter(p -> p.name().equals(name)).findFirst().orElse(null);
+    }
+
+    @Test
+    public void propertiesAreThePublicInstanceFields() {
+        assertSame(StateAccessor.of(Child.class), StateAccessor.of(Child.class));
+
+        assertNotNull(property(Child.class, "hidden_size"));
+        assertNotNull(property(Child.class, "layers"));
+        assertNull(property(Child.class, "instances"));
+
+        Child child = new Child();
+        StateAccessor.Property version = property(Child.class, "version");
+        assertEquals(1, version.get(child));
+        assertThrows(IllegalStateException.class, () -> version.set(child, 2));
+
+        Hidden hidden = new Hidden();
+        StateAccessor.Property value = property(Hidden.class, "value");
+        value.set(hidden, 5);
+        assertEquals(5, hidden.value);
+        assertEquals(5, value.get(hidden));
+    }
+
+    @Test
+    public void stateHoldsInheritedButNoStaticFields() {
+        Map<String, Object> state = new Child().state();
+
+        assertEquals(3, state.get("hidden_size"));
+        assertTrue(state.containsKey("linear.weight"));
+        assertTrue(state.containsKey("layers.1.weight"));
+        assertFalse(state.containsKey("instances"));
+    }
+
+    @Test
+    public void loadingRestoresInheritedFieldsAndReplacesListEntries() {
+        Child source = new Child();
+        source.hidden_size = 7;
+
+        Child target = new Child();
+        target.load_state(source.state());
+
+        assertEquals(7, target.hidden_size);
+        assertEquals(source.linear.weight, target.linear.weight);
+        assertEquals(2, target.layers.size());
+        assertEquals(source.layers.get(1).weight, target.layers.get(1).weight);
+
+        // loading twice doesn't grow the lists
+        MLP mlp = new MLP(4, 3, 2, 8);
+        int layers = mlp.layers.size();
+        mlp.load_state(mlp.state());
+        mlp.load_state(mlp.state());
+        assertEquals(layers, mlp.layers.size());
+
+        Tensor<Double> input = Tensor.of(1., 2., 3., 4.).reshape(1, 4);
+        MLP loaded = new MLP(4, 3, 2, 8).load_state(mlp.state());
+        assertEquals(mlp.forward(input), loaded.forward(input));
+    }
+}
@@ -0,0 +1,149 @@
+package de.c4vxl.models;
+
+import de.c4vxl.core.tensor.Tensor;
+import de.c4vxl.core.type.DType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DecoderTransformerTest {
+    @TempDir
+    Path dir;
+
+    private static <T> void fill(Tensor<T> tensor, int from, int to, double value) {
+        for (int i = from; i < to; i++)
+            tensor.data[i] = tensor.dtype.parse(value);
+    }
+
+    /**
+     * Returns a model with a random token embedding and an lm_head tied to it
+     */
+    private static DecoderTransformer gpt2() {
+        DecoderTransformer model = new DecoderTransformer(8, 2, 2, 4, 11, true);
+
+        Random random = new Random(0);
+        Tensor<?> wte = model.wte.weight, lm_head = model.lm_head.weight;
+        for (int token = 0; token < 11; token++)
+            for (int c = 0; c < 8; c++) {
+                fill(wte, token * 8 + c, token * 8 + c + 1, random.nextGaussian());
+                fill(lm_head, c * 11 + token, c * 11 + token + 1, ((Number) wte.data[token * 8 + c]).doubleValue());
+            }
+
+        return model;
+    }
+
+    /**
+     * Write the parameters of a model as a HuggingFace GPT-2 checkpoint with a tied lm_head
+     */
+    private void writeGpt2(DecoderTransformer model) throws Exception {
+        Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+        model.named_parameters().forEach((name, tensor) -> {
+            if (name.equals("lm_head.weight")) return;
+
+            tensors.put("transformer." + name.replaceFirst("^heads\\.", "h.")
+                    .replace(".mlp.modules.0.", ".mlp.c_fc.")
+                    .replace(".mlp.modules.2.", ".mlp.c_proj."), tensor);
+        });
+
+        // the causal mask buffers have to be skipped
+        tensors.put("transformer.h.0.attn.bias", Tensor.ones(1, 1, 4, 4).asDouble());
+
+        StringBuilder header = new StringBuilder("{\"__metadata__\":{\"format\":\"pt\"}");
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (Map.Entry<String, Tensor<?>> e : tensors.entrySet()) {
+            Tensor<?> tensor = e.getValue();
+            ByteBuffer bytes = ByteBuffer.allocate(tensor.size() * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (Object value : tensor.data)
+                bytes.putDouble(((Number) value).doubleValue());
+
+            header.append(",\"").append(e.getKey()).append("\":{\"dtype\":\"F64\",\"shape\":").append(Arrays.toString(tensor.shape.dimensions))
+                    .append(",\"data_offsets\":[").append(data.size()).append(',').append(data.size() + bytes.capacity()).append("]}");
+            data.write(bytes.array());
+        }
+
+        byte[] headerBytes = header.append('}').toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(headerBytes.length).array());
+        file.write(headerBytes);
+        file.write(data.toByteArray());
+
+        Files.write(this.dir.resolve("model.safetensors"), file.toByteArray());
+        Files.writeString(this.dir.resolve("config.json"), """
+                {"n_embd": 8, "n_head": 2, "n_layer": 2, "n_positions": 4, "vocab_size": 11}""");
+    }
+
+    @Test
+    public void pretrainedModelsUseTheGpt2Architecture() throws Exception {
+        DecoderTransformer reference = gpt2();
+        this.writeGpt2(reference);
+
+        DecoderTransformer model = DecoderTransformer.from_pretrained(this.dir.toString(), DType.DOUBLE);
+        for (DecoderTransformer.Block block : model.heads) {
+            assertTrue(block.attn.project_output);
+            assertFalse(block.scale_residuals);
+        }
+
+        reference.named_parameters().forEach((name, tensor) -> {
+            assertEquals(tensor, model.named_parameters().get(name), name);
+        });
+
+        Tensor<Integer> idx = Tensor.of(1, 7, 3).reshape(1, 3);
+        assertEquals(reference.gpt2_architecture(true).forward(idx), model.forward(idx));
+    }
+
+    @Test
+    public void lmHeadIsAnUntiedCopyOfTheTokenEmbedding() throws Exception {
+        this.writeGpt2(gpt2());
+        DecoderTransformer model = DecoderTransformer.from_pretrained(this.dir.toString(), DType.DOUBLE);
+
+        Tensor<?> wte = model.wte.weight, lm_head = model.lm_head.weight;
+        assertArrayEquals(new Integer[]{8, 11}, lm_head.shape.dimensions);
+        for (int token = 0; token < 11; token++)
+            for (int c = 0; c < 8; c++)
+                assertEquals(wte.data[token * 8 + c], lm_head.data[c * 11 + token]);
+
+        fill(wte, 0, 8, 5.);
+        assertNotEquals(5., ((Number) lm_head.data[0]).doubleValue());
+    }
+
+    @Test
+    public void constructedModelsKeepTheOriginalArchitecture() {
+        DecoderTransformer model = new DecoderTransformer(8, 2, 1, 4, 11, true);
+        Tensor<Integer> idx = Tensor.of(1, 2).reshape(1, 2);
+        Tensor<Double> original = model.forward(idx);
+
+        for (DecoderTransformer.Block block : model.heads) {
+            assertFalse(block.attn.project_output);
+            assertTrue(block.scale_residuals);
+        }
+
+        assertNotEquals(original, model.gpt2_architecture(true).forward(idx));
+        assertEquals(original, model.gpt2_architecture(false).forward(idx));
+    }
+
+    @Test
+    public void lowPrecisionModelsLookUpLargeTokenIds() {
+        int n_embd = 4;
+        DecoderTransformer model = new DecoderTransformer(n_embd, 1, 1, 4, 2050, true, DType.FLOAT16);
+
+        // 2049 isn't representable in half precision, so it must not be cast to the compute dtype before the lookup
+        fill(model.wte.weight, 2049 * n_embd, 2050 * n_embd, 2.);
+        fill(model.wte.weight, 2049 * n_embd, 2049 * n_embd + 1, -1.);
+
+        Tensor<?> a = model.forward(Tensor.of(2048).reshape(1, 1));
+        Tensor<?> b = model.forward(Tensor.of(2049).reshape(1, 1));
+        assertNotEquals(a, b);
+    }
+}